@@ -0,0 +1,56 @@
+/**
+ * Balanced Interleaving
+ * 新旧アルゴリズムのポインタを交互に進め、同じ位置ではシード値で決めた側を先にする。
+ * 既に統合済みのIDは読み飛ばす
+ */
+public final class BalancedInterleavingStrategy implements IncrementalInterleavingStrategy {
+
+    public static final String NAME = "balanced";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int merge(InterleavingEngine engine, long seed, int[] oldIds, int oldLength, int[] newIds,
+            int newLength, int totalNeeded) {
+        // シード値なので同じユーザ、同じ日付の場合は常に同じ順序を返す
+        boolean fromOld = engine.random(seed).nextBoolean();
+
+        engine.reset(Math.min(totalNeeded, oldLength + newLength));
+        int oldPointer = 0;
+        int newPointer = 0;
+        while (engine.size() < totalNeeded && (oldPointer < oldLength || newPointer < newLength)) {
+            boolean takeOld = newPointer > oldPointer || (fromOld && newPointer == oldPointer);
+            // 片方を読み切った場合はもう片方から取り出す
+            if (takeOld ? oldPointer >= oldLength : newPointer >= newLength) {
+                takeOld = !takeOld;
+            }
+            if (takeOld) {
+                engine.append(oldIds[oldPointer++], InterleavingEngine.SOURCE_OLD);
+            } else {
+                engine.append(newIds[newPointer++], InterleavingEngine.SOURCE_NEW);
+            }
+        }
+        return engine.size();
+    }
+
+    @Override
+    public void begin(InterleavingState state) {
+        state.setFromOld(state.getRandom().nextBoolean());
+    }
+
+    @Override
+    public boolean pickOld(InterleavingState state, boolean oldAvailable, boolean newAvailable) {
+        boolean takeOld = state.getNewPointer() > state.getOldPointer()
+                || (state.isFromOld() && state.getNewPointer() == state.getOldPointer());
+        // 片方を読み切った場合はもう片方から取り出す
+        return takeOld ? oldAvailable : !newAvailable;
+    }
+
+    @Override
+    public boolean skipsMergedIds() {
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ユーザIDをハッシュして100個の実験バケットに振り分け、バケット毎に戦略を割り当てる
+ * バケットはユーザIDのみから決まるため、日付が変わっても同じユーザは同じ実験に属する
+ */
+public class BucketStrategySelector implements InterleavingStrategySelector {
+
+    /* バケット数 */
+    public static final int BUCKET_COUNT = 100;
+
+    /* バケット番号毎の戦略 */
+    private final InterleavingStrategy[] bucketStrategies = new InterleavingStrategy[BUCKET_COUNT];
+
+    /**
+     * @param allocation      戦略毎に割り当てるバケット数(先頭から順に割り当てる)
+     * @param defaultStrategy 割り当てなかったバケットの戦略
+     */
+    public BucketStrategySelector(LinkedHashMap<InterleavingStrategy, Integer> allocation,
+            InterleavingStrategy defaultStrategy) {
+        int bucket = 0;
+        for (Map.Entry<InterleavingStrategy, Integer> entry : allocation.entrySet()) {
+            if (entry.getValue() < 0 || bucket + entry.getValue() > BUCKET_COUNT) {
+                throw new IllegalArgumentException("バケットの割り当てが不正です: " + allocation);
+            }
+            Arrays.fill(bucketStrategies, bucket, bucket + entry.getValue(), entry.getKey());
+            bucket += entry.getValue();
+        }
+        Arrays.fill(bucketStrategies, bucket, BUCKET_COUNT, defaultStrategy);
+    }
+
+    @Override
+    public InterleavingStrategy select(Integer userId) {
+        return bucketStrategies[bucketOf(userId)];
+    }
+
+    /**
+     * ユーザIDのバケット番号
+     *
+     * @param userId ユーザID
+     * @return バケット番号(0～BUCKET_COUNT-1)
+     */
+    public static int bucketOf(Integer userId) {
+        // 連番のユーザIDが同じバケットに偏らないよう、ビットを混ぜてから振り分ける
+        long z = (userId == null ? 0 : userId) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 32)) * 0xD6E8FEB86659FD93L;
+        z ^= z >>> 32;
+        return (int) Math.floorMod(z, (long) BUCKET_COUNT);
+    }
+}
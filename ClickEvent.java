@@ -0,0 +1,13 @@
+import java.time.LocalDate;
+
+/**
+ * インターリービング結果に対するクリックのイベント
+ *
+ * @param userId  ユーザID
+ * @param date    表示した日付
+ * @param page    表示したページ番号（1から始まる）
+ * @param perPage 表示した1ページあたりのアイテム数
+ * @param jobId   クリックされた募集のID
+ */
+public record ClickEvent(Integer userId, LocalDate date, Integer page, Integer perPage, Integer jobId) {
+}
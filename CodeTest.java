@@ -1,20 +1,44 @@
 import java.util.LinkedHashMap;
-import java.nio.ByteBuffer;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
 import java.util.Arrays;
-import java.util.Random;
-import java.util.stream.Collectors;
-import java.util.Set;
-import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.logging.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * 新旧アルゴリズムのインターリービング
+ * 設定(ランキング取得元・タイムアウト・シード値の生成・実験設定の取得元・キャッシュ・メトリクス)は生成時にのみ指定し、以降は変更しない。
+ * 実験設定(ページ件数・ページの上限・戦略)はリクエスト毎に1度だけ取得し、処理中は同じ設定を使い続ける。
+ * リクエスト毎の作業領域はスレッド毎に保持する(InterleavingEngine・SeedProvider)かメソッド内のローカル変数とし、
+ * 共有する状態はキャッシュ(セグメント毎のロック)・事前計算結果(AtomicReference)・日付毎の実験設定(ConcurrentSkipListMap)・
+ * メトリクス(LongAdderなど)のみのため、
+ * 1つのインスタンスを複数スレッドから同時に使用できる
+ */
 public class CodeTest {
 
     /* 旧アルゴリズム */
@@ -26,17 +50,107 @@ public class CodeTest {
     /* SHA-256 */
     public static final String SHA_256 = "SHA-256";
 
-    /* インターリービング処理を行うページ件数。要件が変わった場合この値を変えて下さい */
+    /* インターリービング処理を行うページ件数の既定値。実行中の変更はExperimentConfig(設定ファイル)で行う */
     public static final Integer interleavingPageCount = 1;
 
+    /* ページの上限の既定値。実行中の変更はExperimentConfig(設定ファイル)で行う */
     public static final Integer MAX_PAGE = 100;
 
+    /* 1ページあたりのアイテム数の基本値 */
+    public static final Integer DEFAULT_PER_PAGE = 10;
+
+    /* 一括インターリービング処理の最大並列数 */
+    public static final int BATCH_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
     public static final Logger LOGGER = Logger.getLogger(CodeTest.class.getName());
 
     public static final String WARNING_CONTENTS = "SHA-256ハッシュ関数が使用できません";
 
     public static final String COLON = ":";
 
+    /* 旧アルゴリズムのスタブが返すID */
+    private static final List<Integer> OLD_ALGORITHM_ORIGINAL_IDS = Arrays.asList(15, 21, 40, 6, 39, 23, 30, 38, 1, 7,
+            14, 29, 37, 12, 36, 24, 18, 10, 13, 20,
+            3, 35, 22, 27, 34, 26, 11, 4, 5, 9, 17, 28, 32, 33, 8, 2, 31, 19, 16, 25);
+
+    /* 新アルゴリズムのスタブが返すID */
+    private static final List<Integer> NEW_ALGORITHM_ORIGINAL_IDS = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11,
+            12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38,
+            39, 40);
+
+    /* ランキング取得のタイムアウト */
+    public static final Duration DEFAULT_RANKING_TIMEOUT = Duration.ofMillis(500);
+
+    /* 日付毎の実験設定を保持する日数 */
+    public static final int CONFIG_HISTORY_DAYS = 7;
+
+    /* インターリービング結果のキャッシュ(ユーザ・日付単位) */
+    private final InterleavingCache interleavingCache;
+
+    /* 日付の切り替え時に全アクティブユーザ分を事前に計算したインターリービング結果(未計算の場合はnull) */
+    private final AtomicReference<MaterializedInterleavingStore> materializedStore = new AtomicReference<>();
+
+    /* oldAlgorithmが返す旧アルゴリズムのランキング(スタブ・ランキングファイル・ユーザ毎のランキングなど) */
+    private final PagedRankingSource oldRankingPages;
+
+    /* newAlgorithmが返す新アルゴリズムのランキング */
+    private final PagedRankingSource newRankingPages;
+
+    /* 旧アルゴリズムのランキング取得元 */
+    private final RankingSource oldRankingSource;
+
+    /* 3ページ目以降の取得に使用する旧アルゴリズムのランキング */
+    private final Ranker oldRanker;
+
+    /* 新アルゴリズムのランキング取得元 */
+    private final RankingSource newRankingSource;
+
+    private final Duration oldRankingTimeout;
+
+    private final Duration newRankingTimeout;
+
+    /* シード値の生成と当日の日付の取得 */
+    private final SeedProvider seedProvider;
+
+    /* 実験設定(ページ件数・ページの上限・ユーザ毎の戦略の選択)。リクエスト毎に1度だけ取得する */
+    private final Supplier<ExperimentConfig> experimentConfig;
+
+    /* 日付毎にその日最後に使用した実験設定(クリックの帰属で表示時の設定を再現するために使用する) */
+    private final ConcurrentSkipListMap<LocalDate, ExperimentConfig> configHistory = new ConcurrentSkipListMap<>();
+
+    /* 処理段階毎の処理時間などのメトリクス(システムプロパティで有効にしない場合は何もしない) */
+    private final InterleavingMetrics metrics;
+
+    /**
+     * スタブの新旧アルゴリズムをランキング取得元とする
+     */
+    public CodeTest() {
+        this(builder());
+    }
+
+    private CodeTest(Builder builder) {
+        this.seedProvider = builder.seedProvider != null ? builder.seedProvider : new SeedProvider();
+        // oldAlgorithm・newAlgorithmのランキングを指定しない場合はスタブのランキングとする
+        this.oldRankingPages = builder.oldRankingPages != null ? builder.oldRankingPages
+                : new RankingSnapshotStore(RankingSnapshot.of(seedProvider.today(), OLD_ALGORITHM_ORIGINAL_IDS));
+        this.newRankingPages = builder.newRankingPages != null ? builder.newRankingPages
+                : new RankingSnapshotStore(RankingSnapshot.of(seedProvider.today(), NEW_ALGORITHM_ORIGINAL_IDS));
+        // ランキング取得元を指定しない場合はoldAlgorithm・newAlgorithmのランキングから取得する
+        this.oldRankingSource = builder.oldRankingSource != null ? builder.oldRankingSource : oldRankingPages;
+        this.newRankingSource = builder.newRankingSource != null ? builder.newRankingSource : newRankingPages;
+        this.oldRanker = new Ranker(OLD_ALGORITHM, oldRankingSource);
+        this.oldRankingTimeout = Objects.requireNonNull(builder.oldRankingTimeout);
+        this.newRankingTimeout = Objects.requireNonNull(builder.newRankingTimeout);
+        this.experimentConfig = Objects.requireNonNull(builder.experimentConfig);
+        this.interleavingCache = builder.interleavingCache != null ? builder.interleavingCache
+                : new InterleavingCache();
+        this.metrics = builder.metrics != null ? builder.metrics : InterleavingMetrics.fromSystemProperty();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
     /**
      * @param userId  アクセスしたユーザーのID
      * @param page    ページ番号（1から始まる）
@@ -45,190 +159,841 @@ public class CodeTest {
      * 
      */
     public List<JobPost> interleaving(Integer userId, Integer page, Integer perPage) {
+        return this.interleavingPage(userId, page, perPage, null).getItems();
+    }
+
+    /**
+     * カーソル付きでページを取得する。
+     * 前ページで返却したカーソルを渡すと、3ページ目以降は旧アルゴリズムを先頭から読み直さずに続きから取得する
+     * 
+     * @param userId  アクセスしたユーザーのID
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @param cursor  前ページで返却したカーソル(無い場合はnull)
+     * @return 当該ページのアイテムリストと次ページのカーソル
+     */
+    public InterleavingPage interleavingPage(Integer userId, Integer page, Integer perPage, String cursor) {
+        ExperimentConfig config = experimentConfig.get();
+        return this.interleavingPage(userId, page, perPage, cursor, config.getStrategySelector().select(userId),
+                config);
+    }
+
+    /**
+     * 戦略を指定してカーソル付きでページを取得する。
+     * 
+     * @param userId   アクセスしたユーザーのID
+     * @param page     ページ番号（1から始まる）
+     * @param perPage  1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @param cursor   前ページで返却したカーソル(無い場合はnull)
+     * @param strategy インターリービングの戦略
+     * @return 当該ページのアイテムリストと次ページのカーソル
+     */
+    public InterleavingPage interleavingPage(Integer userId, Integer page, Integer perPage, String cursor,
+            InterleavingStrategy strategy) {
+        return this.interleavingPage(userId, page, perPage, cursor, strategy, experimentConfig.get());
+    }
+
+    private InterleavingPage interleavingPage(Integer userId, Integer page, Integer perPage, String cursor,
+            InterleavingStrategy strategy, ExperimentConfig config) {
+        long startNanos = metrics.start();
+        long startAllocated = metrics.allocatedBytes();
         // ユーザが100ページ目以降に進もうとしたとき固定メッセージと固定アイテムを表示する(おそらくサービスの仕様)
-        if (page > MAX_PAGE) {
-            System.out.println("固定メッセージと固定アイテムを返し、以降の処理に進まない");
-            return new ArrayList<>();
+        if (page > config.getMaxPage()) {
+            metrics.increment(InterleavingMetrics.Counter.MAX_PAGE_EXCEEDED);
+            return new InterleavingPage(new ArrayList<>(), null);
         }
 
         // 2ページ分(20件)を一括生成して切り出す。このリストは3ページ目以降をクリックした場合でも除外リストとして使用する
-        List<JobPost> fullInterleavingList = this.computeBalancedInterleaving(userId,
-                interleavingPageCount * perPage);
+        // 同じユーザ・同じ日付の結果はキャッシュから取得し、ページングの度に再計算しない
+        LocalDate today = seedProvider.today();
+        this.recordConfig(today, config);
+        InterleavingCache.Entry entry = this.getInterleavingEntry(userId, today, perPage, config, strategy);
+
+        InterleavingPage interleavingPage = this.selectPage(userId, today, page, perPage, config, strategy.getName(),
+                oldRanker, entry, cursor);
+        metrics.recordPage(page, perPage, interleavingPage.getItems().size(), startNanos, startAllocated);
+        return interleavingPage;
+    }
 
+    /**
+     * インターリービング結果から当該ページを切り出す
+     * 
+     * @param userId       アクセスしたユーザーのID
+     * @param today        リクエストの日付
+     * @param page         ページ番号（1から始まる）
+     * @param perPage      1ページあたりの要求するアイテム数
+     * @param config       実験設定
+     * @param strategyName インターリービングの戦略の名前
+     * @param baseRanker   3ページ目以降の取得に使用するランキング
+     * @param entry        インターリービング結果
+     * @param cursor       前ページで返却したカーソル(無い場合はnull)
+     * @return 当該ページのアイテムリストと次ページのカーソル
+     */
+    private InterleavingPage selectPage(Integer userId, LocalDate today, Integer page, Integer perPage,
+            ExperimentConfig config, String strategyName, Ranker baseRanker, InterleavingCache.Entry entry,
+            String cursor) {
+        Integer interleavingPageCount = config.getInterleavingPageCount();
         // 3ページ目以降クリック時は以下のロジックを通る
         if (page > interleavingPageCount) {
-            List<JobPost> pageItemList = this.selectItemFromOldAlgorithm(userId, page, perPage, interleavingPageCount,
-                    fullInterleavingList);
-            return pageItemList;
+            InterleavingCursor resumeCursor = this.decodeCursor(cursor, userId, today, perPage,
+                    interleavingPageCount, strategyName, page, entry.isDegraded());
+            return this.selectItemFromOldAlgorithm(userId, today, page, perPage, interleavingPageCount,
+                    config.getMaxPage(), strategyName, baseRanker, entry.getExcludedIds(), entry.isDegraded(),
+                    resumeCursor);
         }
 
         int start = (page - 1) * perPage;
-        int end = Math.min(start + perPage, fullInterleavingList.size());
+        int end = Math.min(start + perPage, entry.size());
+
+        // インターリービング対象ページの次ページは、旧アルゴリズムの先頭から読み込む
+        String nextCursor = new InterleavingCursor(userId, today, perPage, interleavingPageCount, strategyName,
+                page + 1, 0, 0, entry.isDegraded()).encode();
 
-        return new ArrayList<>(fullInterleavingList.subList(start, end));
+        // JobPostは当該ページの分のみ生成する
+        return new InterleavingPage(entry.getJobPosts(start, end), nextCursor);
     }
 
     /**
-     * Balanced Interleavingを実装
+     * カーソルを復元し、リクエストに対応するものか検証する
      * 
-     * @param userId      アクセスしたユーザーのID
-     * @param totalNeeded インターリービング処理に必要となる総件数
-     * @return インターリービング処理を行ったリスト
+     * @param cursor       カーソル
+     * @param userId       ユーザID
+     * @param today        リクエストの日付
+     * @param perPage               1ページあたりの要求するアイテム数
+     * @param interleavingPageCount インターリービング対象となるページ件数
+     * @param strategyName          インターリービングの戦略の名前
+     * @param page                  ページ番号
+     * @param degraded              除外用IDが新アルゴリズムを取得できずに生成した結果か
+     * @return 使用できるカーソル。無い・不正・対応しない場合はnull(先頭から読み直す)
      */
-    private List<JobPost> computeBalancedInterleaving(Integer userId, Integer totalNeeded) {
-        long seed = this.createSeedValue(userId);
+    private InterleavingCursor decodeCursor(String cursor, Integer userId, LocalDate today, Integer perPage,
+            Integer interleavingPageCount, String strategyName, Integer page, boolean degraded) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            InterleavingCursor decoded = InterleavingCursor.decode(cursor);
+            // 日付を跨いだ場合や別ページ・別の戦略・ページ件数が変わった場合、
+            // 発行時と再開時で新アルゴリズムの取得可否が異なり除外用IDが変わった場合のカーソルは使用しない
+            if (decoded.matches(userId, today, perPage, interleavingPageCount, strategyName, page, degraded)) {
+                return decoded;
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning(e.getMessage());
+        }
+        metrics.increment(InterleavingMetrics.Counter.CURSOR_REJECTED);
+        return null;
+    }
 
-        // 乱数生成（このシード値からは常に同じランダム列が出る）
-        Random rand = new Random(seed);
+    /**
+     * 当日のインターリービング結果を先頭から順に返すイテレータ
+     * ランキングは読み進めた分だけチャンク単位で取得するため、必要な件数が分からない場合や大きい場合に使用する。
+     * インターリービング対象ページの範囲に限らず、どちらかのランキングが尽きるまで統合を続ける
+     * 
+     * @param userId アクセスしたユーザーのID
+     * @return [Iterator<JobPost>] 募集のイテレータ
+     */
+    public Iterator<JobPost> interleavingIterator(Integer userId) {
+        ExperimentConfig config = experimentConfig.get();
+        InterleavingStrategy strategy = config.getStrategySelector().select(userId);
+        LocalDate today = seedProvider.today();
+        this.recordConfig(today, config);
+        if (strategy instanceof IncrementalInterleavingStrategy incrementalStrategy) {
+            return this.newInterleavingIterator(userId, today,
+                    config.getInterleavingPageCount() * DEFAULT_PER_PAGE, incrementalStrategy);
+        }
+        // 逐次統合できない戦略は、全件を統合してから返す
+        return this.getInterleavingEntry(userId, today, DEFAULT_PER_PAGE, config, strategy).getInterleavingList()
+                .iterator();
+    }
 
-        // シード値なので同じユーザ、同じ日付の場合は常に同じ順序を返す
-        boolean fromOld = rand.nextBoolean();
+    /**
+     * 当日のインターリービング結果を先頭から順に返すストリーム
+     * 
+     * @param userId アクセスしたユーザーのID
+     * @return 募集のストリーム
+     * @see #interleavingIterator(Integer)
+     */
+    public Stream<JobPost> interleavingStream(Integer userId) {
+        Iterator<JobPost> iterator = this.interleavingIterator(userId);
+        Spliterator<JobPost> spliterator = iterator instanceof InterleavingIterator interleavingIterator
+                ? interleavingIterator.spliterator()
+                : Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
 
-        // インターリービング対象となる全データを取得
-        // 1,2ページ分(20件)を作るには、各アルゴリズムから最大20件ずつあれば足りる
-        List<Integer> oldAlgorithmList = this.oldAlgorithm(userId, 1, totalNeeded);
-        List<Integer> newAlgorithmList = this.newAlgorithm(userId, 1, totalNeeded);
-
-        int oldAlgorithmPointer = 0;
-        int newAlgorithmPointer = 0;
-
-        // LinkedHashMapを使用することで順番を維持しながら値を保持し、計算量も抑える
-        Map<Integer, String> map = new LinkedHashMap<>();
-
-        // 生成されるランキングがインターリービングに必要なアイテム数に達するまで処理を行う
-        while (map.size() < totalNeeded
-                && (oldAlgorithmPointer < oldAlgorithmList.size()
-                        || newAlgorithmPointer < newAlgorithmList.size())) {
-            if (newAlgorithmPointer > oldAlgorithmPointer
-                    || (fromOld && newAlgorithmPointer == oldAlgorithmPointer)) {
-                if (!map.containsKey(oldAlgorithmList.get(oldAlgorithmPointer))) {
-                    map.put(oldAlgorithmList.get(oldAlgorithmPointer),
-                            OLD_ALGORITHM);
-                }
-                oldAlgorithmPointer++;
+    /**
+     * N個のランキングをマルチリービングしてページを取得する
+     * 
+     * @param userId  アクセスしたユーザーのID
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @param rankers 統合するランキング(先頭が基準)
+     * @return [Array<JobPost>] 募集のリスト
+     */
+    public List<JobPost> multileaving(Integer userId, Integer page, Integer perPage, List<Ranker> rankers) {
+        return this.multileavingPage(userId, page, perPage, null, rankers).getItems();
+    }
+
+    /**
+     * N個のランキングをTeam Draft Multileavingで統合し、カーソル付きでページを取得する。
+     * 先頭のランキングを基準(旧アルゴリズムに相当)とし、インターリービング対象ページより後は基準のランキングから取得する。
+     * 各アイテムの取得元はランキングの名前と、ランキングの番号のビットマスクで返す
+     * 
+     * @param userId  アクセスしたユーザーのID
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @param cursor  前ページで返却したカーソル(無い場合はnull)
+     * @param rankers 統合するランキング(先頭が基準。InterleavingEngine.MAX_RANKERS個まで)
+     * @return 当該ページのアイテムリストと次ページのカーソル
+     * @throws IllegalArgumentException ランキングが無い、またはMAX_RANKERSを超える場合
+     */
+    public InterleavingPage multileavingPage(Integer userId, Integer page, Integer perPage, String cursor,
+            List<Ranker> rankers) {
+        if (rankers.isEmpty() || rankers.size() > InterleavingEngine.MAX_RANKERS) {
+            throw new IllegalArgumentException("ランキングの数が不正です: " + rankers.size());
+        }
+        long startNanos = metrics.start();
+        long startAllocated = metrics.allocatedBytes();
+        ExperimentConfig config = experimentConfig.get();
+        Integer interleavingPageCount = config.getInterleavingPageCount();
+        if (page > config.getMaxPage()) {
+            metrics.increment(InterleavingMetrics.Counter.MAX_PAGE_EXCEEDED);
+            return new InterleavingPage(new ArrayList<>(), null);
+        }
+
+        LocalDate today = seedProvider.today();
+        this.recordConfig(today, config);
+        String strategyName = multileavingName(rankers);
+        InterleavingCache.Key key = new InterleavingCache.Key(userId, today, perPage, interleavingPageCount,
+                strategyName);
+
+        InterleavingCache.Entry entry = interleavingCache.get(key);
+        if (entry == null) {
+            entry = interleavingCache.put(key,
+                    this.computeMultileaving(userId, today, interleavingPageCount * perPage, rankers));
+        }
+        InterleavingPage multileavingPage = this.selectPage(userId, today, page, perPage, config, strategyName,
+                rankers.get(0), entry, cursor);
+        metrics.recordPage(page, perPage, multileavingPage.getItems().size(), startNanos, startAllocated);
+        return multileavingPage;
+    }
+
+    /**
+     * マルチリービングのキャッシュのキー・カーソルに使用する名前
+     * ランキングの名前をURLエンコードして連結するため、ランキングの組み合わせ(順序を含む)が異なれば必ず異なる名前となる。
+     * エンコード後は区切り文字(",")やカーソルの区切り文字(":")を含まない
+     */
+    private static String multileavingName(List<Ranker> rankers) {
+        StringJoiner joiner = new StringJoiner(",", "multileaving(", ")");
+        for (Ranker ranker : rankers) {
+            joiner.add(URLEncoder.encode(ranker.name(), StandardCharsets.UTF_8));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 複数ユーザのページを一括で取得する
+     * ランキングの取得はアルゴリズム毎に1回にまとめ、ユーザ毎の統合処理は並列で行う。
+     * 戦略はユーザ毎に選択し、各ユーザの結果は{@link #interleaving(Integer, Integer, Integer)}と同じになる
+     * 
+     * @param userIds アクセスしたユーザーのIDの集合
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @return ユーザID毎の募集のリスト(userIdsの順序を維持する)
+     */
+    public Map<Integer, List<JobPost>> interleavingBatch(Collection<Integer> userIds, Integer page,
+            Integer perPage) {
+        Map<Integer, List<JobPost>> resultMap = new LinkedHashMap<>();
+        List<Integer> distinctUserIds = new ArrayList<>(new LinkedHashSet<>(userIds));
+        ExperimentConfig config = experimentConfig.get();
+        Integer interleavingPageCount = config.getInterleavingPageCount();
+
+        if (page > config.getMaxPage()) {
+            metrics.increment(InterleavingMetrics.Counter.MAX_PAGE_EXCEEDED);
+            for (Integer userId : distinctUserIds) {
+                resultMap.put(userId, new ArrayList<>());
+            }
+            return resultMap;
+        }
+
+        LocalDate today = seedProvider.today();
+        this.recordConfig(today, config);
+        Integer totalNeeded = interleavingPageCount * perPage;
+
+        // キャッシュに無いユーザのランキングのみ、アルゴリズム毎に一括で取得する
+        Map<Integer, InterleavingCache.Entry> entryMap = new ConcurrentHashMap<>();
+        Map<Integer, InterleavingStrategy> strategyMap = new HashMap<>();
+        List<Integer> missedUserIds = new ArrayList<>();
+        for (Integer userId : distinctUserIds) {
+            InterleavingStrategy strategy = config.getStrategySelector().select(userId);
+            strategyMap.put(userId, strategy);
+            InterleavingCache.Entry entry = this.getMaterializedEntry(userId, today, perPage, config, strategy);
+            if (entry == null) {
+                entry = interleavingCache.get(new InterleavingCache.Key(userId, today, perPage,
+                        interleavingPageCount, strategy.getName()));
+            }
+            if (entry == null) {
+                missedUserIds.add(userId);
             } else {
-                if (!map.containsKey(newAlgorithmList.get(newAlgorithmPointer))) {
-                    map.put(newAlgorithmList.get(newAlgorithmPointer),
-                            NEW_ALGORITHM);
-                }
-                newAlgorithmPointer++;
+                entryMap.put(userId, entry);
+            }
+        }
+        // 新旧アルゴリズムは並行して取得し、新アルゴリズムが取得できなかった場合はnullとなる
+        CompletableFuture<Map<Integer, List<Integer>>> oldFuture = CompletableFuture.completedFuture(Map.of());
+        CompletableFuture<Map<Integer, List<Integer>>> newFuture = CompletableFuture.completedFuture(Map.of());
+        long fetchStart = metrics.start();
+        if (!missedUserIds.isEmpty()) {
+            oldFuture = oldRankingSource.fetchBulk(missedUserIds, 0, totalNeeded)
+                    .orTimeout(oldRankingTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            newFuture = this.fetchNewAlgorithm(newRankingSource.fetchBulk(missedUserIds, 0, totalNeeded));
+        }
+        Map<Integer, List<Integer>> oldAlgorithmLists = this.awaitOldAlgorithm(oldFuture);
+        Map<Integer, List<Integer>> newAlgorithmLists = newFuture.join();
+        metrics.record(InterleavingMetrics.Stage.RANKING_FETCH, fetchStart);
+
+        // ユーザ毎の統合処理はチャンク数を制限した上で共通プールで並列に行う(呼び出し毎にスレッドを生成しない)
+        Map<Integer, List<JobPost>> pageMap = new ConcurrentHashMap<>();
+        int parallelism = Math.max(1, Math.min(BATCH_PARALLELISM, distinctUserIds.size()));
+        int chunkSize = (distinctUserIds.size() + parallelism - 1) / parallelism;
+        ExecutorService executor = ForkJoinPool.commonPool();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int from = 0; from < distinctUserIds.size(); from += chunkSize) {
+                List<Integer> chunk = distinctUserIds.subList(from,
+                        Math.min(from + chunkSize, distinctUserIds.size()));
+                futures.add(executor.submit(() -> {
+                    for (Integer userId : chunk) {
+                        InterleavingStrategy strategy = strategyMap.get(userId);
+                        InterleavingCache.Entry entry = entryMap.get(userId);
+                        if (entry == null) {
+                            List<Integer> newAlgorithmList = newAlgorithmLists == null ? null
+                                    : newAlgorithmLists.get(userId);
+                            entry = interleavingCache.put(
+                                    new InterleavingCache.Key(userId, today, perPage, interleavingPageCount,
+                                            strategy.getName()),
+                                    this.createInterleavingEntry(userId, today, totalNeeded, strategy,
+                                            oldAlgorithmLists.get(userId),
+                                            newAlgorithmList));
+                        }
+                        pageMap.put(userId,
+                                this.selectPage(userId, today, page, perPage, config, strategy.getName(), oldRanker,
+                                        entry, null).getItems());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("一括インターリービング処理が中断されました", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("一括インターリービング処理に失敗しました", e.getCause());
+        } finally {
+            // 共通プールは停止せず、失敗・中断時に未完了のチャンクのみ取り消す
+            for (Future<?> future : futures) {
+                future.cancel(true);
             }
         }
 
-        List<JobPost> interleavingList = this.createInterLeavingList(map);
+        for (Integer userId : distinctUserIds) {
+            resultMap.put(userId, pageMap.get(userId));
+        }
+        return resultMap;
+    }
+
+    /**
+     * インターリービング結果をキャッシュから取得し、存在しなければ計算してキャッシュに格納
+     * 事前に計算した結果がある場合はそれを使用する。
+     * 過去に表示した結果の再現(クリックの帰属など)には、応答用のキャッシュを使わない
+     * {@link #reproduceInterleavingEntry}を使用する
+     * 
+     * @param userId   アクセスしたユーザーのID
+     * @param today    シード値に使用する日付
+     * @param perPage  1ページあたりの要求するアイテム数
+     * @param strategy インターリービングの戦略
+     * @return インターリービング結果
+     */
+    public InterleavingCache.Entry getInterleavingEntry(Integer userId, LocalDate today, Integer perPage,
+            InterleavingStrategy strategy) {
+        return this.getInterleavingEntry(userId, today, perPage, experimentConfig.get(), strategy);
+    }
+
+    private InterleavingCache.Entry getInterleavingEntry(Integer userId, LocalDate today, Integer perPage,
+            ExperimentConfig config, InterleavingStrategy strategy) {
+        Integer interleavingPageCount = config.getInterleavingPageCount();
+        // 日付はシード値と同じものを使用し、キーとシード値の日付がずれないようにする
+        InterleavingCache.Key key = new InterleavingCache.Key(userId, today, perPage, interleavingPageCount,
+                strategy.getName());
 
-        return interleavingList;
+        InterleavingCache.Entry entry = this.getMaterializedEntry(userId, today, perPage, config, strategy);
+        if (entry != null) {
+            return entry;
+        }
+        entry = interleavingCache.get(key);
+        if (entry == null) {
+            entry = interleavingCache.put(key,
+                    this.computeInterleaving(userId, today, interleavingPageCount * perPage, strategy));
+        }
+        return entry;
+    }
+
+    /**
+     * 表示時のインターリービング結果を再現
+     * 同じユーザ・日付・戦略であれば同じシード値で計算するため、表示時と同じ結果となる。
+     * 応答用のキャッシュを埋めたり追い出したりしないよう、事前計算結果・応答用のキャッシュは使用せず、呼び出し側のキャッシュを使用する
+     * 
+     * @param userId   ユーザID
+     * @param date     表示した日付
+     * @param perPage  表示した1ページあたりのアイテム数
+     * @param config   表示時の実験設定
+     * @param strategy 表示時のインターリービングの戦略
+     * @param cache    再現した結果のキャッシュ
+     * @return インターリービング結果
+     */
+    InterleavingCache.Entry reproduceInterleavingEntry(Integer userId, LocalDate date, Integer perPage,
+            ExperimentConfig config, InterleavingStrategy strategy, InterleavingCache cache) {
+        Integer interleavingPageCount = config.getInterleavingPageCount();
+        InterleavingCache.Key key = new InterleavingCache.Key(userId, date, perPage, interleavingPageCount,
+                strategy.getName());
+        InterleavingCache.Entry entry = cache.get(key);
+        if (entry == null) {
+            entry = cache.put(key, this.computeInterleaving(userId, date, interleavingPageCount * perPage, strategy));
+        }
+        return entry;
+    }
+
+    /**
+     * 事前に計算したインターリービング結果を取得
+     * 
+     * 実験設定が再読み込みで差し替えられた場合は、計算時と戦略の割り当てが異なり得るため、事前計算の結果を破棄する
+     * 
+     * @param userId   アクセスしたユーザーのID
+     * @param today    シード値に使用する日付
+     * @param perPage  1ページあたりの要求するアイテム数
+     * @param config   実験設定
+     * @param strategy インターリービングの戦略
+     * @return インターリービング結果。未計算・日付や条件が異なる場合はnull(その場で計算する)
+     */
+    private InterleavingCache.Entry getMaterializedEntry(Integer userId, LocalDate today, Integer perPage,
+            ExperimentConfig config, InterleavingStrategy strategy) {
+        MaterializedInterleavingStore store = materializedStore.get();
+        if (store == null) {
+            return null;
+        }
+        if (!store.isBuiltWith(config)) {
+            // 別のスレッドが公開した新しい結果は破棄しない
+            if (materializedStore.compareAndSet(store, null)) {
+                LOGGER.info("実験設定が変更されたため、事前計算したインターリービング結果を破棄しました: date=" + store.getDate());
+            }
+            return null;
+        }
+        InterleavingCache.Entry entry = store.entry(userId, today, perPage, config, strategy.getName());
+        if (entry != null) {
+            metrics.increment(InterleavingMetrics.Counter.MATERIALIZED_HITS);
+        }
+        return entry;
     }
 
     /**
-     * 3ページ目以降クリック時に古いアルゴリズムからアイテムを取得
+     * キャッシュを使用せずにインターリービング結果を計算
+     * 事前計算({@link InterleavingMaterializer})で使用する
      * 
      * @param userId                ユーザID
-     * @param page                  ページ番号（1から始まる）
-     * @param perPage               1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @param date                  シード値に使用する日付
+     * @param perPage               1ページあたりの要求するアイテム数
      * @param interleavingPageCount インターリービング対象となるページ件数
-     * @param fullInterleavingList  インターリービング処理されたアイテムリスト
-     * @return pageItemList 当該ページのアイテムリスト
+     * @param strategy              インターリービングの戦略
+     * @return インターリービング結果
+     */
+    InterleavingCache.Entry computeInterleavingEntry(Integer userId, LocalDate date, Integer perPage,
+            Integer interleavingPageCount, InterleavingStrategy strategy) {
+        return this.computeInterleaving(userId, date, interleavingPageCount * perPage, strategy);
+    }
+
+    /**
+     * 事前に計算したインターリービング結果を公開
+     * 以降のリクエストは、日付などの条件が一致する場合にこの結果から返す
+     * 
+     * @param store 事前に計算したインターリービング結果(nullの場合は使用をやめる)
+     */
+    public void publishMaterialized(MaterializedInterleavingStore store) {
+        materializedStore.set(store);
+    }
+
+    /**
+     * 事前に計算したインターリービング結果の取得
+     * 
+     * @return 事前に計算したインターリービング結果。未計算の場合はnull
+     */
+    public MaterializedInterleavingStore getMaterializedStore() {
+        return materializedStore.get();
+    }
+
+    /**
+     * シード値の生成の取得
      * 
+     * @return シード値の生成と当日の日付の取得
      */
-    private List<JobPost> selectItemFromOldAlgorithm(Integer userId, Integer page, Integer perPage,
-            Integer interleavingPageCount, List<JobPost> fullInterleavingList) {
-        // インターリービング処理したIDを除外用リストとして保持
-        Set<Integer> excludedIds = fullInterleavingList.stream()
-                .map(JobPost::getId)
-                .collect(Collectors.toCollection(HashSet::new));
+    public SeedProvider getSeedProvider() {
+        return seedProvider;
+    }
 
-        // 1ページ～当該ページまでの旧アルゴリズムの全アイテムを呼び出し、重複アイテムを除外する。
-        List<Integer> totalOldAlgorithmIds = this.oldAlgorithm(userId, 1, page * perPage);
+    /**
+     * 現在の実験設定の取得
+     * 
+     * @return 実験設定
+     */
+    public ExperimentConfig getExperimentConfig() {
+        return experimentConfig.get();
+    }
 
-        List<JobPost> pageItemList = totalOldAlgorithmIds.stream()
-                .filter(id -> !excludedIds.contains(id)) // 除外処理
-                .skip(Math.max(0, (long) (page - interleavingPageCount - 1) * perPage)) // ページ飛ばし
-                .limit(perPage) // 1ページ分取得
-                .map(id -> { // JobPostオブジェクトに変換
-                    JobPost jobPost = new JobPost();
-                    jobPost.setId(id);
-                    jobPost.setSource(OLD_ALGORITHM);
-                    return jobPost;
-                })
-                .toList();
+    /**
+     * 指定した日付に使用した実験設定の取得
+     * 日付毎にその日最後に使用した設定をCONFIG_HISTORY_DAYS日分保持し、リクエストの無かった日は直前の日の設定とする。
+     * 保持している日付より前、またはまだリクエストを処理していない場合は現在の設定とする
+     * 
+     * @param date 日付
+     * @return 実験設定
+     */
+    public ExperimentConfig getExperimentConfig(LocalDate date) {
+        Map.Entry<LocalDate, ExperimentConfig> entry = configHistory.floorEntry(date);
+        return entry != null ? entry.getValue() : experimentConfig.get();
+    }
 
-        return pageItemList;
+    /**
+     * リクエストに使用した実験設定を日付毎に記録
+     * 日付か設定が変わった場合のみ書き込み、保持する日数を超えた分は破棄する
+     * 
+     * @param today  リクエストの日付
+     * @param config 実験設定
+     */
+    private void recordConfig(LocalDate today, ExperimentConfig config) {
+        if (configHistory.get(today) == config) {
+            return;
+        }
+        configHistory.put(today, config);
+        configHistory.headMap(today.minusDays(CONFIG_HISTORY_DAYS)).clear();
     }
 
     /**
-     * シード値の生成
+     * キャッシュの取得
+     * 
+     * @return インターリービング結果のキャッシュ
+     */
+    public InterleavingCache getInterleavingCache() {
+        return interleavingCache;
+    }
+
+    /**
+     * メトリクスの取得
+     * 
+     * @return 処理段階毎の処理時間などのメトリクス
+     */
+    public InterleavingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * ユーザに適用するインターリービングの戦略を取得
      * 
      * @param userId ユーザID
-     * @return seed シード値
+     * @return インターリービングの戦略
      */
-    private long createSeedValue(Integer userId) {
-        long seed;
-        try {
-            // シード値の固定 (ユーザーID + 今日の日付)
-            // シード値をユーザIDにすることで未ログイン時でもユーザ識別子を入れてインターリービング処理が適用されるようにする
-            // 本日日付を入れることで1日1回のアルゴリズム更新に対応する。
-            StringBuilder sb = new StringBuilder();
-            sb.append(userId);
-            sb.append(COLON);
-            sb.append(LocalDate.now().toString());
-            String input = sb.toString();
-
-            // SHA-256ハッシュ関数を使用してユーザIDのわずかな違いでもシード値の結果を変える
-            MessageDigest md = MessageDigest.getInstance(SHA_256);
-            byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            // ハッシュ結果（32バイト）の最初の8バイトをlong型に変換してシードにする
-            seed = ByteBuffer.wrap(hash).getLong();
-        } catch (NoSuchAlgorithmException e) {
-            // アルゴリズムが使えない場合別にシード値を生成
-            seed = Objects.hash(userId, LocalDate.now().toString());
-            LOGGER.warning(WARNING_CONTENTS);
+    public InterleavingStrategy selectStrategy(Integer userId) {
+        return experimentConfig.get().getStrategySelector().select(userId);
+    }
+
+    /**
+     * インターリービングを実装
+     * 
+     * @param userId      アクセスしたユーザーのID
+     * @param date        シード値に使用する日付
+     * @param totalNeeded インターリービング処理に必要となる総件数
+     * @param strategy    インターリービングの戦略
+     * @return インターリービング結果
+     */
+    private InterleavingCache.Entry computeInterleaving(Integer userId, LocalDate date, Integer totalNeeded,
+            InterleavingStrategy strategy) {
+        // 逐次統合できる戦略は、ランキングを必要な分だけ読み込みながら統合する
+        if (strategy instanceof IncrementalInterleavingStrategy incrementalStrategy) {
+            InterleavingIterator iterator = this.newInterleavingIterator(userId, date, totalNeeded,
+                    incrementalStrategy);
+            InterleavingEngine engine = InterleavingEngine.current();
+            long mergeStart = metrics.start();
+            engine.reset(totalNeeded);
+            while (engine.size() < totalNeeded && iterator.moveNext()) {
+                engine.append(iterator.getCurrentId(), iterator.getCurrentSource());
+            }
+            metrics.record(InterleavingMetrics.Stage.MERGE, mergeStart);
+            metrics.add(InterleavingMetrics.Counter.DEDUP_COLLISIONS, iterator.getDuplicateCount());
+            if (iterator.isDegraded()) {
+                metrics.increment(InterleavingMetrics.Counter.DEGRADED_RESULTS);
+                return InterleavingCache.Entry.degraded(engine.copyIds(), engine.copySources());
+            }
+            return InterleavingCache.Entry.of(engine.copyIds(), engine.copySources());
         }
 
-        return seed;
+        // インターリービング対象となる全データを取得
+        // 1,2ページ分(20件)を作るには、各アルゴリズムから最大20件ずつあれば足りる
+        // 新旧アルゴリズムは並行して取得し、遅い方の応答を待つだけで済むようにする
+        long fetchStart = metrics.start();
+        CompletableFuture<List<Integer>> oldFuture = oldRankingSource.fetch(userId, 0, totalNeeded)
+                .orTimeout(oldRankingTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        CompletableFuture<List<Integer>> newFuture = this.fetchNewAlgorithm(
+                newRankingSource.fetch(userId, 0, totalNeeded));
+
+        List<Integer> oldAlgorithmList = this.awaitOldAlgorithm(oldFuture);
+        List<Integer> newAlgorithmList = newFuture.join();
+        metrics.record(InterleavingMetrics.Stage.RANKING_FETCH, fetchStart);
+
+        return this.createInterleavingEntry(userId, date, totalNeeded, strategy, oldAlgorithmList,
+                newAlgorithmList);
+    }
+
+    /**
+     * ランキングを必要な分だけ読み込みながら統合するイテレータを生成
+     * 新旧アルゴリズムの最初のチャンクは並行して取得を開始する
+     * 
+     * @param userId      アクセスしたユーザーのID
+     * @param date        シード値に使用する日付
+     * @param totalNeeded 最初に必要となる見込みの件数
+     * @param strategy    インターリービングの戦略
+     * @return イテレータ
+     */
+    private InterleavingIterator newInterleavingIterator(Integer userId, LocalDate date, Integer totalNeeded,
+            IncrementalInterleavingStrategy strategy) {
+        // 重複が無ければ各アルゴリズムから半分ずつで足りるため、まずはその分だけ取得する
+        int initialChunkSize = (totalNeeded + 1) / 2;
+        RankingStream oldStream = new RankingStream(oldRankingSource, userId, oldRankingTimeout, initialChunkSize,
+                metrics);
+        RankingStream newStream = new RankingStream(newRankingSource, userId, newRankingTimeout, initialChunkSize,
+                metrics);
+        return new InterleavingIterator(strategy, this.createSeedValue(userId, date), oldStream, newStream);
+    }
+
+    /**
+     * 取得したランキングからインターリービング結果を生成
+     * 
+     * @param userId           アクセスしたユーザーのID
+     * @param date             シード値に使用する日付
+     * @param totalNeeded      インターリービング処理に必要となる総件数
+     * @param strategy         インターリービングの戦略
+     * @param oldAlgorithmList 旧アルゴリズムのIDリスト
+     * @param newAlgorithmList 新アルゴリズムのIDリスト(取得できなかった場合はnull)
+     * @return インターリービング結果
+     */
+    private InterleavingCache.Entry createInterleavingEntry(Integer userId, LocalDate date, Integer totalNeeded,
+            InterleavingStrategy strategy, List<Integer> oldAlgorithmList, List<Integer> newAlgorithmList) {
+        InterleavingEngine engine = InterleavingEngine.current();
+
+        // 新アルゴリズムが取得できなかった場合は旧アルゴリズムのみで返す
+        if (newAlgorithmList == null) {
+            engine.fill(oldAlgorithmList, InterleavingEngine.SOURCE_OLD, totalNeeded);
+            metrics.increment(InterleavingMetrics.Counter.DEGRADED_RESULTS);
+            return InterleavingCache.Entry.degraded(engine.copyIds(), engine.copySources());
+        }
+        // シード値なので同じユーザ、同じ日付、同じ戦略の場合は常に同じ順序を返す
+        // IDはint[]、取得元はbyteのまま統合し、JobPostは返却時にのみ生成する
+        long seed = this.createSeedValue(userId, date);
+        long mergeStart = metrics.start();
+        engine.merge(strategy, seed, oldAlgorithmList, newAlgorithmList, totalNeeded);
+        metrics.record(InterleavingMetrics.Stage.MERGE, mergeStart);
+        metrics.add(InterleavingMetrics.Counter.DEDUP_COLLISIONS, engine.duplicateCount());
+        return InterleavingCache.Entry.of(engine.copyIds(), engine.copySources());
+    }
+
+    /**
+     * N個のランキングを取得してマルチリービング結果を生成
+     * 基準のランキングは旧アルゴリズム、それ以外は新アルゴリズムと同じく扱い、取得できなかったランキングは除いて統合する
+     * 
+     * @param userId      アクセスしたユーザーのID
+     * @param date        シード値に使用する日付
+     * @param totalNeeded インターリービング処理に必要となる総件数
+     * @param rankers     統合するランキング(先頭が基準)
+     * @return マルチリービング結果
+     */
+    private InterleavingCache.Entry computeMultileaving(Integer userId, LocalDate date, Integer totalNeeded,
+            List<Ranker> rankers) {
+        // 全てのランキングを並行して取得する
+        long fetchStart = metrics.start();
+        List<CompletableFuture<List<Integer>>> futures = new ArrayList<>(rankers.size());
+        futures.add(rankers.get(0).rankingSource().fetch(userId, 0, totalNeeded)
+                .orTimeout(oldRankingTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        for (int i = 1; i < rankers.size(); i++) {
+            futures.add(this.fetchNewAlgorithm(rankers.get(i).rankingSource().fetch(userId, 0, totalNeeded)));
+        }
+
+        List<List<Integer>> rankingLists = new ArrayList<>(rankers.size());
+        rankingLists.add(this.awaitOldAlgorithm(futures.get(0)));
+        boolean degraded = false;
+        for (int i = 1; i < rankers.size(); i++) {
+            List<Integer> rankingList = futures.get(i).join();
+            if (rankingList == null) {
+                degraded = true;
+                rankingList = List.of();
+            }
+            rankingLists.add(rankingList);
+        }
+        metrics.record(InterleavingMetrics.Stage.RANKING_FETCH, fetchStart);
+
+        String[] sourceNames = new String[rankers.size()];
+        for (int i = 0; i < rankers.size(); i++) {
+            sourceNames[i] = rankers.get(i).name();
+        }
+
+        InterleavingEngine engine = InterleavingEngine.current();
+        long seed = this.createSeedValue(userId, date);
+        long mergeStart = metrics.start();
+        engine.multileave(seed, rankingLists, totalNeeded);
+        metrics.record(InterleavingMetrics.Stage.MERGE, mergeStart);
+        metrics.add(InterleavingMetrics.Counter.DEDUP_COLLISIONS, engine.duplicateCount());
+        if (degraded) {
+            metrics.increment(InterleavingMetrics.Counter.DEGRADED_RESULTS);
+            return InterleavingCache.Entry.degraded(engine.copyIds(), engine.copySources(), sourceNames);
+        }
+        return InterleavingCache.Entry.of(engine.copyIds(), engine.copySources(), sourceNames);
+    }
+
+    /**
+     * 新アルゴリズムの取得にタイムアウトを設定し、失敗した場合はnullを返すようにする
+     * 
+     * @param future 新アルゴリズムの取得処理
+     * @return 取得結果。タイムアウト・失敗した場合はnull
+     */
+    private <T> CompletableFuture<T> fetchNewAlgorithm(CompletableFuture<T> future) {
+        return future.orTimeout(newRankingTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    LOGGER.warning("新アルゴリズムのランキングを取得できないため、旧アルゴリズムのみで返します: " + e);
+                    return null;
+                });
     }
 
     /**
-     * Mapに格納されたアイテムをリストに格納
+     * 旧アルゴリズムの取得結果を待つ
      * 
-     * @param map インターリービング処理されたMap<ID,新or旧アルゴリズム>
-     * @return interleavingList インターリービング処理されたアイテムリスト
+     * @param future 旧アルゴリズムの取得処理
+     * @return 取得結果
+     * @throws IllegalStateException 取得に失敗・タイムアウトした場合
      */
-    private List<JobPost> createInterLeavingList(Map<Integer, String> map) {
-        // インターリービング処理によって新たに生成されるランキング
-        List<JobPost> interleavingList = new ArrayList<JobPost>();
+    private <T> T awaitOldAlgorithm(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("旧アルゴリズムのランキングを取得できません", e.getCause());
+        }
+    }
+
+    /**
+     * 3ページ目以降クリック時に古いアルゴリズム(マルチリービングの場合は基準のランキング)からアイテムを取得
+     * カーソルが無い場合は先頭から読み直し、カーソルがある場合は前ページの続きから必要な分だけ読み込む
+     * 
+     * @param userId                ユーザID
+     * @param today                 リクエストの日付
+     * @param page                  ページ番号（1から始まる）
+     * @param perPage               1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
+     * @param interleavingPageCount インターリービング対象となるページ件数
+     * @param maxPage               ページの上限
+     * @param strategyName          インターリービングの戦略の名前
+     * @param baseRanker            取得元のランキング
+     * @param excludedIds           インターリービング処理したID(除外用)
+     * @param degraded              除外用IDが新アルゴリズムを取得できずに生成した結果か
+     * @param cursor                前ページのカーソル(無い場合はnull)
+     * @return 当該ページのアイテムリストと次ページのカーソル
+     * 
+     */
+    private InterleavingPage selectItemFromOldAlgorithm(Integer userId, LocalDate today, Integer page,
+            Integer perPage, Integer interleavingPageCount, Integer maxPage, String strategyName, Ranker baseRanker,
+            IntHashSet excludedIds, boolean degraded, InterleavingCursor cursor) {
+        long replayStart = metrics.start();
+        int offset = 0;
+        int skippedCount = 0;
+        // 当該ページより前に表示済みのアイテム数(カーソルがある場合は読み飛ばし不要)
+        long skipItems = Math.max(0, (long) (page - interleavingPageCount - 1) * perPage);
+        if (cursor != null) {
+            offset = cursor.getOldAlgorithmOffset();
+            skippedCount = cursor.getSkippedCount();
+            skipItems = 0;
+        }
+        int initialSkippedCount = skippedCount;
+
+        List<JobPost> pageItemList = new ArrayList<>(perPage);
+        boolean exhausted = false;
+        while (pageItemList.size() < perPage && !exhausted) {
+            // 残りの重複件数は除外用IDの件数から既に除外した件数を引いた数を超えないため、その分だけ余分に読み込む
+            int remainingDuplicates = Math.max(0, excludedIds.size() - skippedCount);
+            int fetchSize = (int) Math.min(Integer.MAX_VALUE,
+                    skipItems + (perPage - pageItemList.size()) + Math.min(remainingDuplicates, perPage));
+            List<Integer> oldAlgorithmIds = this.awaitOldAlgorithm(baseRanker.rankingSource()
+                    .fetch(userId, offset, fetchSize).orTimeout(oldRankingTimeout.toMillis(), TimeUnit.MILLISECONDS));
+            exhausted = oldAlgorithmIds.size() < fetchSize;
+
+            for (Integer id : oldAlgorithmIds) {
+                if (pageItemList.size() == perPage) {
+                    break;
+                }
+                offset++;
+                // 除外処理
+                if (excludedIds.contains(id)) {
+                    skippedCount++;
+                    continue;
+                }
+                // ページ飛ばし
+                if (skipItems > 0) {
+                    skipItems--;
+                    continue;
+                }
+                // JobPostオブジェクトに変換
+                JobPost jobPost = new JobPost();
+                jobPost.setId(id);
+                jobPost.setSource(baseRanker.name());
+                jobPost.setSourceMask(1 << InterleavingEngine.SOURCE_OLD);
+                pageItemList.add(jobPost);
+            }
+        }
 
-        // 生成されたMapをリストに追加する
-        for (Map.Entry<Integer, String> entry : map.entrySet()) {
-            JobPost jobPost = new JobPost();
-            jobPost.setId(entry.getKey());
-            jobPost.setSource(entry.getValue());
-            interleavingList.add(jobPost);
+        // 旧アルゴリズムを最後まで読み切った場合、または最大ページに達した場合は次ページ無し
+        String nextCursor = null;
+        if (!(exhausted && pageItemList.size() < perPage) && page < maxPage) {
+            nextCursor = new InterleavingCursor(userId, today, perPage, interleavingPageCount, strategyName,
+                    page + 1, offset, skippedCount, degraded).encode();
         }
 
-        return interleavingList;
+        metrics.record(InterleavingMetrics.Stage.OLD_ALGORITHM_REPLAY, replayStart);
+        metrics.add(InterleavingMetrics.Counter.DEDUP_COLLISIONS, skippedCount - initialSkippedCount);
+        return new InterleavingPage(pageItemList, nextCursor);
+    }
+
+    /**
+     * シード値の生成
+     * 
+     * @param userId ユーザID
+     * @param date   日付
+     * @return seed シード値
+     */
+    private long createSeedValue(Integer userId, LocalDate date) {
+        // シード値の固定 (ユーザーID + 今日の日付)
+        // シード値をユーザIDにすることで未ログイン時でもユーザ識別子を入れてインターリービング処理が適用されるようにする
+        // 本日日付を入れることで1日1回のアルゴリズム更新に対応する。
+        // 日付の変換結果やMessageDigestはSeedProvider内で使い回す
+        long seedStart = metrics.start();
+        long seed = seedProvider.seed(userId, date);
+        metrics.record(InterleavingMetrics.Stage.SEED, seedStart);
+        return seed;
     }
 
     /**
      * @param [Integer] userId アクセスしたユーザーのID
      * @param [Integer] page ページ番号（1から始まる）
      * @param [Integer] perPage 1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
-     * @return 募集のIDのリスト
+     * @return 募集のIDのリスト(読み取り専用。ランキングの末尾を超えた分は含まない)
      */
     public List<Integer> oldAlgorithm(Integer userId, Integer page, Integer perPage) {
 
         // 具体的なランキングアルゴリズムの実装は不要です
-        // 適当なIDのリストを返すスタブを実装してください
-        // 例:
-        List<Integer> oldAlgorithmOriginalIds = Arrays.asList(15, 21, 40, 6, 39, 23, 30, 38, 1, 7, 14, 29, 37, 12, 36,
-                24, 18, 10, 13, 20,
-                3, 35, 22, 27, 34, 26, 11, 4, 5, 9, 17, 28, 32, 33, 8, 2, 31, 19, 16, 25);
-
-        List<Integer> oldAlgorithmSubListIds = oldAlgorithmOriginalIds.subList((page - 1) * perPage, page * perPage);
-        List<Integer> oldAlgorithmPerPageList = new ArrayList<>(oldAlgorithmSubListIds);
-
-        return oldAlgorithmPerPageList;
+        // 保持しているランキング(スタブ・ランキングファイル・ユーザ毎のランキング)から当該ページを返す
+        return oldRankingPages.page(userId, page, perPage);
 
     }
 
@@ -236,17 +1001,150 @@ public class CodeTest {
      * @param [Integer] userId アクセスしたユーザーのID
      * @param [Integer] page ページ番号（1から始まる）
      * @param [Integer] perPage 1ページあたりの要求するアイテム数（基本は10だが、場合によって異なる）
-     * @return 募集のIDのリスト
+     * @return 募集のIDのリスト(読み取り専用。ランキングの末尾を超えた分は含まない)
      */
     public List<Integer> newAlgorithm(Integer userId, Integer page, Integer perPage) {
         // 具体的なランキングアルゴリズムの実装は不要です
-        // 適当なIDのリストを返すスタブを実装してください
-        // 例:
-        List<Integer> newAlgorithmOriginalIds = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17,
-                18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40);
-        List<Integer> newAlgorithmSubListIds = newAlgorithmOriginalIds.subList((page - 1) * perPage, page * perPage);
-        List<Integer> newAlgorithmPerPageList = new ArrayList<>(newAlgorithmSubListIds);
-
-        return newAlgorithmPerPageList;
+        // 保持しているランキング(スタブ・ランキングファイル・ユーザ毎のランキング)から当該ページを返す
+        return newRankingPages.page(userId, page, perPage);
+    }
+
+    /**
+     * oldAlgorithmが返すランキングの取得(スタブのランキングの差し替えなどに使用する)
+     * 
+     * @return 旧アルゴリズムのランキング
+     */
+    public PagedRankingSource getOldRankingPages() {
+        return oldRankingPages;
+    }
+
+    /**
+     * newAlgorithmが返すランキングの取得(スタブのランキングの差し替えなどに使用する)
+     * 
+     * @return 新アルゴリズムのランキング
+     */
+    public PagedRankingSource getNewRankingPages() {
+        return newRankingPages;
+    }
+
+    /**
+     * CodeTestの生成
+     * 指定しなかった項目は既定値(スタブのランキング・既定のタイムアウト・Balanced戦略など)とする
+     */
+    public static final class Builder {
+
+        private RankingSource oldRankingSource;
+
+        private RankingSource newRankingSource;
+
+        private PagedRankingSource oldRankingPages;
+
+        private PagedRankingSource newRankingPages;
+
+        private Duration oldRankingTimeout = DEFAULT_RANKING_TIMEOUT;
+
+        private Duration newRankingTimeout = DEFAULT_RANKING_TIMEOUT;
+
+        private SeedProvider seedProvider;
+
+        private Supplier<ExperimentConfig> experimentConfig = () -> ExperimentConfig.DEFAULT;
+
+        private InterleavingCache interleavingCache;
+
+        private InterleavingMetrics metrics;
+
+        private Builder() {
+        }
+
+        /**
+         * インターリービングに使用するランキング取得元
+         *
+         * @param oldRankingSource 旧アルゴリズムのランキング取得元
+         * @param newRankingSource 新アルゴリズムのランキング取得元
+         * @return this
+         */
+        public Builder rankingSources(RankingSource oldRankingSource, RankingSource newRankingSource) {
+            this.oldRankingSource = Objects.requireNonNull(oldRankingSource);
+            this.newRankingSource = Objects.requireNonNull(newRankingSource);
+            return this;
+        }
+
+        /**
+         * oldAlgorithm・newAlgorithmが返すランキング
+         * ランキング取得元を指定しない場合は、インターリービングにもこのランキングを使用する
+         *
+         * @param oldRankingPages 旧アルゴリズムのランキング
+         * @param newRankingPages 新アルゴリズムのランキング
+         * @return this
+         */
+        public Builder rankingPages(PagedRankingSource oldRankingPages, PagedRankingSource newRankingPages) {
+            this.oldRankingPages = Objects.requireNonNull(oldRankingPages);
+            this.newRankingPages = Objects.requireNonNull(newRankingPages);
+            return this;
+        }
+
+        /**
+         * @param oldRankingTimeout 旧アルゴリズムの取得タイムアウト
+         * @param newRankingTimeout 新アルゴリズムの取得タイムアウト(超えた場合は旧アルゴリズムのみで返す)
+         * @return this
+         */
+        public Builder rankingTimeouts(Duration oldRankingTimeout, Duration newRankingTimeout) {
+            this.oldRankingTimeout = Objects.requireNonNull(oldRankingTimeout);
+            this.newRankingTimeout = Objects.requireNonNull(newRankingTimeout);
+            return this;
+        }
+
+        /**
+         * @param seedProvider シード値の生成(日付の取得に使用する時計もここで指定する)
+         * @return this
+         */
+        public Builder seedProvider(SeedProvider seedProvider) {
+            this.seedProvider = Objects.requireNonNull(seedProvider);
+            return this;
+        }
+
+        /**
+         * @param strategySelector ユーザ毎のインターリービングの戦略の選択(実験バケット毎の割り当てなど)
+         * @return this
+         */
+        public Builder strategySelector(InterleavingStrategySelector strategySelector) {
+            ExperimentConfig config = ExperimentConfig.of(strategySelector);
+            this.experimentConfig = () -> config;
+            return this;
+        }
+
+        /**
+         * 実験設定(ページ件数・ページの上限・ユーザ毎の戦略の選択)
+         * リクエスト毎に1度だけ取得するため、設定ファイルを読み込み直して差し替えると以降のリクエストから反映される
+         *
+         * @param experimentConfig 実験設定の取得(ExperimentConfigStoreなど)
+         * @return this
+         */
+        public Builder experimentConfig(Supplier<ExperimentConfig> experimentConfig) {
+            this.experimentConfig = Objects.requireNonNull(experimentConfig);
+            return this;
+        }
+
+        /**
+         * @param interleavingCache インターリービング結果のキャッシュ(最大件数・有効期間を変える場合に指定する)
+         * @return this
+         */
+        public Builder interleavingCache(InterleavingCache interleavingCache) {
+            this.interleavingCache = Objects.requireNonNull(interleavingCache);
+            return this;
+        }
+
+        /**
+         * @param metrics メトリクス(指定しない場合はシステムプロパティに従う)
+         * @return this
+         */
+        public Builder metrics(InterleavingMetrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics);
+            return this;
+        }
+
+        public CodeTest build() {
+            return new CodeTest(this);
+        }
     }
 }
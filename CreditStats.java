@@ -0,0 +1,104 @@
+/**
+ * 実験毎のクリックの帰属結果の集計値(取得時点のスナップショット)
+ * セッション(ユーザ・日付)毎にクリック数の多い方を勝ちとし、勝ち数の差を符号検定で評価する
+ */
+public final class CreditStats {
+
+    private final String experiment;
+
+    private final long oldClicks;
+
+    private final long newClicks;
+
+    private final long oldWins;
+
+    private final long newWins;
+
+    private final long ties;
+
+    public CreditStats(String experiment, long oldClicks, long newClicks, long oldWins, long newWins, long ties) {
+        this.experiment = experiment;
+        this.oldClicks = oldClicks;
+        this.newClicks = newClicks;
+        this.oldWins = oldWins;
+        this.newWins = newWins;
+        this.ties = ties;
+    }
+
+    /**
+     * 新アルゴリズムの優位度
+     * (新アルゴリズムの勝ち数 + 引き分け数/2) / セッション数 - 0.5 で、正であれば新アルゴリズムが優位
+     *
+     * @return 優位度(-0.5～0.5)。セッションが無い場合は0
+     */
+    public double getDelta() {
+        long sessions = oldWins + newWins + ties;
+        if (sessions == 0) {
+            return 0;
+        }
+        return (newWins + ties / 2.0) / sessions - 0.5;
+    }
+
+    /**
+     * 引き分けを除いた勝ち数の差の標準得点(符号検定の正規近似)
+     *
+     * @return 標準得点。正であれば新アルゴリズムが優位
+     */
+    public double getZScore() {
+        long decided = oldWins + newWins;
+        if (decided == 0) {
+            return 0;
+        }
+        return (newWins - oldWins) / Math.sqrt(decided);
+    }
+
+    /**
+     * 新旧アルゴリズムに差が無いとした場合の両側p値
+     *
+     * @return p値
+     */
+    public double getPValue() {
+        return erfc(Math.abs(this.getZScore()) / Math.sqrt(2));
+    }
+
+    /**
+     * 相補誤差関数の近似(Abramowitz and Stegun 7.1.26、誤差1.5e-7以下)
+     */
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.3275911 * x);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027
+                + t * 1.061405429))));
+        return poly * Math.exp(-x * x);
+    }
+
+    public String getExperiment() {
+        return experiment;
+    }
+
+    public long getOldClicks() {
+        return oldClicks;
+    }
+
+    public long getNewClicks() {
+        return newClicks;
+    }
+
+    public long getOldWins() {
+        return oldWins;
+    }
+
+    public long getNewWins() {
+        return newWins;
+    }
+
+    public long getTies() {
+        return ties;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{experiment:%s, oldClicks:%d, newClicks:%d, oldWins:%d, newWins:%d, ties:%d,"
+                + " delta:%.4f, z:%.3f, p:%.4g}", experiment, oldClicks, newClicks, oldWins, newWins, ties,
+                this.getDelta(), this.getZScore(), this.getPValue());
+    }
+}
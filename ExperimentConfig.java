@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * インターリービングの実験設定
+ * インターリービング対象となるページ件数・ページの上限・戦略と、実験バケット毎の戦略の割り当てを持つ。
+ * 生成後は変更せず、設定の変更は新しいインスタンスへの参照の差し替えで行う({@link ExperimentConfigStore})。
+ * リクエストの処理では最初に1度だけ取得したインスタンスを使い続けるため、処理中に差し替えられても新旧の設定が混ざらない
+ *
+ * 設定ファイル(プロパティ形式)の例:
+ * <pre>
+ * # インターリービング対象となるページ件数
+ * interleavingPageCount=2
+ * # ページの上限(これを超えるページは固定メッセージと固定アイテムを返す)
+ * maxPage=100
+ * # 割り当てなかったバケットの戦略
+ * defaultStrategy=balanced
+ * # 戦略毎に割り当てるバケット数(全100バケットを先頭から順に割り当てる)
+ * allocation=teamDraft:20,probabilistic:10
+ * </pre>
+ */
+public final class ExperimentConfig {
+
+    public static final String INTERLEAVING_PAGE_COUNT = "interleavingPageCount";
+
+    public static final String MAX_PAGE = "maxPage";
+
+    public static final String DEFAULT_STRATEGY = "defaultStrategy";
+
+    public static final String ALLOCATION = "allocation";
+
+    /* 全ユーザにBalanced Interleavingを使用し、ページ件数・ページの上限はCodeTestの既定値とする */
+    public static final ExperimentConfig DEFAULT = new ExperimentConfig(CodeTest.interleavingPageCount,
+            CodeTest.MAX_PAGE, InterleavingStrategy.BALANCED, new LinkedHashMap<>());
+
+    private final int interleavingPageCount;
+
+    private final int maxPage;
+
+    private final InterleavingStrategy defaultStrategy;
+
+    /* 戦略毎に割り当てるバケット数(割り当ての順序を維持する) */
+    private final Map<InterleavingStrategy, Integer> allocation;
+
+    private final InterleavingStrategySelector strategySelector;
+
+    /**
+     * @param interleavingPageCount インターリービング対象となるページ件数
+     * @param maxPage               ページの上限
+     * @param defaultStrategy       割り当てなかったバケットの戦略
+     * @param allocation            戦略毎に割り当てるバケット数(先頭から順に割り当てる)
+     */
+    public ExperimentConfig(int interleavingPageCount, int maxPage, InterleavingStrategy defaultStrategy,
+            LinkedHashMap<InterleavingStrategy, Integer> allocation) {
+        this(interleavingPageCount, maxPage, defaultStrategy, allocation,
+                allocation.isEmpty() ? InterleavingStrategySelector.fixed(defaultStrategy)
+                        : new BucketStrategySelector(allocation, defaultStrategy));
+    }
+
+    private ExperimentConfig(int interleavingPageCount, int maxPage, InterleavingStrategy defaultStrategy,
+            LinkedHashMap<InterleavingStrategy, Integer> allocation, InterleavingStrategySelector strategySelector) {
+        if (interleavingPageCount < 1 || interleavingPageCount > maxPage) {
+            throw new IllegalArgumentException(
+                    "ページ件数が不正です: interleavingPageCount=" + interleavingPageCount + " maxPage=" + maxPage);
+        }
+        this.interleavingPageCount = interleavingPageCount;
+        this.maxPage = maxPage;
+        this.defaultStrategy = Objects.requireNonNull(defaultStrategy);
+        this.allocation = Collections.unmodifiableMap(new LinkedHashMap<>(allocation));
+        this.strategySelector = Objects.requireNonNull(strategySelector);
+    }
+
+    /**
+     * 既定のページ件数・ページの上限で、戦略の選択のみを指定した設定
+     *
+     * @param strategySelector ユーザ毎のインターリービングの戦略の選択
+     * @return 設定
+     */
+    public static ExperimentConfig of(InterleavingStrategySelector strategySelector) {
+        return new ExperimentConfig(CodeTest.interleavingPageCount, CodeTest.MAX_PAGE,
+                InterleavingStrategy.BALANCED, new LinkedHashMap<>(), strategySelector);
+    }
+
+    /**
+     * 設定ファイルを読み込む
+     *
+     * @param path 設定ファイル
+     * @return 設定
+     * @throws IOException              読み込めない場合
+     * @throws IllegalArgumentException 設定値が不正な場合
+     */
+    public static ExperimentConfig load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+
+    /**
+     * プロパティから設定を生成
+     * 指定しなかった項目は既定値とする
+     *
+     * @param properties 設定値
+     * @return 設定
+     * @throws IllegalArgumentException 設定値が不正な場合
+     */
+    public static ExperimentConfig parse(Properties properties) {
+        int interleavingPageCount = parseInt(properties, INTERLEAVING_PAGE_COUNT, DEFAULT.interleavingPageCount);
+        int maxPage = parseInt(properties, MAX_PAGE, DEFAULT.maxPage);
+        InterleavingStrategy defaultStrategy = InterleavingStrategy.of(
+                properties.getProperty(DEFAULT_STRATEGY, DEFAULT.defaultStrategy.getName()).trim());
+
+        LinkedHashMap<InterleavingStrategy, Integer> allocation = new LinkedHashMap<>();
+        String allocationValue = properties.getProperty(ALLOCATION, "").trim();
+        if (!allocationValue.isEmpty()) {
+            for (String item : allocationValue.split(",")) {
+                String[] pair = item.trim().split(":");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("不正な割り当てです: " + item);
+                }
+                InterleavingStrategy strategy = InterleavingStrategy.of(pair[0].trim());
+                if (allocation.put(strategy, parseInt(ALLOCATION, pair[1].trim())) != null) {
+                    throw new IllegalArgumentException("割り当てが重複しています: " + item);
+                }
+            }
+        }
+        return new ExperimentConfig(interleavingPageCount, maxPage, defaultStrategy, allocation);
+    }
+
+    public int getInterleavingPageCount() {
+        return interleavingPageCount;
+    }
+
+    public int getMaxPage() {
+        return maxPage;
+    }
+
+    public InterleavingStrategy getDefaultStrategy() {
+        return defaultStrategy;
+    }
+
+    /**
+     * @return 戦略毎に割り当てるバケット数(読み取り専用)
+     */
+    public Map<InterleavingStrategy, Integer> getAllocation() {
+        return allocation;
+    }
+
+    public InterleavingStrategySelector getStrategySelector() {
+        return strategySelector;
+    }
+
+    private static int parseInt(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : parseInt(name, value.trim());
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("不正な" + name + "です: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{interleavingPageCount:").append(interleavingPageCount).append(", maxPage:").append(maxPage)
+                .append(", defaultStrategy:").append(defaultStrategy.getName()).append(", allocation:{");
+        boolean first = true;
+        for (Map.Entry<InterleavingStrategy, Integer> entry : allocation.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey().getName()).append(':').append(entry.getValue());
+            first = false;
+        }
+        return sb.append("}}").toString();
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 設定ファイルから読み込んだ実験設定
+ * 一定間隔でファイルの更新日時を確認し、変更されていれば読み込み直して設定への参照を差し替える。
+ * 確認・読み込みは参照したスレッドのうち1つのみが行い、他のスレッドは読み込み中も現在の設定を参照する。
+ * 読み込めない・設定値が不正な場合は現在の設定を使い続ける。
+ * 設定ファイルは別名で書き出してから置き換える(mv)ことを推奨する
+ */
+public final class ExperimentConfigStore implements Supplier<ExperimentConfig> {
+
+    /* 設定ファイルの更新を確認する間隔 */
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(5);
+
+    private static final Logger LOGGER = Logger.getLogger(ExperimentConfigStore.class.getName());
+
+    private final Path path;
+
+    private final long checkIntervalNanos;
+
+    private final AtomicReference<ExperimentConfig> config;
+
+    /* 最後に読み込みを試みた時点のファイルの更新日時(不正な設定の場合も、ファイルが変わるまでは読み込み直さない) */
+    private volatile FileTime checkedModifiedTime;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    /* 次に更新を確認する時刻(System.nanoTime) */
+    private volatile long nextCheckNanos;
+
+    /**
+     * @param path 設定ファイル
+     */
+    public ExperimentConfigStore(Path path) {
+        this(path, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * 設定ファイルを読み込む。ファイルが無い・読み込めない場合は既定の設定で開始する
+     *
+     * @param path          設定ファイル
+     * @param checkInterval 設定ファイルの更新を確認する間隔
+     */
+    public ExperimentConfigStore(Path path, Duration checkInterval) {
+        this.path = Objects.requireNonNull(path);
+        this.checkIntervalNanos = checkInterval.toNanos();
+        this.config = new AtomicReference<>(ExperimentConfig.DEFAULT);
+        this.nextCheckNanos = System.nanoTime();
+        this.reload();
+    }
+
+    /**
+     * 現在の設定を取得
+     * 確認の間隔が過ぎている場合は設定ファイルの更新を確認する
+     *
+     * @return 設定
+     */
+    @Override
+    public ExperimentConfig get() {
+        if (System.nanoTime() - nextCheckNanos >= 0) {
+            this.reload();
+        }
+        return config.get();
+    }
+
+    /**
+     * 設定ファイルの更新を確認し、変更されていれば読み込み直す
+     * 他のスレッドが確認中の場合は何もしない
+     *
+     * @return 読み込み直した場合true
+     */
+    public boolean reload() {
+        if (!reloadLock.tryLock()) {
+            return false;
+        }
+        try {
+            nextCheckNanos = System.nanoTime() + checkIntervalNanos;
+            FileTime modifiedTime;
+            try {
+                modifiedTime = Files.getLastModifiedTime(path);
+            } catch (NoSuchFileException e) {
+                // ファイルを削除しても設定は変えない(誤操作で既定値に戻らないようにする)
+                return false;
+            }
+            if (modifiedTime.equals(checkedModifiedTime)) {
+                return false;
+            }
+            checkedModifiedTime = modifiedTime;
+            ExperimentConfig next = ExperimentConfig.load(path);
+            if (!Files.getLastModifiedTime(path).equals(modifiedTime)) {
+                // 書き込み途中のファイルを読んだ可能性があるため使用せず、次の確認で読み込み直す
+                checkedModifiedTime = null;
+                return false;
+            }
+            ExperimentConfig previous = config.getAndSet(next);
+            LOGGER.info("実験設定を読み込みました: " + previous + " -> " + next);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warning("実験設定を読み込めません(" + path + "): " + e);
+            return false;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * 1件ずつ逐次統合できるインターリービングの戦略
+ * ランキングの先頭から順に読み進めるだけで統合できる戦略が実装し、ランキングを必要な分だけ取得できるようにする。
+ * 同じシード値・同じ入力であれば、merge(一括統合)と同じ結果になること
+ */
+public interface IncrementalInterleavingStrategy extends InterleavingStrategy {
+
+    /**
+     * 逐次統合を開始する(統合前に乱数を使用する場合はここで使用する)
+     *
+     * @param state 逐次統合の状態
+     */
+    void begin(InterleavingState state);
+
+    /**
+     * 次にどちらのアルゴリズムから取り出すか決める
+     *
+     * @param state        逐次統合の状態
+     * @param oldAvailable 旧アルゴリズムに読み込めるIDが残っているか
+     * @param newAvailable 新アルゴリズムに読み込めるIDが残っているか(いずれかはtrue)
+     * @return 旧アルゴリズムから取り出す場合true
+     */
+    boolean pickOld(InterleavingState state, boolean oldAvailable, boolean newAvailable);
+
+    /**
+     * 取り出す側を決める前に、統合済みのIDを読み飛ばすか
+     *
+     * @return 読み飛ばす場合true(Team Draft)、取り出してから重複を除く場合false(Balanced)
+     */
+    boolean skipsMergedIds();
+}
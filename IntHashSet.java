@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * int型専用のオープンアドレス法によるハッシュセット
+ * Integerへのボクシングやエントリオブジェクトの生成を行わないため、重複除外を割り当て無しで行える。
+ * 世代番号で使用中のスロットを判定するため、clearは配列を初期化せずに済む
+ */
+public final class IntHashSet {
+
+    /* 黄金比に基づくハッシュの乗数 */
+    private static final int PHI = 0x9E3779B9;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+
+    /* スロット毎の世代番号。現在の世代と一致するスロットのみ使用中とみなす */
+    private int[] generations;
+
+    private int generation = 1;
+
+    private int mask;
+
+    private int shift;
+
+    private int size;
+
+    public IntHashSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize 格納する想定件数
+     */
+    public IntHashSet(int expectedSize) {
+        this.allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * 値を追加
+     *
+     * @param value 値
+     * @return 新たに追加した場合true、既に存在した場合false
+     */
+    public boolean add(int value) {
+        if (size * 2 >= keys.length) {
+            this.rehash(keys.length * 2);
+        }
+        int slot = this.slotOf(value);
+        while (generations[slot] == generation) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        generations[slot] = generation;
+        size++;
+        return true;
+    }
+
+    /**
+     * 値が含まれるか判定
+     *
+     * @param value 値
+     * @return 含まれる場合true
+     */
+    public boolean contains(int value) {
+        int slot = this.slotOf(value);
+        while (generations[slot] == generation) {
+            if (keys[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 全件削除し、指定件数を格納できる容量を確保する
+     *
+     * @param expectedSize 次に格納する想定件数
+     */
+    public void clear(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length) {
+            this.allocate(capacity);
+            return;
+        }
+        size = 0;
+        generation++;
+        // 世代番号が一周した場合のみ配列を初期化する
+        if (generation == 0) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(int value) {
+        return (value * PHI) >>> shift;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        generations = new int[capacity];
+        generation = 1;
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldGenerations = generations;
+        int oldGeneration = generation;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGenerations[i] == oldGeneration) {
+                this.add(oldKeys[i]);
+            }
+        }
+    }
+
+    /**
+     * 負荷率が1/2以下となる2の累乗の容量
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+        return Math.max(MIN_CAPACITY, capacity);
+    }
+}
@@ -0,0 +1,406 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * インターリービング結果のキャッシュ
+ * 同じユーザ・同じ日付であればシード値が変わらず結果も変わらないため、ページングの度に再計算せずに使い回す。
+ * 複数スレッドからの同時アクセスで1つのロックに集中しないよう、キーのハッシュ値でセグメントに分け、
+ * セグメント毎にロックとLRUを持つ(最大件数・最も使われていないものの破棄もセグメント単位となる)
+ */
+public class InterleavingCache {
+
+    /* キャッシュの最大件数 */
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    /* キャッシュの有効期間 */
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(30);
+
+    /* 新アルゴリズムを取得できずに生成した結果の有効期間(同じ閲覧の間はページングで同じ結果を返し、回復後は再計算する) */
+    public static final Duration DEFAULT_DEGRADED_TTL = Duration.ofMinutes(5);
+
+    /* セグメント数の上限(2の累乗) */
+    public static final int MAX_SEGMENT_COUNT = 64;
+
+    private final long ttlNanos;
+
+    private final long degradedTtlNanos;
+
+    private final Segment[] segments;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    /* これまでに扱った最新の日付。セグメント毎の日付とは別に、前日付のキーをセグメントに依らず弾くために使う */
+    private final AtomicReference<LocalDate> latestDate = new AtomicReference<>();
+
+    public InterleavingCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize キャッシュの最大件数
+     * @param ttl     キャッシュの有効期間
+     */
+    public InterleavingCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, ttl.compareTo(DEFAULT_DEGRADED_TTL) < 0 ? ttl : DEFAULT_DEGRADED_TTL);
+    }
+
+    /**
+     * @param maxSize     キャッシュの最大件数
+     * @param ttl         キャッシュの有効期間
+     * @param degradedTtl 新アルゴリズムを取得できずに生成した結果の有効期間
+     */
+    public InterleavingCache(int maxSize, Duration ttl, Duration degradedTtl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.degradedTtlNanos = degradedTtl.toNanos();
+        // コア数の数倍のセグメントに分ける。最大件数が少ない場合は1セグメントに1件以上となるよう減らす
+        int segmentCount = Math.min(Integer.highestOneBit(maxSize), Math.min(MAX_SEGMENT_COUNT,
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((maxSize + segmentCount - 1) / segmentCount);
+        }
+    }
+
+    /**
+     * キャッシュのキー
+     *
+     * @param userId                ユーザID
+     * @param date                  シード値の生成に使用した日付
+     * @param perPage               1ページあたりのアイテム数
+     * @param interleavingPageCount インターリービング対象となるページ件数
+     * @param strategy              インターリービングの戦略の名前
+     */
+    public record Key(Integer userId, LocalDate date, Integer perPage, Integer interleavingPageCount,
+            String strategy) {
+    }
+
+    /**
+     * キャッシュするインターリービング結果
+     * IDと取得元をプリミティブ配列で保持し、JobPostは返却するページの分だけ生成する
+     */
+    public static final class Entry {
+
+        /* 新旧アルゴリズムのインターリービングの取得元の名前 */
+        private static final String[] PAIRWISE_SOURCE_NAMES = { CodeTest.OLD_ALGORITHM, CodeTest.NEW_ALGORITHM };
+
+        /* インターリービング処理されたID */
+        private final int[] ids;
+
+        /* IDの取得元(InterleavingEngine.SOURCE_OLD / SOURCE_NEW、マルチリービングの場合はランキングの番号) */
+        private final byte[] sources;
+
+        /* 取得元の番号毎の名前 */
+        private final String[] sourceNames;
+
+        /* 3ページ目以降で使用する除外用ID */
+        private final IntHashSet excludedIds;
+
+        /* 新アルゴリズム(マルチリービングの場合はいずれかのランキング)を取得できずに生成した結果か */
+        private final boolean degraded;
+
+        private final long createdAt;
+
+        private Entry(int[] ids, byte[] sources, String[] sourceNames, boolean degraded, long createdAt) {
+            IntHashSet idSet = new IntHashSet(ids.length);
+            for (int id : ids) {
+                idSet.add(id);
+            }
+            this.ids = ids;
+            this.sources = sources;
+            this.sourceNames = sourceNames;
+            this.excludedIds = idSet;
+            this.degraded = degraded;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * インターリービング結果からエントリを生成
+         *
+         * @param ids     インターリービング処理されたID
+         * @param sources IDの取得元
+         * @return エントリ
+         */
+        public static Entry of(int[] ids, byte[] sources) {
+            return of(ids, sources, PAIRWISE_SOURCE_NAMES);
+        }
+
+        /**
+         * マルチリービング結果からエントリを生成
+         *
+         * @param ids         マルチリービング処理されたID
+         * @param sources     IDの取得元(ランキングの番号)
+         * @param sourceNames ランキングの番号毎の名前
+         * @return エントリ
+         */
+        public static Entry of(int[] ids, byte[] sources, String[] sourceNames) {
+            return new Entry(ids, sources, sourceNames, false, System.nanoTime());
+        }
+
+        /**
+         * 旧アルゴリズムのみで生成した結果からエントリを生成(キャッシュには短い有効期間で格納する)
+         *
+         * @param ids     旧アルゴリズムのID
+         * @param sources IDの取得元
+         * @return エントリ
+         */
+        public static Entry degraded(int[] ids, byte[] sources) {
+            return degraded(ids, sources, PAIRWISE_SOURCE_NAMES);
+        }
+
+        /**
+         * 一部のランキングを取得できずに生成したマルチリービング結果からエントリを生成(キャッシュには短い有効期間で格納する)
+         *
+         * @param ids         マルチリービング処理されたID
+         * @param sources     IDの取得元(ランキングの番号)
+         * @param sourceNames ランキングの番号毎の名前
+         * @return エントリ
+         */
+        public static Entry degraded(int[] ids, byte[] sources, String[] sourceNames) {
+            return new Entry(ids, sources, sourceNames, true, System.nanoTime());
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * IDと取得元を配列に複写
+         *
+         * @param destIds     複写先のID
+         * @param destSources 複写先の取得元
+         * @param offset      複写先の開始位置
+         */
+        public void copyTo(int[] destIds, byte[] destSources, int offset) {
+            System.arraycopy(ids, 0, destIds, offset, ids.length);
+            System.arraycopy(sources, 0, destSources, offset, sources.length);
+        }
+
+        /**
+         * 指定範囲のアイテムをJobPostとして生成
+         *
+         * @param from 開始位置(含む)
+         * @param to   終了位置(含まない)
+         * @return アイテムリスト
+         */
+        public List<JobPost> getJobPosts(int from, int to) {
+            List<JobPost> jobPostList = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                jobPostList.add(this.getJobPost(i));
+            }
+            return jobPostList;
+        }
+
+        /**
+         * インターリービング処理されたアイテムリスト
+         * 参照された要素のみJobPostを生成するビューを返す
+         *
+         * @return アイテムリスト
+         */
+        public List<JobPost> getInterleavingList() {
+            return new AbstractList<JobPost>() {
+                @Override
+                public JobPost get(int index) {
+                    return getJobPost(index);
+                }
+
+                @Override
+                public int size() {
+                    return ids.length;
+                }
+            };
+        }
+
+        private JobPost getJobPost(int index) {
+            JobPost jobPost = new JobPost();
+            jobPost.setId(ids[index]);
+            jobPost.setSource(sourceNames[sources[index]]);
+            jobPost.setSourceMask(1 << sources[index]);
+            return jobPost;
+        }
+
+        /**
+         * 指定範囲にあるIDの取得元を検索
+         *
+         * @param id   ID
+         * @param from 開始位置(含む)
+         * @param to   終了位置(含まない)
+         * @return 取得元。範囲内に無い場合は-1
+         */
+        public int sourceOf(int id, int from, int to) {
+            // 範囲内に無いIDは除外用IDで先に弾く
+            if (!excludedIds.contains(id)) {
+                return -1;
+            }
+            for (int i = Math.max(0, from); i < Math.min(to, ids.length); i++) {
+                if (ids[i] == id) {
+                    return sources[i];
+                }
+            }
+            return -1;
+        }
+
+        public IntHashSet getExcludedIds() {
+            return excludedIds;
+        }
+
+        public boolean isDegraded() {
+            return degraded;
+        }
+    }
+
+    /**
+     * キャッシュからインターリービング結果を取得
+     *
+     * @param key キャッシュのキー
+     * @return キャッシュされた結果。存在しない・期限切れ・前日付のキーの場合はnull
+     */
+    public Entry get(Key key) {
+        Entry entry = this.isStale(key) ? null : this.segmentOf(key).get(key);
+        if (entry == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * インターリービング結果をキャッシュに格納
+     * 旧アルゴリズムのみで生成した結果は、1ページ目と2ページ目以降で異なるリストから返さないよう格納するが、
+     * 1日中インターリービングされなくならないよう短い有効期間で破棄する。
+     * 日付を跨いだ後に届いた前日付の結果は、当日分の容量を使わないよう格納しない
+     *
+     * @param key   キャッシュのキー
+     * @param entry インターリービング結果
+     * @return 格納したエントリ
+     */
+    public Entry put(Key key, Entry entry) {
+        if (this.isStale(key)) {
+            return entry;
+        }
+        this.segmentOf(key).put(key, entry);
+        return entry;
+    }
+
+    /**
+     * 最新の日付より前のキーか判定し、最新の日付を更新する
+     *
+     * @param key キャッシュのキー
+     * @return 前日付のキーの場合true
+     */
+    private boolean isStale(Key key) {
+        LocalDate latest = latestDate.accumulateAndGet(key.date(),
+                (current, date) -> current == null || date.isAfter(current) ? date : current);
+        return key.date().isBefore(latest);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentOf(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * キャッシュのセグメント
+     */
+    private final class Segment {
+
+        private final int maxSize;
+
+        /* アクセス順のLinkedHashMapにすることで、先頭が最も使われていないエントリとなる(LRU) */
+        private final LinkedHashMap<Key, Entry> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+
+        /* 現在キャッシュしている日付。日付が変わるとシード値が変わるため全件破棄する */
+        private LocalDate currentDate;
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private synchronized Entry get(Key key) {
+            if (!this.rollOverIfNeeded(key.date())) {
+                return null;
+            }
+
+            Entry entry = entryMap.get(key);
+            if (entry != null
+                    && System.nanoTime() - entry.createdAt > (entry.degraded ? degradedTtlNanos : ttlNanos)) {
+                entryMap.remove(key);
+                evictionCount.increment();
+                entry = null;
+            }
+            return entry;
+        }
+
+        private synchronized void put(Key key, Entry entry) {
+            if (!this.rollOverIfNeeded(key.date())) {
+                return;
+            }
+
+            entryMap.put(key, entry);
+
+            // 最大件数を超えた場合は最も使われていないものから破棄する
+            Iterator<Map.Entry<Key, Entry>> iterator = entryMap.entrySet().iterator();
+            while (entryMap.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+
+        /**
+         * 日付が進んだ場合は前日分のキャッシュを全て破棄する
+         *
+         * @param date リクエストの日付
+         * @return 現在キャッシュしている日付のリクエストの場合true
+         */
+        private boolean rollOverIfNeeded(LocalDate date) {
+            if (currentDate != null && !date.isAfter(currentDate)) {
+                // 日付を跨いだ直後に前日付のリクエストが遅れて届いても当日分は破棄せず、前日付のエントリは扱わない
+                return date.equals(currentDate);
+            }
+            evictionCount.add(entryMap.size());
+            entryMap.clear();
+            currentDate = date;
+            return true;
+        }
+
+        private synchronized int size() {
+            return entryMap.size();
+        }
+    }
+}
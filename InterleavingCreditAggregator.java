@@ -0,0 +1,178 @@
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * クリックを新旧アルゴリズムに帰属させ、実験(インターリービングの戦略)毎に勝ち数を集計する
+ * ユーザが見たインターリービング結果は、表示した日付の実験設定・戦略と日付から求めたシード値で再計算するため、
+ * 日付を跨いで届いたクリックも帰属できる。再計算した結果は応答用とは別のキャッシュに保持する。
+ * 集計値はLongAdder、セッション毎のクリック数はAtomicLongで保持するため、複数スレッドからロック無しで記録できる
+ */
+public class InterleavingCreditAggregator {
+
+    /* セッションの勝敗 */
+    private static final int OUTCOME_NONE = 0;
+
+    private static final int OUTCOME_OLD_WIN = 1;
+
+    private static final int OUTCOME_NEW_WIN = 2;
+
+    private static final int OUTCOME_TIE = 3;
+
+    /* セッション毎のクリック数は、上位32ビットに旧アルゴリズム・下位32ビットに新アルゴリズムの分を詰める */
+    private static final long OLD_CLICK = 1L << 32;
+
+    private static final long NEW_CLICK = 1L;
+
+    private final CodeTest codeTest;
+
+    /* 再計算したインターリービング結果(応答用のキャッシュを埋めたり追い出したりしないよう分ける) */
+    private final InterleavingCache interleavingCache;
+
+    /* 実験毎の集計値 */
+    private final ConcurrentHashMap<String, ExperimentCounters> experimentMap = new ConcurrentHashMap<>();
+
+    /* 帰属できなかったクリック数(インターリービング対象外のページ、表示していないIDなど) */
+    private final LongAdder unattributedCount = new LongAdder();
+
+    /**
+     * @param codeTest インターリービング結果の再計算に使用するサービス
+     */
+    public InterleavingCreditAggregator(CodeTest codeTest) {
+        this(codeTest, new InterleavingCache());
+    }
+
+    /**
+     * @param codeTest          インターリービング結果の再計算に使用するサービス
+     * @param interleavingCache 再計算したインターリービング結果のキャッシュ
+     */
+    public InterleavingCreditAggregator(CodeTest codeTest, InterleavingCache interleavingCache) {
+        this.codeTest = Objects.requireNonNull(codeTest);
+        this.interleavingCache = Objects.requireNonNull(interleavingCache);
+    }
+
+    /**
+     * クリックを記録
+     *
+     * @param event クリックのイベント
+     * @return 新旧アルゴリズムのどちらかに帰属できた場合true
+     */
+    public boolean record(ClickEvent event) {
+        // 表示した日付の設定・戦略で再計算する
+        ExperimentConfig config = codeTest.getExperimentConfig(event.date());
+        // インターリービング対象外のページは旧アルゴリズムのみのため比較に使用しない
+        if (event.page() < 1 || event.page() > config.getInterleavingPageCount()) {
+            unattributedCount.increment();
+            return false;
+        }
+
+        InterleavingStrategy strategy = config.getStrategySelector().select(event.userId());
+        InterleavingCache.Entry entry = codeTest.reproduceInterleavingEntry(event.userId(), event.date(),
+                event.perPage(), config, strategy, interleavingCache);
+        // 旧アルゴリズムのみで返した結果は、どのクリックも旧アルゴリズムの勝ちになるため使用しない
+        int start = (event.page() - 1) * event.perPage();
+        int source = entry.isDegraded() ? -1 : entry.sourceOf(event.jobId(), start, start + event.perPage());
+        if (source < 0) {
+            unattributedCount.increment();
+            return false;
+        }
+
+        ExperimentCounters counters = experimentMap.computeIfAbsent(strategy.getName(), ExperimentCounters::new);
+        counters.record(event.userId(), event.date(), source == InterleavingEngine.SOURCE_OLD);
+        return true;
+    }
+
+    /**
+     * 指定した日付より前のセッションのクリック数を破棄する
+     * 破棄したセッションの勝敗は集計値に残るが、以降に届いたクリックは新しいセッションとして数える
+     *
+     * @param date この日付より前のセッションを破棄する
+     */
+    public void expireSessionsBefore(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        for (ExperimentCounters counters : experimentMap.values()) {
+            counters.sessionMap.keySet().removeIf(key -> (key >> 32) < epochDay);
+        }
+    }
+
+    /**
+     * 実験毎の集計値を取得
+     *
+     * @return 実験名毎の集計値
+     */
+    public Map<String, CreditStats> getStats() {
+        Map<String, CreditStats> statsMap = new TreeMap<>();
+        for (ExperimentCounters counters : experimentMap.values()) {
+            statsMap.put(counters.experiment, counters.snapshot());
+        }
+        return statsMap;
+    }
+
+    public long getUnattributedCount() {
+        return unattributedCount.sum();
+    }
+
+    /**
+     * 実験毎の集計値
+     */
+    private static final class ExperimentCounters {
+
+        private final String experiment;
+
+        private final LongAdder oldClicks = new LongAdder();
+
+        private final LongAdder newClicks = new LongAdder();
+
+        /* 勝敗の種類(OUTCOME_*)毎のセッション数 */
+        private final LongAdder[] outcomeCounts = { new LongAdder(), new LongAdder(), new LongAdder(),
+                new LongAdder() };
+
+        /* (エポック日 << 32 | ユーザID)毎のクリック数 */
+        private final ConcurrentHashMap<Long, AtomicLong> sessionMap = new ConcurrentHashMap<>();
+
+        private ExperimentCounters(String experiment) {
+            this.experiment = experiment;
+        }
+
+        private void record(Integer userId, LocalDate date, boolean fromOld) {
+            (fromOld ? oldClicks : newClicks).increment();
+
+            long sessionKey = (date.toEpochDay() << 32) | (userId & 0xFFFFFFFFL);
+            AtomicLong clicks = sessionMap.computeIfAbsent(sessionKey, key -> new AtomicLong());
+            long delta = fromOld ? OLD_CLICK : NEW_CLICK;
+            long previous = clicks.getAndAdd(delta);
+
+            // クリックの度にセッションの勝敗の変化を反映し、集計を締めずに途中経過を参照できるようにする
+            int previousOutcome = outcome(previous);
+            int currentOutcome = outcome(previous + delta);
+            if (previousOutcome != currentOutcome) {
+                if (previousOutcome != OUTCOME_NONE) {
+                    outcomeCounts[previousOutcome].decrement();
+                }
+                outcomeCounts[currentOutcome].increment();
+            }
+        }
+
+        private CreditStats snapshot() {
+            return new CreditStats(experiment, oldClicks.sum(), newClicks.sum(),
+                    outcomeCounts[OUTCOME_OLD_WIN].sum(), outcomeCounts[OUTCOME_NEW_WIN].sum(),
+                    outcomeCounts[OUTCOME_TIE].sum());
+        }
+
+        private static int outcome(long clicks) {
+            long oldCount = clicks >>> 32;
+            long newCount = clicks & 0xFFFFFFFFL;
+            if (oldCount == 0 && newCount == 0) {
+                return OUTCOME_NONE;
+            }
+            if (oldCount == newCount) {
+                return OUTCOME_TIE;
+            }
+            return oldCount > newCount ? OUTCOME_OLD_WIN : OUTCOME_NEW_WIN;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * 3ページ目以降のページングを再開するためのカーソル
+ * 旧アルゴリズムの読み込み位置と、除外済みアイテムの件数を保持する。
+ * 読み込み位置は発行時の除外用IDに対するものなので、新アルゴリズムを取得できずに生成した結果から発行したかも保持し、
+ * 再開時の結果と異なる場合は使用しない。
+ * 呼び出し側には中身を意識させないよう、文字列トークンとして受け渡す。
+ */
+public class InterleavingCursor {
+
+    /* トークンのフォーマットバージョン */
+    private static final String VERSION = "v3";
+
+    private static final String SEPARATOR = ":";
+
+    private static final int FIELD_COUNT = 10;
+
+    private final Integer userId;
+
+    private final LocalDate date;
+
+    private final Integer perPage;
+
+    private final Integer interleavingPageCount;
+
+    /* インターリービングの戦略の名前(除外用IDが戦略毎に異なるため) */
+    private final String strategy;
+
+    /* このカーソルで取得するページ番号 */
+    private final Integer page;
+
+    /* 旧アルゴリズムの次の読み込み位置(0から始まる) */
+    private final Integer oldAlgorithmOffset;
+
+    /* これまでに重複として除外したアイテム数 */
+    private final Integer skippedCount;
+
+    /* 新アルゴリズム(マルチリービングの場合はいずれかのランキング)を取得できずに生成した結果から発行したか */
+    private final boolean degraded;
+
+    public InterleavingCursor(Integer userId, LocalDate date, Integer perPage, Integer interleavingPageCount,
+            String strategy, Integer page, Integer oldAlgorithmOffset, Integer skippedCount, boolean degraded) {
+        this.userId = userId;
+        this.date = date;
+        this.perPage = perPage;
+        this.interleavingPageCount = interleavingPageCount;
+        this.strategy = strategy;
+        this.page = page;
+        this.oldAlgorithmOffset = oldAlgorithmOffset;
+        this.skippedCount = skippedCount;
+        this.degraded = degraded;
+    }
+
+    /**
+     * カーソルがリクエストに対応するものか判定
+     *
+     * @param userId                ユーザID
+     * @param date                  リクエストの日付
+     * @param perPage               1ページあたりのアイテム数
+     * @param interleavingPageCount インターリービング対象となるページ件数
+     * @param strategy              インターリービングの戦略の名前
+     * @param page                  ページ番号
+     * @param degraded              新アルゴリズムを取得できずに生成した結果か
+     * @return 対応する場合true
+     */
+    public boolean matches(Integer userId, LocalDate date, Integer perPage, Integer interleavingPageCount,
+            String strategy, Integer page, boolean degraded) {
+        return this.userId.equals(userId)
+                && this.date.equals(date)
+                && this.perPage.equals(perPage)
+                && this.interleavingPageCount.equals(interleavingPageCount)
+                && this.strategy.equals(strategy)
+                && this.page.equals(page)
+                && this.degraded == degraded;
+    }
+
+    /**
+     * トークン文字列に変換
+     *
+     * @return トークン
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION);
+        sb.append(SEPARATOR).append(userId);
+        sb.append(SEPARATOR).append(date.toEpochDay());
+        sb.append(SEPARATOR).append(perPage);
+        sb.append(SEPARATOR).append(interleavingPageCount);
+        sb.append(SEPARATOR).append(strategy);
+        sb.append(SEPARATOR).append(page);
+        sb.append(SEPARATOR).append(oldAlgorithmOffset);
+        sb.append(SEPARATOR).append(skippedCount);
+        sb.append(SEPARATOR).append(degraded ? 1 : 0);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * トークン文字列からカーソルを復元
+     *
+     * @param token トークン
+     * @return カーソル
+     * @throws IllegalArgumentException トークンが不正な場合
+     */
+    public static InterleavingCursor decode(String token) {
+        String[] fields;
+        try {
+            fields = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不正なカーソルです: " + token, e);
+        }
+        if (fields.length != FIELD_COUNT || !VERSION.equals(fields[0])) {
+            throw new IllegalArgumentException("不正なカーソルです: " + token);
+        }
+
+        if (!"0".equals(fields[9]) && !"1".equals(fields[9])) {
+            throw new IllegalArgumentException("不正なカーソルです: " + token);
+        }
+
+        try {
+            InterleavingCursor cursor = new InterleavingCursor(
+                    Integer.valueOf(fields[1]),
+                    LocalDate.ofEpochDay(Long.parseLong(fields[2])),
+                    Integer.valueOf(fields[3]),
+                    Integer.valueOf(fields[4]),
+                    fields[5],
+                    Integer.valueOf(fields[6]),
+                    Integer.valueOf(fields[7]),
+                    Integer.valueOf(fields[8]),
+                    "1".equals(fields[9]));
+            if (cursor.oldAlgorithmOffset < 0 || cursor.skippedCount < 0) {
+                throw new IllegalArgumentException("不正なカーソルです: " + token);
+            }
+            return cursor;
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IllegalArgumentException("不正なカーソルです: " + token, e);
+        }
+    }
+
+    public Integer getPage() {
+        return page;
+    }
+
+    public Integer getOldAlgorithmOffset() {
+        return oldAlgorithmOffset;
+    }
+
+    public Integer getSkippedCount() {
+        return skippedCount;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+}
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * インターリービングの統合処理で共有する、スレッド毎の作業領域
+ * IDはint[]、取得元はbyteで保持し、重複除外にはIntHashSetを使用する。
+ * 各InterleavingStrategyはこの作業領域に結果を書き込むため、統合処理の中ではオブジェクトを生成しない。
+ * 結果は次に同じスレッドで統合処理を行うまで有効なので、保持する場合はcopyIds/copySourcesで複製すること
+ */
+public final class InterleavingEngine {
+
+    /* 旧アルゴリズム */
+    public static final byte SOURCE_OLD = 0;
+
+    /* 新アルゴリズム */
+    public static final byte SOURCE_NEW = 1;
+
+    /* マルチリービングで統合できるランキングの最大数(取得元をintのビットマスクで表せる数) */
+    public static final int MAX_RANKERS = Integer.SIZE;
+
+    private static final ThreadLocal<InterleavingEngine> ENGINE = ThreadLocal.withInitial(InterleavingEngine::new);
+
+    /* 統合済みのID */
+    private final IntHashSet seenIds = new IntHashSet();
+
+    /* シード値を設定し直して使い回す乱数(new Random(seed)と同じ乱数列になる) */
+    private final Random random = new Random();
+
+    private int[] oldInput = new int[0];
+
+    private int[] newInput = new int[0];
+
+    /* マルチリービングの入力(ランキング毎のID)と件数 */
+    private int[][] multiInputs = new int[0][];
+
+    private int[] multiLengths = new int[0];
+
+    /* 戦略毎の作業用配列(ランキング毎の読み込み位置など) */
+    private final int[][] intBuffers = new int[2][0];
+
+    /* 戦略毎の作業用配列(Probabilistic Interleavingの重みなど) */
+    private final double[][] weightBuffers = new double[4][0];
+
+    private int[] ids = new int[0];
+
+    private byte[] sources = new byte[0];
+
+    private int size;
+
+    /* 統合済みとして追加しなかったIDの数(メトリクス用) */
+    private int duplicateCount;
+
+    private InterleavingEngine() {
+    }
+
+    /**
+     * 現在のスレッドの作業領域を取得
+     *
+     * @return 作業領域
+     */
+    public static InterleavingEngine current() {
+        return ENGINE.get();
+    }
+
+    /**
+     * リストで取得したランキングを指定した戦略で統合
+     * 入力は作業領域のint[]に詰め替えてから統合する
+     *
+     * @param strategy         インターリービングの戦略
+     * @param seed             シード値
+     * @param oldAlgorithmList 旧アルゴリズムのIDリスト
+     * @param newAlgorithmList 新アルゴリズムのIDリスト
+     * @param totalNeeded      必要となる総件数
+     * @return 統合した件数
+     */
+    public int merge(InterleavingStrategy strategy, long seed, List<Integer> oldAlgorithmList,
+            List<Integer> newAlgorithmList, int totalNeeded) {
+        oldInput = ensureCapacity(oldInput, oldAlgorithmList.size());
+        newInput = ensureCapacity(newInput, newAlgorithmList.size());
+        for (int i = 0; i < oldAlgorithmList.size(); i++) {
+            oldInput[i] = oldAlgorithmList.get(i);
+        }
+        for (int i = 0; i < newAlgorithmList.size(); i++) {
+            newInput[i] = newAlgorithmList.get(i);
+        }
+        return strategy.merge(this, seed, oldInput, oldAlgorithmList.size(), newInput, newAlgorithmList.size(),
+                totalNeeded);
+    }
+
+    /**
+     * N個のランキングをTeam Draft Multileavingで統合
+     * 取得元には統合したランキングの番号(0から始まる)が格納される
+     *
+     * @param seed         シード値
+     * @param rankingLists ランキング毎のIDリスト(MAX_RANKERS個まで)
+     * @param totalNeeded  必要となる総件数
+     * @return 統合した件数
+     * @throws IllegalArgumentException ランキングの数がMAX_RANKERSを超える場合
+     */
+    public int multileave(long seed, List<List<Integer>> rankingLists, int totalNeeded) {
+        int rankerCount = rankingLists.size();
+        if (rankerCount > MAX_RANKERS) {
+            throw new IllegalArgumentException("統合できるランキングは" + MAX_RANKERS + "個までです: " + rankerCount);
+        }
+        if (multiInputs.length < rankerCount) {
+            multiInputs = Arrays.copyOf(multiInputs, MAX_RANKERS);
+            multiLengths = new int[MAX_RANKERS];
+        }
+        for (int ranker = 0; ranker < rankerCount; ranker++) {
+            List<Integer> rankingList = rankingLists.get(ranker);
+            int[] input = multiInputs[ranker] == null ? new int[0] : multiInputs[ranker];
+            input = ensureCapacity(input, rankingList.size());
+            for (int i = 0; i < rankingList.size(); i++) {
+                input[i] = rankingList.get(i);
+            }
+            multiInputs[ranker] = input;
+            multiLengths[ranker] = rankingList.size();
+        }
+        return TeamDraftMultileaving.merge(this, seed, multiInputs, multiLengths, rankerCount, totalNeeded);
+    }
+
+    /**
+     * 1つのランキングのみから、重複を除いて先頭から必要な件数を取り出す
+     * (新アルゴリズムが取得できなかった場合に使用する)
+     *
+     * @param rankingList IDリスト
+     * @param source      取得元
+     * @param totalNeeded 必要となる総件数
+     * @return 取り出した件数
+     */
+    public int fill(List<Integer> rankingList, byte source, int totalNeeded) {
+        this.reset(Math.min(totalNeeded, rankingList.size()));
+        for (int i = 0; i < rankingList.size() && size < totalNeeded; i++) {
+            this.append(rankingList.get(i), source);
+        }
+        return size;
+    }
+
+    /**
+     * 統合を開始する前に作業領域を初期化
+     *
+     * @param capacity 統合する最大件数
+     */
+    public void reset(int capacity) {
+        ids = ensureCapacity(ids, capacity);
+        if (sources.length < capacity) {
+            sources = new byte[Math.max(capacity, sources.length * 2)];
+        }
+        seenIds.clear(capacity);
+        size = 0;
+        duplicateCount = 0;
+    }
+
+    /**
+     * 統合済みでなければ末尾に追加
+     *
+     * @param id     ID
+     * @param source 取得元
+     * @return 追加した場合true、既に統合済みの場合false
+     */
+    public boolean append(int id, byte source) {
+        if (!seenIds.add(id)) {
+            duplicateCount++;
+            return false;
+        }
+        ids[size] = id;
+        sources[size] = source;
+        size++;
+        return true;
+    }
+
+    /**
+     * 統合済みか判定
+     *
+     * @param id ID
+     * @return 統合済みの場合true
+     */
+    public boolean contains(int id) {
+        return seenIds.contains(id);
+    }
+
+    /**
+     * 統合済みか判定し、統合済みの場合は重複として数える
+     * (appendを呼ばずに読み飛ばす戦略で使用する)
+     *
+     * @param id ID
+     * @return 統合済みの場合true
+     */
+    public boolean skipIfMerged(int id) {
+        if (!seenIds.contains(id)) {
+            return false;
+        }
+        duplicateCount++;
+        return true;
+    }
+
+    /**
+     * 直前の統合処理で重複として読み飛ばしたIDの数
+     */
+    public int duplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * シード値を設定した乱数を取得
+     *
+     * @param seed シード値
+     * @return 乱数
+     */
+    public Random random(long seed) {
+        random.setSeed(seed);
+        return random;
+    }
+
+    /**
+     * 作業用のdouble配列を取得(内容は初期化されない)
+     *
+     * @param index    配列の番号(0～3)
+     * @param capacity 必要な長さ
+     * @return 作業用配列
+     */
+    public double[] weightBuffer(int index, int capacity) {
+        if (weightBuffers[index].length < capacity) {
+            weightBuffers[index] = new double[Math.max(capacity, weightBuffers[index].length * 2)];
+        }
+        return weightBuffers[index];
+    }
+
+    /**
+     * 作業用のint配列を取得(内容は初期化されない)
+     *
+     * @param index    配列の番号(0～1)
+     * @param capacity 必要な長さ
+     * @return 作業用配列
+     */
+    public int[] intBuffer(int index, int capacity) {
+        intBuffers[index] = ensureCapacity(intBuffers[index], capacity);
+        return intBuffers[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public byte sourceAt(int index) {
+        return sources[index];
+    }
+
+    /**
+     * 統合結果のIDを複製
+     *
+     * @return ID
+     */
+    public int[] copyIds() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * 統合結果の取得元を複製
+     *
+     * @return 取得元
+     */
+    public byte[] copySources() {
+        return Arrays.copyOf(sources, size);
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        return new int[Math.max(capacity, array.length * 2)];
+    }
+}
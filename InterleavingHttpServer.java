@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * インターリービングを返すHTTPサーバ
+ * JDK標準のcom.sun.net.httpserverを使用し、リクエスト毎に仮想スレッドで処理する。
+ * <ul>
+ * <li>GET /interleave?userId=&amp;page=&amp;perPage=&amp;cursor= : 当該ページのアイテムと次ページのカーソル
+ * (JSON。format=binaryの場合は{@link JobPostSerializer}のバイナリ形式)</li>
+ * <li>GET /metrics : メトリクス(テキスト形式。format=jsonの場合はJSON形式)</li>
+ * </ul>
+ * 1つのCodeTestを全リクエストで共有する
+ *
+ * 使い方: java InterleavingHttpServer [ポート番号] [実験設定ファイル]
+ * 実験設定ファイルを指定した場合は、サーバを再起動せずに設定ファイルの変更を反映する({@link ExperimentConfigStore})
+ */
+public class InterleavingHttpServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    /* 1ページあたりのアイテム数の上限 */
+    public static final int MAX_PER_PAGE = 100;
+
+    private static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
+
+    private static final String CONTENT_TYPE_TEXT = "text/plain; charset=UTF-8";
+
+    private static final String CONTENT_TYPE_BINARY = "application/octet-stream";
+
+    static {
+        // キープアライブで連続したリクエストの応答がNagleアルゴリズムと遅延ACKで約40ms待たされないよう、
+        // TCP_NODELAYを有効にする(設定値はHttpServerの初回生成時に読まれるため、生成前に設定する。起動オプションでの指定を優先する)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final CodeTest service;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param service インターリービングを計算するサービス
+     * @param port    待ち受けるポート番号(0の場合は空いているポート)
+     * @throws IOException ポートを使用できない場合
+     */
+    public InterleavingHttpServer(CodeTest service, int port) throws IOException {
+        this.service = Objects.requireNonNull(service);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/interleave", this::handleInterleave);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        CodeTest.Builder builder = CodeTest.builder();
+        if (args.length > 1) {
+            builder.experimentConfig(new ExperimentConfigStore(Path.of(args[1])));
+        }
+        InterleavingHttpServer server = new InterleavingHttpServer(builder.build(), port);
+        server.start();
+        CodeTest.LOGGER.info("インターリービングのHTTPサーバを開始しました: port=" + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * 待ち受けているポート番号
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleInterleave(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, CONTENT_TYPE_JSON, errorJson("GETのみ使用できます"));
+                return;
+            }
+            Map<String, String> query;
+            Integer userId;
+            Integer page;
+            Integer perPage;
+            try {
+                query = parseQuery(exchange.getRequestURI().getRawQuery());
+                userId = parseInt(query, "userId", null);
+                page = parseInt(query, "page", 1);
+                perPage = parseInt(query, "perPage", CodeTest.DEFAULT_PER_PAGE);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, CONTENT_TYPE_JSON, errorJson(e.getMessage()));
+                return;
+            }
+            if (page < 1 || perPage < 1 || perPage > MAX_PER_PAGE) {
+                send(exchange, 400, CONTENT_TYPE_JSON,
+                        errorJson("不正なページ指定です: page=" + page + " perPage=" + perPage));
+                return;
+            }
+
+            // レスポンスは全て直列化してからヘッダを送信する(ヘッダの送信後に500へ切り替えることはできないため)
+            // 仮想スレッドはリクエスト毎に生成されるため、直列化もリクエスト毎に生成する
+            boolean binary = "binary".equals(query.get("format"));
+            JobPostSerializer serializer = new JobPostSerializer();
+            try {
+                InterleavingPage interleavingPage = service.interleavingPage(userId, page, perPage,
+                        query.get("cursor"));
+                if (binary) {
+                    serializer.writeBinary(interleavingPage);
+                } else {
+                    serializer.writeJson(interleavingPage);
+                }
+            } catch (RuntimeException e) {
+                CodeTest.LOGGER.warning("インターリービングのリクエストの処理に失敗しました: " + e);
+                send(exchange, 500, CONTENT_TYPE_JSON, errorJson("内部エラーが発生しました"));
+                return;
+            }
+            send(exchange, 200, binary ? CONTENT_TYPE_BINARY : CONTENT_TYPE_JSON, serializer);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            InterleavingMetrics metrics = service.getMetrics();
+            if ("json".equals(parseQuery(exchange.getRequestURI().getRawQuery()).get("format"))) {
+                send(exchange, 200, CONTENT_TYPE_JSON, metrics.getJson());
+            } else {
+                send(exchange, 200, CONTENT_TYPE_TEXT, metrics.getText());
+            }
+        }
+    }
+
+    private static String errorJson(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        appendString(sb, message);
+        return sb.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            query.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static Integer parseInt(Map<String, String> query, String name, Integer defaultValue) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            if (defaultValue == null) {
+                throw new IllegalArgumentException(name + "を指定してください");
+            }
+            return defaultValue;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("不正な" + name + "です: " + value);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, JobPostSerializer serializer)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, serializer.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            serializer.writeTo(out);
+        }
+    }
+}
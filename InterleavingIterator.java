@@ -0,0 +1,178 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 新旧アルゴリズムのランキングを必要な分だけ読み込みながら統合するイテレータ
+ * 統合済みのIDで読み込んだ分を使い切った側のみ、次のチャンクを取得する。
+ * 新アルゴリズムの取得に失敗した場合は、以降を旧アルゴリズムのみで統合する
+ */
+public class InterleavingIterator implements Iterator<JobPost> {
+
+    private final IncrementalInterleavingStrategy strategy;
+
+    private final InterleavingState state;
+
+    private final RankingStream oldStream;
+
+    /* 取得に失敗した場合はnull */
+    private RankingStream newStream;
+
+    private final IntHashSet mergedIds = new IntHashSet();
+
+    /* 新アルゴリズムを取得できずに統合したか */
+    private boolean degraded;
+
+    /* 次に返すIDと取得元 */
+    private int currentId;
+
+    private byte currentSource;
+
+    private boolean ready;
+
+    private boolean finished;
+
+    /* 統合済みとして読み飛ばしたIDの数(メトリクス用) */
+    private int duplicateCount;
+
+    /**
+     * @param strategy  インターリービングの戦略
+     * @param seed      シード値
+     * @param oldStream 旧アルゴリズムのランキング
+     * @param newStream 新アルゴリズムのランキング
+     */
+    public InterleavingIterator(IncrementalInterleavingStrategy strategy, long seed, RankingStream oldStream,
+            RankingStream newStream) {
+        this.strategy = strategy;
+        this.state = new InterleavingState(seed);
+        this.oldStream = oldStream;
+        this.newStream = newStream;
+        strategy.begin(state);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready && !finished) {
+            this.advance();
+        }
+        return ready;
+    }
+
+    @Override
+    public JobPost next() {
+        if (!this.moveNext()) {
+            throw new NoSuchElementException();
+        }
+        JobPost jobPost = new JobPost();
+        jobPost.setId(currentId);
+        jobPost.setSource(currentSource == InterleavingEngine.SOURCE_OLD ? CodeTest.OLD_ALGORITHM
+                : CodeTest.NEW_ALGORITHM);
+        jobPost.setSourceMask(1 << currentSource);
+        return jobPost;
+    }
+
+    /**
+     * JobPostを生成せずに次のIDへ進む
+     *
+     * @return 次のIDがある場合true(getCurrentId/getCurrentSourceで取得する)
+     * @throws IllegalStateException 旧アルゴリズムの取得に失敗した場合
+     */
+    public boolean moveNext() {
+        if (!this.hasNext()) {
+            return false;
+        }
+        ready = false;
+        return true;
+    }
+
+    public int getCurrentId() {
+        return currentId;
+    }
+
+    public byte getCurrentSource() {
+        return currentSource;
+    }
+
+    /**
+     * これまでに統合済みとして読み飛ばしたIDの数
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * 順序付き・重複無しのSpliteratorに変換
+     *
+     * @return Spliterator
+     */
+    public Spliterator<JobPost> spliterator() {
+        return Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    private void advance() {
+        boolean skipsMergedIds = strategy.skipsMergedIds();
+        while (true) {
+            if (skipsMergedIds) {
+                // 相手側が既に選んだIDは読み飛ばす
+                while (this.hasNextOld() && mergedIds.contains(oldStream.peek())) {
+                    oldStream.next();
+                    state.advance(true, false);
+                    duplicateCount++;
+                }
+                while (this.hasNextNew() && mergedIds.contains(newStream.peek())) {
+                    newStream.next();
+                    state.advance(false, false);
+                    duplicateCount++;
+                }
+            }
+            boolean oldAvailable = this.hasNextOld();
+            boolean newAvailable = this.hasNextNew();
+            if (!oldAvailable && !newAvailable) {
+                finished = true;
+                return;
+            }
+
+            boolean pickOld = strategy.pickOld(state, oldAvailable, newAvailable);
+            int id = pickOld ? oldStream.next() : newStream.next();
+            boolean appended = mergedIds.add(id);
+            state.advance(pickOld, appended);
+            if (appended) {
+                currentId = id;
+                currentSource = pickOld ? InterleavingEngine.SOURCE_OLD : InterleavingEngine.SOURCE_NEW;
+                ready = true;
+                return;
+            }
+            duplicateCount++;
+        }
+    }
+
+    private boolean hasNextOld() {
+        try {
+            return oldStream.hasNext();
+        } catch (CompletionException e) {
+            finished = true;
+            throw new IllegalStateException("旧アルゴリズムのランキングを取得できません", e.getCause());
+        }
+    }
+
+    private boolean hasNextNew() {
+        if (newStream == null) {
+            return false;
+        }
+        try {
+            return newStream.hasNext();
+        } catch (CompletionException e) {
+            CodeTest.LOGGER.warning("新アルゴリズムのランキングを取得できないため、旧アルゴリズムのみで返します: " + e);
+            newStream = null;
+            degraded = true;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * インターリービングのHTTPサーバの負荷試験
+ * 指定した同時接続数の仮想スレッドが、期間中ランダムなユーザ・ページ(1～3ページ目)へのリクエストを繰り返し、
+ * スループットとレイテンシのパーセンタイル値を出力する。
+ * URLを指定しない場合は、同じプロセス内でInterleavingHttpServerを起動して試験する
+ *
+ * 使い方: java InterleavingLoadGenerator [同時接続数] [秒数] [ユーザ数] [ベースURL(例: http://localhost:8080)]
+ */
+public class InterleavingLoadGenerator {
+
+    private static final int MAX_REQUESTED_PAGE = 3;
+
+    /* 計測前にJITコンパイルを済ませるための期間 */
+    private static final Duration WARMUP = Duration.ofSeconds(2);
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+        int userCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        InterleavingHttpServer embeddedServer = null;
+        String baseUrl;
+        if (args.length > 3) {
+            baseUrl = args[3];
+        } else {
+            embeddedServer = new InterleavingHttpServer(new CodeTest(), 0);
+            embeddedServer.start();
+            baseUrl = "http://localhost:" + embeddedServer.getPort();
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            // サーバはHTTP/1.1のみのため、HTTP/2へのアップグレードを試みないよう固定する
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor)
+                    .build();
+            run(client, executor, baseUrl, concurrency, WARMUP, userCount);
+            Result result = run(client, executor, baseUrl, concurrency, duration, userCount);
+            LogLinearHistogram latency = result.latency();
+            System.out.printf("concurrency=%d requests=%d errors=%d %.0f req/sec%n", concurrency,
+                    latency.getCount(), result.errors(), latency.getCount() / (duration.toNanos() / 1_000_000_000.0));
+            System.out.printf("latency(us) mean=%.1f p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    latency.getMean() / 1_000.0, latency.getValueAtPercentile(50) / 1_000.0,
+                    latency.getValueAtPercentile(99) / 1_000.0, latency.getValueAtPercentile(99.9) / 1_000.0,
+                    latency.getMax() / 1_000.0);
+        } finally {
+            executor.shutdownNow();
+            if (embeddedServer != null) {
+                embeddedServer.close();
+            }
+        }
+    }
+
+    /**
+     * 負荷試験の結果
+     *
+     * @param latency 成功したリクエストのレイテンシ(ナノ秒)
+     * @param errors  失敗したリクエストの件数
+     */
+    private record Result(LogLinearHistogram latency, long errors) {
+    }
+
+    private static Result run(HttpClient client, ExecutorService executor, String baseUrl, int concurrency,
+            Duration duration, int userCount) throws InterruptedException, ExecutionException {
+        LogLinearHistogram latency = new LogLinearHistogram();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    URI uri = URI.create(baseUrl + "/interleave?userId=" + random.nextInt(1, userCount + 1)
+                            + "&page=" + random.nextInt(1, MAX_REQUESTED_PAGE + 1) + "&perPage="
+                            + CodeTest.DEFAULT_PER_PAGE);
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() == 200) {
+                            latency.record(System.nanoTime() - start);
+                        } else {
+                            errors.increment();
+                        }
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return new Result(latency, errors.sum());
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.Serial;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 全アクティブユーザのインターリービング結果の事前計算
+ * シード値は「ユーザID:日付」で決まるため、日付が変わった時点で1ページ目・2ページ目の結果を全ユーザ分計算でき、
+ * リクエスト時の統合処理を無くせる。ユーザ毎の計算は互いに独立しているため、ユーザをチャンクに分けてFork/Joinで並列に行う。
+ * 計算できなかったユーザ(旧アルゴリズムの取得失敗・新アルゴリズムを取得できず旧アルゴリズムのみとなった場合)は結果に含めず、
+ * リクエスト時にその場で計算する
+ */
+public class InterleavingMaterializer implements AutoCloseable {
+
+    /* 1タスクで計算するユーザ数 */
+    public static final int USERS_PER_TASK = 512;
+
+    /* 日付の切り替えから計算を始めるまでの待ち時間(ランキングの切り替えを待つ) */
+    public static final Duration DEFAULT_DELAY_AFTER_MIDNIGHT = Duration.ofMinutes(1);
+
+    private final CodeTest service;
+
+    private final ForkJoinPool pool;
+
+    /* 日次の計算の起動(scheduleDailyを呼び出すまでは生成しない) */
+    private ScheduledExecutorService scheduler;
+
+    public InterleavingMaterializer(CodeTest service) {
+        this(service, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param service     インターリービングを計算・結果を公開するサービス
+     * @param parallelism 並列数
+     */
+    public InterleavingMaterializer(CodeTest service, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.service = Objects.requireNonNull(service);
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 指定したユーザのインターリービング結果を計算
+     * 重複したユーザIDは1件として扱う
+     *
+     * @param userIds アクティブユーザのID
+     * @param date    シード値に使用する日付
+     * @param perPage 1ページあたりのアイテム数
+     * @return 計算結果
+     */
+    public MaterializedInterleavingStore materialize(int[] userIds, LocalDate date, Integer perPage) {
+        long startNanos = System.nanoTime();
+        int[] sortedUserIds = Arrays.stream(userIds).sorted().distinct().toArray();
+        int taskCount = (sortedUserIds.length + USERS_PER_TASK - 1) / USERS_PER_TASK;
+        Segment[] segments = new Segment[taskCount];
+        // 計算中に実験設定が差し替えられても、全ユーザを同じ設定で計算する
+        ExperimentConfig config = service.getExperimentConfig();
+        pool.invoke(new MaterializeTask(sortedUserIds, date, perPage, config, segments, 0, taskCount));
+
+        // チャンク毎の結果をユーザIDの順に連結する
+        int userCount = 0;
+        int idCount = 0;
+        for (Segment segment : segments) {
+            userCount += segment.userCount;
+            idCount += segment.idCount;
+        }
+        int[] materializedUserIds = new int[userCount];
+        int[] offsets = new int[userCount + 1];
+        byte[] strategies = new byte[userCount];
+        int[] ids = new int[idCount];
+        long[] newSourceBits = new long[(idCount + Long.SIZE - 1) / Long.SIZE];
+        Map<String, Integer> strategyIndexMap = new HashMap<>();
+        int failedCount = 0;
+        int user = 0;
+        int position = 0;
+        for (Segment segment : segments) {
+            failedCount += segment.failedCount;
+            int segmentPosition = 0;
+            for (int i = 0; i < segment.userCount; i++) {
+                materializedUserIds[user] = segment.userIds[i];
+                offsets[user] = position;
+                strategies[user] = (byte) (int) strategyIndexMap.computeIfAbsent(segment.strategyNames[i],
+                        name -> strategyIndexMap.size());
+                for (int j = 0; j < segment.lengths[i]; j++, segmentPosition++, position++) {
+                    ids[position] = segment.ids[segmentPosition];
+                    if (segment.sources[segmentPosition] == InterleavingEngine.SOURCE_NEW) {
+                        newSourceBits[position >>> 6] |= 1L << position;
+                    }
+                }
+                user++;
+            }
+        }
+        offsets[userCount] = position;
+        if (strategyIndexMap.size() > Byte.MAX_VALUE) {
+            throw new IllegalStateException("戦略の数が多すぎます: " + strategyIndexMap.size());
+        }
+        String[] strategyNames = new String[strategyIndexMap.size()];
+        strategyIndexMap.forEach((name, index) -> strategyNames[index] = name);
+
+        MaterializedInterleavingStore store = new MaterializedInterleavingStore(date, perPage, config, strategyNames,
+                materializedUserIds, offsets, strategies, ids, newSourceBits, System.nanoTime() - startNanos,
+                pool.getParallelism());
+        CodeTest.LOGGER.info(String.format(
+                "インターリービング結果を事前計算しました: date=%s users=%d failed=%d %.1fms %.0f users/sec/core %dbytes",
+                date, store.size(), failedCount, store.getBuildNanos() / 1_000_000.0,
+                store.getUsersPerSecondPerCore(), store.getFootprintBytes()));
+        return store;
+    }
+
+    /**
+     * 当日分を計算してサービスに公開
+     *
+     * @param userIds アクティブユーザのID
+     * @param perPage 1ページあたりのアイテム数
+     * @return 計算結果
+     */
+    public MaterializedInterleavingStore materializeAndPublish(int[] userIds, Integer perPage) {
+        MaterializedInterleavingStore store = this.materialize(userIds, service.getSeedProvider().today(), perPage);
+        service.publishMaterialized(store);
+        return store;
+    }
+
+    /**
+     * 当日分を直ちに計算し、以降は日付が変わる度に計算して公開する
+     * 計算に失敗した場合は前日の結果を使用せず(日付が一致しないため)、その日はリクエスト時に計算する
+     *
+     * @param activeUserIds      計算時点のアクティブユーザのIDの取得
+     * @param perPage            1ページあたりのアイテム数
+     * @param clock              日付の切り替えの判定に使用する時計
+     * @param delayAfterMidnight 日付の切り替えから計算を始めるまでの待ち時間
+     */
+    public synchronized void scheduleDaily(Supplier<int[]> activeUserIds, Integer perPage, Clock clock,
+            Duration delayAfterMidnight) {
+        if (scheduler != null) {
+            throw new IllegalStateException("既に開始しています");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "interleaving-materializer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(() -> this.runDaily(activeUserIds, perPage, clock, delayAfterMidnight));
+    }
+
+    private void runDaily(Supplier<int[]> activeUserIds, Integer perPage, Clock clock, Duration delayAfterMidnight) {
+        try {
+            this.materializeAndPublish(activeUserIds.get(), perPage);
+        } catch (RuntimeException e) {
+            CodeTest.LOGGER.warning("インターリービング結果を事前計算できませんでした: " + e);
+        }
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime next = now.toLocalDate().plusDays(1).atStartOfDay(clock.getZone()).plus(delayAfterMidnight);
+        synchronized (this) {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(() -> this.runDaily(activeUserIds, perPage, clock, delayAfterMidnight),
+                        Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * チャンク単位の計算結果
+     */
+    private static final class Segment {
+
+        private final int[] userIds;
+
+        private final String[] strategyNames;
+
+        private final int[] lengths;
+
+        private int[] ids;
+
+        private byte[] sources;
+
+        private int userCount;
+
+        private int idCount;
+
+        private int failedCount;
+
+        private Segment(int maxUserCount, int expectedIdCount) {
+            this.userIds = new int[maxUserCount];
+            this.strategyNames = new String[maxUserCount];
+            this.lengths = new int[maxUserCount];
+            this.ids = new int[expectedIdCount];
+            this.sources = new byte[expectedIdCount];
+        }
+
+        private void add(int userId, String strategyName, InterleavingCache.Entry entry) {
+            int size = entry.size();
+            if (idCount + size > ids.length) {
+                int capacity = Math.max(ids.length * 2, idCount + size);
+                ids = Arrays.copyOf(ids, capacity);
+                sources = Arrays.copyOf(sources, capacity);
+            }
+            entry.copyTo(ids, sources, idCount);
+            userIds[userCount] = userId;
+            strategyNames[userCount] = strategyName;
+            lengths[userCount] = size;
+            userCount++;
+            idCount += size;
+        }
+    }
+
+    /**
+     * チャンクの範囲を分割しながら計算するタスク
+     */
+    private final class MaterializeTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int[] userIds;
+
+        private final LocalDate date;
+
+        private final Integer perPage;
+
+        private final transient ExperimentConfig config;
+
+        private final transient Segment[] segments;
+
+        private final int fromTask;
+
+        private final int toTask;
+
+        private MaterializeTask(int[] userIds, LocalDate date, Integer perPage, ExperimentConfig config,
+                Segment[] segments, int fromTask, int toTask) {
+            this.userIds = userIds;
+            this.date = date;
+            this.perPage = perPage;
+            this.config = config;
+            this.segments = segments;
+            this.fromTask = fromTask;
+            this.toTask = toTask;
+        }
+
+        @Override
+        protected void compute() {
+            // アクティブユーザが居ない場合はチャンクが無い
+            if (fromTask >= toTask) {
+                return;
+            }
+            if (toTask - fromTask > 1) {
+                int middle = (fromTask + toTask) >>> 1;
+                invokeAll(new MaterializeTask(userIds, date, perPage, config, segments, fromTask, middle),
+                        new MaterializeTask(userIds, date, perPage, config, segments, middle, toTask));
+                return;
+            }
+            int from = fromTask * USERS_PER_TASK;
+            int to = Math.min(from + USERS_PER_TASK, userIds.length);
+            int interleavingPageCount = config.getInterleavingPageCount();
+            Segment segment = new Segment(to - from, (to - from) * interleavingPageCount * perPage);
+            for (int i = from; i < to; i++) {
+                Integer userId = userIds[i];
+                InterleavingStrategy strategy = config.getStrategySelector().select(userId);
+                try {
+                    InterleavingCache.Entry entry = service.computeInterleavingEntry(userId, date, perPage,
+                            interleavingPageCount, strategy);
+                    if (entry.isDegraded()) {
+                        segment.failedCount++;
+                    } else {
+                        segment.add(userId, strategy.getName(), entry);
+                    }
+                } catch (RuntimeException e) {
+                    segment.failedCount++;
+                }
+            }
+            segments[fromTask] = segment;
+        }
+    }
+}
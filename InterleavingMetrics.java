@@ -0,0 +1,392 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * インターリービング処理のメトリクス
+ * 処理段階毎の処理時間・リクエスト毎のアロケーション量のヒストグラム、重複や件数不足などのカウンタ、
+ * ページ番号毎のリクエスト数を保持し、テキスト・JSON形式での出力とJMXでの公開を行う。
+ * 無効の場合は時刻の取得も行わず、各メソッドは何もせずに戻るため、計測のコストはほぼ無い
+ */
+public final class InterleavingMetrics implements InterleavingMetricsMXBean {
+
+    /* メトリクスを有効にするシステムプロパティ */
+    public static final String METRICS_PROPERTY = "codetest.metrics";
+
+    /* JMXに登録する際の名前の既定値 */
+    public static final String DEFAULT_MBEAN_NAME = "codetest:type=InterleavingMetrics";
+
+    /* 無効なメトリクス(全インスタンスで共有する) */
+    public static final InterleavingMetrics DISABLED = new InterleavingMetrics(false);
+
+    /* ページ番号毎に数えるページの数。これより深いページは2のべき乗毎の区間(17-32, 33-64, ...)で数える */
+    public static final int EXACT_PAGE_DEPTHS = 16;
+
+    /* ページの深さの区間の数(0以下・1～EXACT_PAGE_DEPTHS・Integer.MAX_VALUEまでの2のべき乗毎の区間) */
+    private static final int PAGE_DEPTH_BUCKETS = 1 + EXACT_PAGE_DEPTHS
+            + (Integer.SIZE - 1 - Integer.numberOfTrailingZeros(EXACT_PAGE_DEPTHS));
+
+    /**
+     * 処理時間を計測する処理段階
+     */
+    public enum Stage {
+        /* ページの取得全体 */
+        REQUEST,
+        /* 新旧アルゴリズム(マルチリービングの場合は全ランキング、逐次統合の場合はチャンク毎)の取得の待ち時間 */
+        RANKING_FETCH,
+        /* シード値の生成 */
+        SEED,
+        /* 戦略による統合処理(逐次統合の場合は統合中のチャンクの取得を含む) */
+        MERGE,
+        /* 3ページ目以降の旧アルゴリズムからの取得 */
+        OLD_ALGORITHM_REPLAY
+    }
+
+    /**
+     * カウンタ
+     */
+    public enum Counter {
+        /* 統合処理・3ページ目以降の取得で、既に表示済みとして読み飛ばしたID */
+        DEDUP_COLLISIONS,
+        /* 要求した件数に満たないページ */
+        SHORT_PAGES,
+        /* 新アルゴリズムを取得できず、旧アルゴリズムのみで返した統合結果 */
+        DEGRADED_RESULTS,
+        /* MAX_PAGEを超えたページの要求 */
+        MAX_PAGE_EXCEEDED,
+        /* 不正・リクエストに対応しないため使用しなかったカーソル */
+        CURSOR_REJECTED,
+        /* 事前に計算したインターリービング結果から返した統合結果 */
+        MATERIALIZED_HITS
+    }
+
+    private final boolean enabled;
+
+    private final LogLinearHistogram[] stageHistograms;
+
+    /* リクエスト毎のアロケーション量(バイト) */
+    private final LogLinearHistogram allocationHistogram;
+
+    private final LongAdder[] counters;
+
+    /* ページの深さの区間毎のリクエスト数(設定のmaxPageに依らず固定の区間とする) */
+    private final AtomicLongArray pageDepthCounts;
+
+    /* スレッド毎のアロケーション量の取得(対応していないJVMではnull) */
+    private final com.sun.management.ThreadMXBean allocationMXBean;
+
+    /**
+     * 有効なメトリクスを生成
+     */
+    public InterleavingMetrics() {
+        this(true);
+    }
+
+    private InterleavingMetrics(boolean enabled) {
+        this.enabled = enabled;
+        this.stageHistograms = new LogLinearHistogram[enabled ? Stage.values().length : 0];
+        for (int i = 0; i < stageHistograms.length; i++) {
+            stageHistograms[i] = new LogLinearHistogram();
+        }
+        this.allocationHistogram = enabled ? new LogLinearHistogram() : null;
+        this.counters = new LongAdder[enabled ? Counter.values().length : 0];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        this.pageDepthCounts = new AtomicLongArray(enabled ? PAGE_DEPTH_BUCKETS : 0);
+        this.allocationMXBean = enabled ? allocationMXBean() : null;
+    }
+
+    /**
+     * システムプロパティが"true"の場合は有効なメトリクス、それ以外の場合はDISABLEDを返す
+     *
+     * @return メトリクス
+     */
+    public static InterleavingMetrics fromSystemProperty() {
+        return Boolean.getBoolean(METRICS_PROPERTY) ? new InterleavingMetrics() : DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 計測の開始時刻を取得
+     *
+     * @return System.nanoTime。無効の場合は0
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 開始時刻からの処理時間を記録
+     *
+     * @param stage      処理段階
+     * @param startNanos startで取得した開始時刻
+     */
+    public void record(Stage stage, long startNanos) {
+        if (enabled) {
+            stageHistograms[stage.ordinal()].record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * カウンタに加算
+     *
+     * @param counter カウンタ
+     * @param value   加算する値
+     */
+    public void add(Counter counter, long value) {
+        if (enabled && value != 0) {
+            counters[counter.ordinal()].add(value);
+        }
+    }
+
+    public void increment(Counter counter) {
+        this.add(counter, 1);
+    }
+
+    /**
+     * 現在のスレッドのアロケーション量の累計を取得
+     *
+     * @return バイト数。無効・取得できない場合は-1
+     */
+    public long allocatedBytes() {
+        if (allocationMXBean == null) {
+            return -1;
+        }
+        // 仮想スレッドなど取得できないスレッドでは-1が返る
+        return allocationMXBean.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * 返却したページを記録
+     * ページ番号毎のリクエスト数、件数不足、リクエスト全体の処理時間とアロケーション量を記録する
+     *
+     * @param page           ページ番号
+     * @param perPage        要求したアイテム数
+     * @param itemCount      返却したアイテム数
+     * @param startNanos     startで取得した開始時刻
+     * @param startAllocated allocatedBytesで取得した開始時のアロケーション量
+     */
+    public void recordPage(int page, int perPage, int itemCount, long startNanos, long startAllocated) {
+        if (!enabled) {
+            return;
+        }
+        stageHistograms[Stage.REQUEST.ordinal()].record(System.nanoTime() - startNanos);
+        pageDepthCounts.incrementAndGet(pageDepthBucket(page));
+        if (itemCount < perPage) {
+            counters[Counter.SHORT_PAGES.ordinal()].increment();
+        }
+        if (startAllocated >= 0) {
+            long endAllocated = this.allocatedBytes();
+            if (endAllocated >= startAllocated) {
+                allocationHistogram.record(endAllocated - startAllocated);
+            }
+        }
+    }
+
+    /**
+     * 処理段階のヒストグラムを取得
+     *
+     * @param stage 処理段階
+     * @return ヒストグラム。無効の場合はnull
+     */
+    public LogLinearHistogram getHistogram(Stage stage) {
+        return enabled ? stageHistograms[stage.ordinal()] : null;
+    }
+
+    /**
+     * @return リクエスト毎のアロケーション量のヒストグラム。無効の場合はnull
+     */
+    public LogLinearHistogram getAllocationHistogram() {
+        return allocationHistogram;
+    }
+
+    public long getCount(Counter counter) {
+        return enabled ? counters[counter.ordinal()].sum() : 0;
+    }
+
+    /**
+     * ページの深さの区間毎のリクエスト数
+     * EXACT_PAGE_DEPTHS以下のページはページ番号毎、それより深いページは2のべき乗毎の区間の数を返す
+     *
+     * @param page ページ番号
+     * @return ページ番号を含む区間のリクエスト数
+     */
+    public long getPageDepthCount(int page) {
+        return enabled ? pageDepthCounts.get(pageDepthBucket(page)) : 0;
+    }
+
+    /**
+     * JMXのプラットフォームMBeanサーバに登録する
+     *
+     * @param name 登録する名前(ObjectNameの形式)
+     * @throws IllegalStateException 登録できない場合
+     */
+    public void registerMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("メトリクスをJMXに登録できません: " + name, e);
+        }
+    }
+
+    @Override
+    public String getText() {
+        if (!enabled) {
+            return "metrics disabled (-D" + METRICS_PROPERTY + "=true)\n";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            appendText(sb, "latency_ns." + stage.name().toLowerCase(Locale.ROOT), stageHistograms[stage.ordinal()]);
+        }
+        appendText(sb, "allocated_bytes.request", allocationHistogram);
+        for (Counter counter : Counter.values()) {
+            sb.append("counter.").append(counter.name().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(counters[counter.ordinal()].sum()).append('\n');
+        }
+        for (int bucket = 0; bucket < pageDepthCounts.length(); bucket++) {
+            long count = pageDepthCounts.get(bucket);
+            if (count > 0) {
+                sb.append("page_depth.").append(pageDepthLabel(bucket)).append(' ').append(count).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"enabled\":").append(enabled);
+        if (enabled) {
+            sb.append(",\"latencyNanos\":{");
+            for (Stage stage : Stage.values()) {
+                if (stage.ordinal() > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(stage.name()).append("\":");
+                appendJson(sb, stageHistograms[stage.ordinal()]);
+            }
+            sb.append("},\"allocatedBytes\":");
+            appendJson(sb, allocationHistogram);
+            sb.append(",\"counters\":{");
+            for (Counter counter : Counter.values()) {
+                if (counter.ordinal() > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(counter.name()).append("\":").append(counters[counter.ordinal()].sum());
+            }
+            sb.append("},\"pageDepth\":{");
+            boolean first = true;
+            for (int bucket = 0; bucket < pageDepthCounts.length(); bucket++) {
+                long count = pageDepthCounts.get(bucket);
+                if (count > 0) {
+                    sb.append(first ? "" : ",").append('"').append(pageDepthLabel(bucket)).append("\":").append(count);
+                    first = false;
+                }
+            }
+            sb.append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counterMap = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            counterMap.put(counter.name(), this.getCount(counter));
+        }
+        return counterMap;
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        Map<String, Long> p99Map = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            p99Map.put(stage.name(), enabled ? stageHistograms[stage.ordinal()].getValueAtPercentile(99) : 0);
+        }
+        return p99Map;
+    }
+
+    @Override
+    public void reset() {
+        if (!enabled) {
+            return;
+        }
+        for (LogLinearHistogram histogram : stageHistograms) {
+            histogram.reset();
+        }
+        allocationHistogram.reset();
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+        for (int bucket = 0; bucket < pageDepthCounts.length(); bucket++) {
+            pageDepthCounts.set(bucket, 0);
+        }
+    }
+
+    /**
+     * ページ番号を含むページの深さの区間
+     * 0: 0以下、1～EXACT_PAGE_DEPTHS: ページ番号、以降: (2^(k-1), 2^k]の区間
+     */
+    private static int pageDepthBucket(int page) {
+        if (page <= EXACT_PAGE_DEPTHS) {
+            return Math.max(0, page);
+        }
+        int ceilLog2 = Integer.SIZE - Integer.numberOfLeadingZeros(page - 1);
+        return EXACT_PAGE_DEPTHS + ceilLog2 - Integer.numberOfTrailingZeros(EXACT_PAGE_DEPTHS);
+    }
+
+    /**
+     * 区間の表示名(ページ番号毎の区間はページ番号、それ以外は"17-32"の形式)
+     */
+    private static String pageDepthLabel(int bucket) {
+        if (bucket <= EXACT_PAGE_DEPTHS) {
+            return Integer.toString(bucket);
+        }
+        int ceilLog2 = bucket - EXACT_PAGE_DEPTHS + Integer.numberOfTrailingZeros(EXACT_PAGE_DEPTHS);
+        long upper = Math.min(1L << ceilLog2, Integer.MAX_VALUE);
+        return ((1L << (ceilLog2 - 1)) + 1) + "-" + upper;
+    }
+
+    private static void appendText(StringBuilder sb, String name, LogLinearHistogram histogram) {
+        sb.append(name)
+                .append(" count=").append(histogram.getCount())
+                .append(" mean=").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()))
+                .append(" p50=").append(histogram.getValueAtPercentile(50))
+                .append(" p90=").append(histogram.getValueAtPercentile(90))
+                .append(" p99=").append(histogram.getValueAtPercentile(99))
+                .append(" p999=").append(histogram.getValueAtPercentile(99.9))
+                .append(" max=").append(histogram.getMax())
+                .append('\n');
+    }
+
+    private static void appendJson(StringBuilder sb, LogLinearHistogram histogram) {
+        sb.append("{\"count\":").append(histogram.getCount())
+                .append(",\"mean\":").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()))
+                .append(",\"p50\":").append(histogram.getValueAtPercentile(50))
+                .append(",\"p90\":").append(histogram.getValueAtPercentile(90))
+                .append(",\"p99\":").append(histogram.getValueAtPercentile(99))
+                .append(",\"p999\":").append(histogram.getValueAtPercentile(99.9))
+                .append(",\"max\":").append(histogram.getMax())
+                .append('}');
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMXBean() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean allocationMXBean
+                && allocationMXBean.isThreadAllocatedMemorySupported()) {
+            allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+            return allocationMXBean;
+        }
+        return null;
+    }
+}
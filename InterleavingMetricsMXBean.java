@@ -0,0 +1,34 @@
+import java.util.Map;
+
+/**
+ * インターリービング処理のメトリクスをJMXで公開するためのインタフェース
+ *
+ * @see InterleavingMetrics#registerMBean(String)
+ */
+public interface InterleavingMetricsMXBean {
+
+    /**
+     * @return メトリクスのテキスト形式
+     */
+    String getText();
+
+    /**
+     * @return メトリクスのJSON形式
+     */
+    String getJson();
+
+    /**
+     * @return カウンタ名毎の値
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return 処理段階毎の99パーセンタイルの処理時間(ナノ秒)
+     */
+    Map<String, Long> getP99Nanos();
+
+    /**
+     * 全てのメトリクスを破棄
+     */
+    void reset();
+}
@@ -0,0 +1,30 @@
+import java.util.List;
+
+/**
+ * 1ページ分のアイテムと、次ページを取得するためのカーソル
+ */
+public class InterleavingPage {
+
+    private final List<JobPost> items;
+
+    /* 次ページのカーソル。次ページが存在しない場合はnull */
+    private final String nextCursor;
+
+    public InterleavingPage(List<JobPost> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<JobPost> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{items:%s, nextCursor:%s}", items, nextCursor);
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Random;
+
+/**
+ * 逐次統合の状態
+ * 各アルゴリズムの読み込み位置と、選んだ件数(チーム毎の件数)を保持する
+ */
+public final class InterleavingState {
+
+    private final Random random;
+
+    private int oldPointer;
+
+    private int newPointer;
+
+    private int oldTeamSize;
+
+    private int newTeamSize;
+
+    /* 同じ位置では旧アルゴリズムを先にするか(Balanced Interleavingで使用する) */
+    private boolean fromOld;
+
+    /**
+     * @param seed シード値
+     */
+    public InterleavingState(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 読み込み位置を進める
+     *
+     * @param fromOld  旧アルゴリズムから読み込んだ場合true
+     * @param appended 統合結果に追加した場合true
+     */
+    void advance(boolean fromOld, boolean appended) {
+        if (fromOld) {
+            oldPointer++;
+            oldTeamSize += appended ? 1 : 0;
+        } else {
+            newPointer++;
+            newTeamSize += appended ? 1 : 0;
+        }
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    public int getOldPointer() {
+        return oldPointer;
+    }
+
+    public int getNewPointer() {
+        return newPointer;
+    }
+
+    public int getOldTeamSize() {
+        return oldTeamSize;
+    }
+
+    public int getNewTeamSize() {
+        return newTeamSize;
+    }
+
+    public boolean isFromOld() {
+        return fromOld;
+    }
+
+    public void setFromOld(boolean fromOld) {
+        this.fromOld = fromOld;
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * インターリービングの戦略
+ * 重複除外の構造と結果の格納先はInterleavingEngineで共有し、シード値は呼び出し元(SeedProvider)から受け取る。
+ * 同じシード値・同じ入力であれば常に同じ結果を返すこと
+ */
+public interface InterleavingStrategy {
+
+    /* Balanced Interleaving */
+    InterleavingStrategy BALANCED = new BalancedInterleavingStrategy();
+
+    /* Team Draft Interleaving */
+    InterleavingStrategy TEAM_DRAFT = new TeamDraftInterleavingStrategy();
+
+    /* Probabilistic Interleaving */
+    InterleavingStrategy PROBABILISTIC = new ProbabilisticInterleavingStrategy();
+
+    /**
+     * 戦略の名前(キャッシュのキーやカーソルに使用する)
+     *
+     * @return 名前
+     */
+    String getName();
+
+    /**
+     * 新旧アルゴリズムのランキングを統合し、結果をengineに格納する
+     *
+     * @param engine      作業領域
+     * @param seed        シード値
+     * @param oldIds      旧アルゴリズムのID
+     * @param oldLength   旧アルゴリズムの件数
+     * @param newIds      新アルゴリズムのID
+     * @param newLength   新アルゴリズムの件数
+     * @param totalNeeded 必要となる総件数
+     * @return 統合した件数
+     */
+    int merge(InterleavingEngine engine, long seed, int[] oldIds, int oldLength, int[] newIds, int newLength,
+            int totalNeeded);
+
+    /**
+     * 名前から戦略を取得
+     *
+     * @param name 戦略の名前
+     * @return 戦略
+     * @throws IllegalArgumentException 該当する戦略が無い場合
+     */
+    static InterleavingStrategy of(String name) {
+        for (InterleavingStrategy strategy : new InterleavingStrategy[] { BALANCED, TEAM_DRAFT, PROBABILISTIC }) {
+            if (strategy.getName().equals(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("不明なインターリービング戦略です: " + name);
+    }
+}
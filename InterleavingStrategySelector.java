@@ -0,0 +1,22 @@
+/**
+ * ユーザ毎に使用するインターリービングの戦略を選ぶ
+ */
+@FunctionalInterface
+public interface InterleavingStrategySelector {
+
+    /**
+     * @param userId アクセスしたユーザーのID
+     * @return 使用する戦略
+     */
+    InterleavingStrategy select(Integer userId);
+
+    /**
+     * 全ユーザに同じ戦略を使用する
+     *
+     * @param strategy 戦略
+     * @return セレクタ
+     */
+    static InterleavingStrategySelector fixed(InterleavingStrategy strategy) {
+        return userId -> strategy;
+    }
+}
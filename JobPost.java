@@ -2,6 +2,8 @@ public class JobPost {
 
     private Integer id;
     private String source;
+    /* 取得元のランキングの番号のビットマスク(ビットiがi番目のランキングを表す) */
+    private int sourceMask;
 
     public Integer getId() {
         return id;
@@ -19,6 +21,24 @@ public class JobPost {
         this.source = source;
     }
 
+    public int getSourceMask() {
+        return sourceMask;
+    }
+
+    public void setSourceMask(int sourceMask) {
+        this.sourceMask = sourceMask;
+    }
+
+    /**
+     * 指定したランキングから取得したアイテムか判定
+     *
+     * @param rankerIndex ランキングの番号(0から始まる)
+     * @return 取得元に含まれる場合true
+     */
+    public boolean isFrom(int rankerIndex) {
+        return (sourceMask & (1 << rankerIndex)) != 0;
+    }
+
     @Override
     public String toString() {
         return String.format("{id:%d, src:%s}", id, source);
@@ -0,0 +1,452 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JobPostのリスト・ページの直列化
+ * 中間の文字列を生成せず、使い回すバイト配列へJSON(UTF-8)またはバイナリ形式で直接書き込む。
+ * 書き込み結果は次の書き込みまで有効で、複数スレッドからは使用できない。
+ * 使い回すプラットフォームスレッドでは{@link #current()}を、リクエスト毎に生成される仮想スレッドでは新しいインスタンスを使用する。
+ *
+ * バイナリ形式(整数は可変長整数(varint)、IDはZigZag変換したvarint):
+ * <pre>
+ * バージョン(1バイト)
+ * 取得元の名前の数、名前(バイト数 + UTF-8)の並び
+ * アイテム数、アイテム(取得元の番号(1バイト) + ID)の並び
+ * 次ページのカーソルの有無(1バイト)、カーソル(バイト数 + UTF-8)
+ * </pre>
+ * 取得元の名前はレスポンス毎に1度だけ書き込み、アイテムには名前の番号のみを書き込む。
+ * IDの無いアイテムはどちらの形式でも書き込めない(IllegalArgumentException)
+ */
+public final class JobPostSerializer {
+
+    public static final byte BINARY_VERSION = 1;
+
+    /* バッファの初期サイズ */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /* 1レスポンスに含められる取得元の名前の数 */
+    private static final int MAX_SOURCE_NAMES = 256;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] MIN_INT = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] JSON_ITEMS = "{\"items\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] JSON_NEXT_CURSOR = ",\"nextCursor\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] JSON_ID = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] JSON_SOURCE = ",\"source\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<JobPostSerializer> SERIALIZER = ThreadLocal.withInitial(JobPostSerializer::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+    private int size;
+
+    /* バイナリ形式で書き込み中のレスポンスの取得元の名前 */
+    private final String[] sourceNames = new String[MAX_SOURCE_NAMES];
+
+    private int sourceNameCount;
+
+    /**
+     * 現在のスレッドの直列化
+     *
+     * @return スレッド毎に使い回す直列化
+     */
+    public static JobPostSerializer current() {
+        return SERIALIZER.get();
+    }
+
+    /**
+     * アイテムのリストをJSONで書き込む
+     *
+     * @param jobPosts アイテムリスト
+     * @return this ([{"id":1,"source":"oldAlgorithm"},...])
+     */
+    public JobPostSerializer writeJson(List<JobPost> jobPosts) {
+        size = 0;
+        this.appendJsonItems(jobPosts);
+        return this;
+    }
+
+    /**
+     * ページをJSONで書き込む
+     *
+     * @param interleavingPage 当該ページのアイテムと次ページのカーソル
+     * @return this ({"items":[...],"nextCursor":"..."})
+     */
+    public JobPostSerializer writeJson(InterleavingPage interleavingPage) {
+        size = 0;
+        this.append(JSON_ITEMS);
+        this.appendJsonItems(interleavingPage.getItems());
+        this.append(JSON_NEXT_CURSOR);
+        this.appendJsonString(interleavingPage.getNextCursor());
+        this.append((byte) '}');
+        return this;
+    }
+
+    /**
+     * アイテムのリストをバイナリ形式で書き込む(カーソル無し)
+     *
+     * @param jobPosts アイテムリスト
+     * @return this
+     */
+    public JobPostSerializer writeBinary(List<JobPost> jobPosts) {
+        return this.writeBinary(jobPosts, null);
+    }
+
+    /**
+     * ページをバイナリ形式で書き込む
+     *
+     * @param interleavingPage 当該ページのアイテムと次ページのカーソル
+     * @return this
+     */
+    public JobPostSerializer writeBinary(InterleavingPage interleavingPage) {
+        return this.writeBinary(interleavingPage.getItems(), interleavingPage.getNextCursor());
+    }
+
+    private JobPostSerializer writeBinary(List<JobPost> jobPosts, String nextCursor) {
+        size = 0;
+        this.append(BINARY_VERSION);
+
+        // 取得元の名前の表(同じ名前のインスタンスは使い回されるため、まず参照で比較する)
+        // IDも併せて検証し、アイテムを書き込み始めてから失敗しないようにする
+        sourceNameCount = 0;
+        int itemCount = jobPosts.size();
+        for (int i = 0; i < itemCount; i++) {
+            JobPost jobPost = jobPosts.get(i);
+            requireId(jobPost);
+            this.sourceIndexOf(jobPost.getSource());
+        }
+        this.appendVarint(sourceNameCount);
+        for (int i = 0; i < sourceNameCount; i++) {
+            this.appendUtf8WithLength(sourceNames[i]);
+        }
+
+        this.appendVarint(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            JobPost jobPost = jobPosts.get(i);
+            int id = jobPost.getId();
+            this.append((byte) this.sourceIndexOf(jobPost.getSource()));
+            this.appendVarint((id << 1) ^ (id >> 31));
+        }
+
+        if (nextCursor == null) {
+            this.append((byte) 0);
+        } else {
+            this.append((byte) 1);
+            this.appendUtf8WithLength(nextCursor);
+        }
+        // 次の書き込みまで名前を保持しないよう参照を外す
+        Arrays.fill(sourceNames, 0, sourceNameCount, null);
+        return this;
+    }
+
+    /**
+     * バイナリ形式のページを復元
+     *
+     * @param bytes  バイナリ形式のページ
+     * @param offset 開始位置
+     * @param length バイト数
+     * @return ページ
+     * @throws IllegalArgumentException 不正なバイナリの場合
+     */
+    public static InterleavingPage readBinary(byte[] bytes, int offset, int length) {
+        BinaryReader reader = new BinaryReader(bytes, offset, offset + length);
+        byte version = reader.readByte();
+        if (version != BINARY_VERSION) {
+            throw new IllegalArgumentException("不正なバージョンです: " + version);
+        }
+        String[] names = new String[reader.readCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = reader.readUtf8();
+        }
+        int itemCount = reader.readCount();
+        List<JobPost> jobPosts = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            int sourceIndex = reader.readByte() & 0xFF;
+            int zigZag = reader.readVarint();
+            if (sourceIndex >= names.length) {
+                throw new IllegalArgumentException("不正な取得元です: " + sourceIndex);
+            }
+            JobPost jobPost = new JobPost();
+            jobPost.setId((zigZag >>> 1) ^ -(zigZag & 1));
+            jobPost.setSource(names[sourceIndex]);
+            jobPosts.add(jobPost);
+        }
+        String nextCursor = reader.readByte() == 0 ? null : reader.readUtf8();
+        return new InterleavingPage(jobPosts, nextCursor);
+    }
+
+    /**
+     * 書き込み結果のバッファ(先頭から{@link #size()}バイトが有効)
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    private static int requireId(JobPost jobPost) {
+        Integer id = jobPost.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("IDがありません");
+        }
+        return id;
+    }
+
+    private int sourceIndexOf(String source) {
+        for (int i = 0; i < sourceNameCount; i++) {
+            if (sourceNames[i] == source) {
+                return i;
+            }
+        }
+        for (int i = 0; i < sourceNameCount; i++) {
+            if (sourceNames[i].equals(source)) {
+                return i;
+            }
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("取得元がありません");
+        }
+        if (sourceNameCount == MAX_SOURCE_NAMES) {
+            throw new IllegalArgumentException("取得元が多すぎます: " + sourceNameCount);
+        }
+        sourceNames[sourceNameCount] = source;
+        return sourceNameCount++;
+    }
+
+    private void appendJsonItems(List<JobPost> jobPosts) {
+        this.append((byte) '[');
+        int itemCount = jobPosts.size();
+        for (int i = 0; i < itemCount; i++) {
+            JobPost jobPost = jobPosts.get(i);
+            if (i > 0) {
+                this.append((byte) ',');
+            }
+            this.append(JSON_ID);
+            this.appendInt(requireId(jobPost));
+            this.append(JSON_SOURCE);
+            this.appendJsonString(jobPost.getSource());
+            this.append((byte) '}');
+        }
+        this.append((byte) ']');
+    }
+
+    private void appendInt(int value) {
+        this.ensureCapacity(11);
+        if (value == Integer.MIN_VALUE) {
+            this.append(MIN_INT);
+            return;
+        }
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        // 桁数を求めてから下の桁から埋める
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            this.append(NULL);
+            return;
+        }
+        // 1文字あたり最大6バイト(\\uXXXX)
+        this.ensureCapacity(value.length() * 6 + 2);
+        buffer[size++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[size++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                buffer[size++] = '\\';
+                buffer[size++] = (byte) c;
+            } else if (c < 0x20) {
+                buffer[size++] = '\\';
+                buffer[size++] = 'u';
+                buffer[size++] = '0';
+                buffer[size++] = '0';
+                buffer[size++] = HEX_DIGITS[c >> 4];
+                buffer[size++] = HEX_DIGITS[c & 0xF];
+            } else {
+                i = this.appendNonAscii(value, i);
+            }
+        }
+        buffer[size++] = '"';
+    }
+
+    private void appendUtf8WithLength(String value) {
+        // 先にバイト数を求める
+        int byteCount = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byteCount++;
+            } else if (c < 0x800) {
+                byteCount += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                byteCount += 4;
+                i++;
+            } else {
+                byteCount += 3;
+            }
+        }
+        this.appendVarint(byteCount);
+        this.ensureCapacity(byteCount);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else {
+                i = this.appendNonAscii(value, i);
+            }
+        }
+    }
+
+    /**
+     * ASCII以外の文字をUTF-8で書き込む(容量は呼び出し元で確保する)
+     * 対になっていないサロゲートは置換文字(U+FFFD)とする
+     *
+     * @return 最後に読んだ文字の位置
+     */
+    private int appendNonAscii(String value, int index) {
+        char c = value.charAt(index);
+        if (c < 0x800) {
+            buffer[size++] = (byte) (0xC0 | (c >> 6));
+            buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            return index;
+        }
+        if (Character.isSurrogate(c)) {
+            if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+                buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                return index + 1;
+            }
+            c = '\uFFFD';
+        }
+        buffer[size++] = (byte) (0xE0 | (c >> 12));
+        buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[size++] = (byte) (0x80 | (c & 0x3F));
+        return index;
+    }
+
+    private void appendVarint(int value) {
+        this.ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void append(byte value) {
+        this.ensureCapacity(1);
+        buffer[size++] = value;
+    }
+
+    private void append(byte[] bytes) {
+        this.ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+        }
+    }
+
+    /**
+     * バイナリ形式の読み込み
+     */
+    private static final class BinaryReader {
+
+        private final byte[] bytes;
+
+        private final int limit;
+
+        private int position;
+
+        private BinaryReader(byte[] bytes, int offset, int limit) {
+            if (offset < 0 || limit > bytes.length || offset > limit) {
+                throw new IllegalArgumentException("不正な範囲です: " + offset + "～" + limit);
+            }
+            this.bytes = bytes;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        private byte readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("バイナリが途中で終わっています");
+            }
+            return bytes[position++];
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = this.readByte();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("不正な可変長整数です");
+        }
+
+        /**
+         * 要素数を読み込む
+         * 要素は1つあたり1バイト以上のため、残りのバイト数を超える要素数は不正とする(配列の確保前に検証する)
+         */
+        private int readCount() {
+            int count = this.readVarint();
+            if (count < 0 || count > limit - position) {
+                throw new IllegalArgumentException("不正な要素数です: " + count);
+            }
+            return count;
+        }
+
+        private String readUtf8() {
+            int length = this.readVarint();
+            if (length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("不正な文字列の長さです: " + length);
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
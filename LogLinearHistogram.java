@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDRヒストグラムと同じ対数・線形の区間で値を数えるヒストグラム
+ * 2の累乗毎の区間をさらに64等分するため、記録した値の相対誤差は1/64(約1.6%)以内となる。
+ * 記録は区間毎のカウンタの加算のみでロックを使用せず、複数スレッドから同時に記録できる
+ */
+public final class LogLinearHistogram {
+
+    /* 区間内の分割数のビット数 */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /* 0から線形に数える区間の数(この値未満は値そのものが区間の番号となる) */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /* 区間を分けて数える値の上限のビット数(ナノ秒で約18分、バイト数で1TB)。これを超える値は最後の区間に数える */
+    private static final int MAX_VALUE_BITS = 40;
+
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+            + (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final LongAdder totalCount = new LongAdder();
+
+    private final LongAdder totalValue = new LongAdder();
+
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 値を記録
+     *
+     * @param value 値(負の値は0として記録する)
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(v));
+        totalCount.increment();
+        totalValue.add(v);
+        maxValue.accumulate(v);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    /**
+     * パーセンタイル値
+     * 記録中に呼び出した場合は、その時点までに数えた値から求める
+     *
+     * @param percentile パーセンタイル(0～100)
+     * @return 該当する区間の上限値(最大値を超えない)。記録が無い場合は0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    /**
+     * 全ての記録を破棄
+     * 記録中に呼び出した場合、同時に記録された値は残ることがある
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.reset();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // 最上位ビットから数えてSUB_BUCKET_BITSビットを残すようにずらし、区間内の位置とする
+        int shift = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_VALUE_BITS) - (SUB_BUCKET_BITS - 1);
+        long subBucket = Math.min(value >>> shift, SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (int) (subBucket - HALF_SUB_BUCKET_COUNT);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = (bucket - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,159 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 事前に計算した1日分のインターリービング結果
+ * シード値は「ユーザID:日付」で決まり結果は1日中変わらないため、日付が変わった時点で全アクティブユーザ分を計算しておき、
+ * リクエスト時はこの結果から返す。ユーザ毎のオブジェクトは持たず、全ユーザ分を以下の配列に詰めて保持する。
+ * <ul>
+ * <li>ユーザID(昇順。二分探索で検索する)と、ユーザ毎の結果の開始位置</li>
+ * <li>全ユーザ分を連結したID</li>
+ * <li>IDの取得元(新アルゴリズムの場合に立てるビット列)</li>
+ * <li>ユーザ毎の戦略(戦略の名前の番号)</li>
+ * </ul>
+ * 計算時の実験設定と結び付け、設定が差し替えられた後は使用しない。
+ * ユーザ毎のエントリは初回の参照時に生成して以降は同じものを返す(エントリは不変で、同時に生成しても同じ内容となるため、
+ * 複数スレッドから同期無しで参照できる)
+ */
+public final class MaterializedInterleavingStore {
+
+    private final LocalDate date;
+
+    private final int perPage;
+
+    /* 計算に使用した実験設定 */
+    private final ExperimentConfig config;
+
+    /* 戦略の番号毎の名前 */
+    private final String[] strategyNames;
+
+    private final int[] userIds;
+
+    /* ユーザ毎の結果の開始位置(ユーザ数 + 1件。最後は総件数) */
+    private final int[] offsets;
+
+    private final byte[] strategies;
+
+    private final int[] ids;
+
+    /* IDの取得元が新アルゴリズムの場合に立てるビット */
+    private final long[] newSourceBits;
+
+    /* ユーザ毎に生成済みのエントリ(未参照のユーザはnull) */
+    private final InterleavingCache.Entry[] entries;
+
+    /* 計算に要した時間と並列数(ユーザ毎の計算のスループットの算出に使用する) */
+    private final long buildNanos;
+
+    private final int parallelism;
+
+    MaterializedInterleavingStore(LocalDate date, int perPage, ExperimentConfig config, String[] strategyNames,
+            int[] userIds, int[] offsets, byte[] strategies, int[] ids, long[] newSourceBits, long buildNanos,
+            int parallelism) {
+        this.date = Objects.requireNonNull(date);
+        this.perPage = perPage;
+        this.config = Objects.requireNonNull(config);
+        this.strategyNames = strategyNames;
+        this.userIds = userIds;
+        this.offsets = offsets;
+        this.strategies = strategies;
+        this.ids = ids;
+        this.newSourceBits = newSourceBits;
+        this.entries = new InterleavingCache.Entry[userIds.length];
+        this.buildNanos = buildNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * ユーザのインターリービング結果を取得
+     * 日付・1ページあたりのアイテム数・実験設定・戦略が計算時と異なる場合は使用できない
+     *
+     * @param userId       ユーザID
+     * @param date         リクエストの日付
+     * @param perPage      1ページあたりのアイテム数
+     * @param config       リクエスト時の実験設定
+     * @param strategyName インターリービングの戦略の名前
+     * @return インターリービング結果。事前に計算していない場合はnull
+     */
+    public InterleavingCache.Entry entry(Integer userId, LocalDate date, Integer perPage, ExperimentConfig config,
+            String strategyName) {
+        if (userId == null || !this.date.equals(date) || this.perPage != perPage || !this.isBuiltWith(config)) {
+            return null;
+        }
+        int index = Arrays.binarySearch(userIds, userId);
+        if (index < 0 || !strategyNames[strategies[index]].equals(strategyName)) {
+            return null;
+        }
+        InterleavingCache.Entry entry = entries[index];
+        if (entry == null) {
+            entry = this.createEntry(index);
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * 指定した実験設定で計算した結果か
+     * 設定の再読み込みで差し替えられた場合は、内容が同じでも別の設定として扱う
+     *
+     * @param config 実験設定
+     * @return 計算に使用した設定の場合true
+     */
+    public boolean isBuiltWith(ExperimentConfig config) {
+        return this.config == config;
+    }
+
+    private InterleavingCache.Entry createEntry(int index) {
+        int from = offsets[index];
+        int to = offsets[index + 1];
+        int[] entryIds = Arrays.copyOfRange(ids, from, to);
+        byte[] entrySources = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            if ((newSourceBits[i >>> 6] & (1L << i)) != 0) {
+                entrySources[i - from] = InterleavingEngine.SOURCE_NEW;
+            }
+        }
+        return InterleavingCache.Entry.of(entryIds, entrySources);
+    }
+
+    /**
+     * 事前に計算したユーザ数
+     */
+    public int size() {
+        return userIds.length;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    /**
+     * 保持している配列の合計バイト数(参照時に生成するエントリ自体は含まない)
+     */
+    public long getFootprintBytes() {
+        return (long) userIds.length * Integer.BYTES + (long) offsets.length * Integer.BYTES + strategies.length
+                + (long) ids.length * Integer.BYTES + (long) newSourceBits.length * Long.BYTES
+                + (long) entries.length * Integer.BYTES;
+    }
+
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * 計算のスループット(1コアあたり・1秒あたりのユーザ数)
+     *
+     * @return ユーザ数/秒/コア
+     */
+    public double getUsersPerSecondPerCore() {
+        if (buildNanos <= 0) {
+            return 0;
+        }
+        return userIds.length / (buildNanos / 1_000_000_000.0) / parallelism;
+    }
+}
@@ -0,0 +1,19 @@
+import java.util.List;
+
+/**
+ * ページ単位で同期的に参照できるランキングの取得元
+ * ランキングを手元に保持している取得元(RankingSnapshotStore・UserRankingStore)が実装し、
+ * CodeTestのoldAlgorithm・newAlgorithmはこのインタフェースを経由してランキングを返す
+ */
+public interface PagedRankingSource extends RankingSource {
+
+    /**
+     * ランキングの指定ページを取得
+     *
+     * @param userId  アクセスしたユーザーのID
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりのアイテム数
+     * @return 募集のIDのリスト(読み取り専用。ランキングの末尾を超えた分は含まない)
+     */
+    List<Integer> page(Integer userId, int page, int perPage);
+}
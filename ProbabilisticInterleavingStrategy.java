@@ -0,0 +1,132 @@
+import java.util.Random;
+
+/**
+ * Probabilistic Interleaving
+ * 各ランキングを順位の-τ乗に比例する確率分布とみなし、毎回ランダムに選んだ側の分布からIDを非復元抽出する。
+ * 抽出とその後の除外はフェニック木で行うため、1件あたりO(log n)で済む。
+ * 相手側で既に選ばれたIDを引いた場合は、同じ側の分布から引き直す(除外後の分布から抽出するのと同じ結果になる)
+ */
+public final class ProbabilisticInterleavingStrategy implements InterleavingStrategy {
+
+    public static final String NAME = "probabilistic";
+
+    /* 順位に対する確率の減衰の強さ */
+    public static final double TAU = 3.0;
+
+    /* 残りの重みの合計が構築時のこの割合を下回ったらフェニック木を構築し直す */
+    private static final double REBUILD_RATIO = 0.5;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int merge(InterleavingEngine engine, long seed, int[] oldIds, int oldLength, int[] newIds,
+            int newLength, int totalNeeded) {
+        Random random = engine.random(seed);
+
+        engine.reset(Math.min(totalNeeded, oldLength + newLength));
+        double[] oldTree = engine.weightBuffer(0, oldLength + 1);
+        double[] oldWeights = engine.weightBuffer(1, oldLength + 1);
+        double[] newTree = engine.weightBuffer(2, newLength + 1);
+        double[] newWeights = engine.weightBuffer(3, newLength + 1);
+        initialize(oldTree, oldWeights, oldLength);
+        initialize(newTree, newWeights, newLength);
+        int oldRemaining = oldLength;
+        int newRemaining = newLength;
+
+        while (engine.size() < totalNeeded && (oldRemaining > 0 || newRemaining > 0)) {
+            boolean pickOld = newRemaining == 0 || (oldRemaining > 0 && random.nextBoolean());
+            int[] ids = pickOld ? oldIds : newIds;
+            double[] tree = pickOld ? oldTree : newTree;
+            double[] weights = pickOld ? oldWeights : newWeights;
+            int length = pickOld ? oldLength : newLength;
+            int remaining = pickOld ? oldRemaining : newRemaining;
+
+            int index;
+            do {
+                index = sample(tree, weights, length, random);
+                remove(tree, weights, length, index);
+                remaining--;
+            } while (remaining > 0 && engine.skipIfMerged(ids[index]));
+            engine.append(ids[index], pickOld ? InterleavingEngine.SOURCE_OLD : InterleavingEngine.SOURCE_NEW);
+
+            if (pickOld) {
+                oldRemaining = remaining;
+            } else {
+                newRemaining = remaining;
+            }
+        }
+        return engine.size();
+    }
+
+    /**
+     * 順位に応じた重みを設定してフェニック木を構築
+     */
+    private static void initialize(double[] tree, double[] weights, int length) {
+        for (int rank = 1; rank <= length; rank++) {
+            weights[rank - 1] = 1.0 / Math.pow(rank, TAU);
+        }
+        rebuild(tree, weights, length);
+    }
+
+    /**
+     * 残っている重みからフェニック木を構築し直す(O(n))
+     * 残りの重みの合計はtree[0](フェニック木では使用しない位置)、構築時点の合計はweights[length]に保持する
+     */
+    private static void rebuild(double[] tree, double[] weights, int length) {
+        System.arraycopy(weights, 0, tree, 1, length);
+        for (int i = 1; i <= length; i++) {
+            int parent = i + (i & -i);
+            if (parent <= length) {
+                tree[parent] += tree[i];
+            }
+        }
+        double total = 0;
+        for (int i = length; i > 0; i -= i & -i) {
+            total += tree[i];
+        }
+        tree[0] = total;
+        weights[length] = total;
+    }
+
+    /**
+     * 残っている重みに比例してインデックスを抽出
+     */
+    private static int sample(double[] tree, double[] weights, int length, Random random) {
+        // 上位の重みを引き続けると残りの重みが減算の誤差に埋もれるため、合計が構築時の一定割合を下回ったら構築し直す
+        if (tree[0] < weights[length] * REBUILD_RATIO) {
+            rebuild(tree, weights, length);
+        }
+        double target = random.nextDouble() * tree[0];
+
+        int position = 0;
+        for (int step = Integer.highestOneBit(length); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= length && tree[next] <= target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        if (position < length && weights[position] > 0) {
+            return position;
+        }
+        // 丸め誤差で範囲外・除外済みを指した場合は、重みが残っている末尾側のインデックスを使う
+        for (int i = length - 1; i >= 0; i--) {
+            if (weights[i] > 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("抽出できるIDが残っていません");
+    }
+
+    private static void remove(double[] tree, double[] weights, int length, int index) {
+        double weight = weights[index];
+        weights[index] = 0;
+        tree[0] -= weight;
+        for (int i = index + 1; i <= length; i += i & -i) {
+            tree[i] -= weight;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * マルチリービングで統合するランキング
+ *
+ * @param name          ランキングの名前(JobPostの取得元に使用する)
+ * @param rankingSource ランキングの取得元
+ */
+public record Ranker(String name, RankingSource rankingSource) {
+}
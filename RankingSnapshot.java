@@ -0,0 +1,221 @@
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * アルゴリズム毎の1日分のランキング
+ * IDはint[]またはランキングファイルをマップしたバッファで保持して生成後は変更しないため、複数スレッドから同期無しで読み込める。
+ * ページはコピーせずにIDの範囲を参照する読み取り専用のビューとして返す。
+ * ユーザ毎のランキングを持つ場合、ランキングの無いユーザには全ユーザ共通のランキングを返す
+ */
+public final class RankingSnapshot {
+
+    /* ユーザ毎のランキングの位置の1件あたりのint数(ユーザID・開始位置・件数) */
+    static final int USER_SEGMENT_INTS = 3;
+
+    private static final IntBuffer NO_USER_SEGMENTS = IntBuffer.allocate(0);
+
+    private final LocalDate date;
+
+    /* 全ユーザ共通のランキングとユーザ毎のランキングを続けて並べたID */
+    private final IntBuffer ids;
+
+    /* 全ユーザ共通のランキングの件数(idsの先頭からこの件数まで) */
+    private final int defaultLength;
+
+    /* ユーザIDの昇順に並べた、ユーザ毎のランキングの位置(ユーザID・開始位置・件数の繰り返し) */
+    private final IntBuffer userSegments;
+
+    private final int userCount;
+
+    RankingSnapshot(LocalDate date, IntBuffer ids, int defaultLength, IntBuffer userSegments) {
+        this.date = Objects.requireNonNull(date);
+        this.ids = ids;
+        this.defaultLength = defaultLength;
+        this.userSegments = userSegments;
+        this.userCount = userSegments.limit() / USER_SEGMENT_INTS;
+    }
+
+    /**
+     * 配列からランキングを生成(呼び出し元が配列を変更しても影響しないよう複製する)
+     *
+     * @param date ランキングの日付
+     * @param ids  順位順のID
+     * @return ランキング
+     */
+    public static RankingSnapshot of(LocalDate date, int[] ids) {
+        return new RankingSnapshot(date, IntBuffer.wrap(Arrays.copyOf(ids, ids.length)), ids.length,
+                NO_USER_SEGMENTS);
+    }
+
+    /**
+     * リストからランキングを生成
+     *
+     * @param date ランキングの日付
+     * @param ids  順位順のID
+     * @return ランキング
+     */
+    public static RankingSnapshot of(LocalDate date, List<Integer> ids) {
+        int[] idArray = new int[ids.size()];
+        for (int i = 0; i < idArray.length; i++) {
+            idArray[i] = ids.get(i);
+        }
+        return new RankingSnapshot(date, IntBuffer.wrap(idArray), idArray.length, NO_USER_SEGMENTS);
+    }
+
+    /**
+     * 全ユーザ共通のランキングの指定範囲のIDを読み取り専用のビューとして取得
+     * 範囲はランキングの件数に収まるよう切り詰め、範囲外の場合は空のリストを返す
+     *
+     * @param offset 読み込み位置（0から始まる）
+     * @param limit  取得件数
+     * @return IDのリスト
+     */
+    public List<Integer> range(int offset, int limit) {
+        return this.view(0, defaultLength, offset, limit);
+    }
+
+    /**
+     * ユーザのランキングの指定範囲のIDを読み取り専用のビューとして取得
+     *
+     * @param userId アクセスしたユーザーのID
+     * @param offset 読み込み位置（0から始まる）
+     * @param limit  取得件数
+     * @return IDのリスト
+     */
+    public List<Integer> range(Integer userId, int offset, int limit) {
+        int segment = this.findUserSegment(userId);
+        if (segment < 0) {
+            return this.range(offset, limit);
+        }
+        // ファイルの位置が不正でもIDの範囲外を読まないよう切り詰める
+        int base = segment * USER_SEGMENT_INTS;
+        int start = Math.max(0, Math.min(userSegments.get(base + 1), ids.limit()));
+        int length = Math.max(0, Math.min(userSegments.get(base + 2), ids.limit() - start));
+        return this.view(start, length, offset, limit);
+    }
+
+    /**
+     * 全ユーザ共通のランキングの指定ページのIDを読み取り専用のビューとして取得
+     *
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりのアイテム数
+     * @return IDのリスト。ランキングの末尾を超えた分は含まない
+     */
+    public List<Integer> page(int page, int perPage) {
+        return this.range(pageOffset(page, perPage), perPage);
+    }
+
+    /**
+     * ユーザのランキングの指定ページのIDを読み取り専用のビューとして取得
+     *
+     * @param userId  アクセスしたユーザーのID
+     * @param page    ページ番号（1から始まる）
+     * @param perPage 1ページあたりのアイテム数
+     * @return IDのリスト。ランキングの末尾を超えた分は含まない
+     */
+    public List<Integer> page(Integer userId, int page, int perPage) {
+        return this.range(userId, pageOffset(page, perPage), perPage);
+    }
+
+    /**
+     * 全ユーザ共通のランキングの件数
+     */
+    public int size() {
+        return defaultLength;
+    }
+
+    public int idAt(int index) {
+        Objects.checkIndex(index, defaultLength);
+        return ids.get(index);
+    }
+
+    /**
+     * ユーザ毎のランキングを持つか
+     *
+     * @return ユーザ毎のランキングを持つ場合true
+     */
+    public boolean hasUserSegments() {
+        return userCount > 0;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * ユーザIDの二分探索
+     *
+     * @return ユーザ毎のランキングの番号。無い場合は-1
+     */
+    private int findUserSegment(Integer userId) {
+        if (userId == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midUserId = userSegments.get(mid * USER_SEGMENT_INTS);
+            if (midUserId < userId) {
+                low = mid + 1;
+            } else if (midUserId > userId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private List<Integer> view(int start, int length, int offset, int limit) {
+        int from = Math.max(0, Math.min(offset, length));
+        int to = (int) Math.max(from, Math.min((long) from + Math.max(0, limit), length));
+        return new IdView(ids, start + from, start + to);
+    }
+
+    private static int pageOffset(int page, int perPage) {
+        long offset = (long) (page - 1) * perPage;
+        return (int) Math.max(0, Math.min(offset, Integer.MAX_VALUE));
+    }
+
+    /**
+     * IDの一部を参照する読み取り専用のリスト
+     * IntBufferは絶対位置の読み込みのみを使用するため、同じバッファを複数スレッドで共有できる
+     */
+    private static final class IdView extends AbstractList<Integer> implements RandomAccess {
+
+        private final IntBuffer ids;
+
+        private final int from;
+
+        private final int to;
+
+        private IdView(IntBuffer ids, int from, int to) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer get(int index) {
+            Objects.checkIndex(index, to - from);
+            return ids.get(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public List<Integer> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, to - from);
+            return new IdView(ids, from + fromIndex, from + toIndex);
+        }
+    }
+}
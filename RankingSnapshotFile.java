@@ -0,0 +1,297 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * ランキングのスナップショットファイル
+ * 1日分のランキングをビルド時に1度だけ書き出し、各JVMはMappedByteBufferで読み込む。
+ * ページキャッシュ上の1つのコピーを同じホストの全JVMで共有し、起動時の解析も不要となる。
+ *
+ * <pre>
+ * ヘッダ(32バイト、ビッグエンディアン)
+ *   int  マジックナンバー("RNKS")
+ *   int  フォーマットバージョン
+ *   long ランキングの日付(エポック日)
+ *   int  IDの総数
+ *   int  全ユーザ共通のランキングの件数(IDの先頭から)
+ *   int  ユーザ毎のランキングの数
+ *   int  予約(0)
+ * ユーザ毎のランキングの位置(ユーザIDの昇順)
+ *   int  ユーザID, int IDの開始位置, int 件数 をユーザ毎のランキングの数だけ繰り返す
+ * ID
+ *   int  全ユーザ共通のランキング、ユーザ毎のランキングの順に並べたID
+ * </pre>
+ *
+ * マップできるのは1ファイルあたり2GBまでのため、IDの総数は約5億件までとなる
+ */
+public final class RankingSnapshotFile {
+
+    /* マジックナンバー("RNKS") */
+    public static final int MAGIC = 0x524E4B53;
+
+    /* フォーマットバージョン */
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 32;
+
+    /* ファイル名の拡張子 */
+    public static final String EXTENSION = ".snapshot";
+
+    /* 書き出し時のバッファサイズ */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private RankingSnapshotFile() {
+    }
+
+    /**
+     * ランキングのファイルのパス(「名前-日付.snapshot」)
+     *
+     * @param directory ランキングのファイルを置くディレクトリ
+     * @param name      ランキングの名前(アルゴリズム名など)
+     * @param date      ランキングの日付
+     * @return パス
+     */
+    public static Path path(Path directory, String name, LocalDate date) {
+        return directory.resolve(name + "-" + date + EXTENSION);
+    }
+
+    /**
+     * 指定日以前で最も新しいランキングのファイルを検索
+     * 日付を跨いだ直後など、当日分がまだ書き出されていない場合に前日分で起動するために使用する
+     *
+     * @param directory ランキングのファイルを置くディレクトリ
+     * @param name      ランキングの名前
+     * @param date      日付
+     * @return ファイルの日付。無い場合はnull
+     * @throws IOException ディレクトリを読み込めない場合
+     */
+    public static LocalDate latestDate(Path directory, String name, LocalDate date) throws IOException {
+        String prefix = name + "-";
+        LocalDate latest = null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + EXTENSION)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                LocalDate fileDate;
+                try {
+                    fileDate = LocalDate.parse(
+                            fileName.substring(prefix.length(), fileName.length() - EXTENSION.length()));
+                } catch (DateTimeException e) {
+                    // 日付の部分が不正なファイルは対象外とする
+                    continue;
+                }
+                if (!fileDate.isAfter(date) && (latest == null || fileDate.isAfter(latest))) {
+                    latest = fileDate;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * ランキングのファイルをマップして読み込む
+     * IDはコピーせずにマップしたバッファを直接参照し、検証するのはヘッダのみとする。
+     * マップはファイルを閉じた後も、読み込んだランキングが参照されなくなるまで有効となる
+     *
+     * @param path ランキングのファイル
+     * @return ランキング
+     * @throws IOException ファイルを読み込めない・フォーマットが不正な場合
+     */
+    public static RankingSnapshot map(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("不正なランキングファイルです: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        int magic = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        long epochDay = buffer.getLong(8);
+        int idCount = buffer.getInt(16);
+        int defaultLength = buffer.getInt(20);
+        int userCount = buffer.getInt(24);
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("不正なランキングファイルです: " + path);
+        }
+        long segmentBytes = (long) userCount * RankingSnapshot.USER_SEGMENT_INTS * Integer.BYTES;
+        long idBytes = (long) idCount * Integer.BYTES;
+        if (idCount < 0 || userCount < 0 || defaultLength < 0 || defaultLength > idCount
+                || HEADER_SIZE + segmentBytes + idBytes != buffer.capacity()) {
+            throw new IOException("不正なランキングファイルです: " + path);
+        }
+
+        LocalDate date;
+        try {
+            date = LocalDate.ofEpochDay(epochDay);
+        } catch (DateTimeException e) {
+            throw new IOException("不正なランキングファイルです: " + path, e);
+        }
+        IntBuffer userSegments = buffer.slice(HEADER_SIZE, (int) segmentBytes).order(ByteOrder.BIG_ENDIAN)
+                .asIntBuffer();
+        IntBuffer ids = buffer.slice(HEADER_SIZE + (int) segmentBytes, (int) idBytes).order(ByteOrder.BIG_ENDIAN)
+                .asIntBuffer();
+        return new RankingSnapshot(date, ids, defaultLength, userSegments);
+    }
+
+    /**
+     * ランキングをファイルに書き出す
+     * 一時ファイルに書き出してから置き換えるため、読み込む側が書き出し途中のファイルをマップすることは無い
+     *
+     * @param path           書き出し先
+     * @param date           ランキングの日付
+     * @param defaultIds     全ユーザ共通のランキングのID
+     * @param userRankingMap ユーザID毎のランキングのID(無い場合は空)
+     * @throws IOException 書き出せない場合
+     */
+    public static void write(Path path, LocalDate date, int[] defaultIds, Map<Integer, int[]> userRankingMap)
+            throws IOException {
+        // 読み込み時に二分探索できるよう、ユーザIDの昇順に並べる
+        SortedMap<Integer, int[]> sortedRankingMap = new TreeMap<>(userRankingMap);
+        long idCount = defaultIds.length;
+        for (int[] userIds : sortedRankingMap.values()) {
+            idCount += userIds.length;
+        }
+        long fileSize = HEADER_SIZE
+                + (long) sortedRankingMap.size() * RankingSnapshot.USER_SEGMENT_INTS * Integer.BYTES
+                + idCount * Integer.BYTES;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ランキングの件数が多すぎます: " + idCount);
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(date.toEpochDay());
+                buffer.putInt((int) idCount);
+                buffer.putInt(defaultIds.length);
+                buffer.putInt(sortedRankingMap.size());
+                buffer.putInt(0);
+
+                int start = defaultIds.length;
+                for (Map.Entry<Integer, int[]> entry : sortedRankingMap.entrySet()) {
+                    putInt(channel, buffer, entry.getKey());
+                    putInt(channel, buffer, start);
+                    putInt(channel, buffer, entry.getValue().length);
+                    start += entry.getValue().length;
+                }
+                putInts(channel, buffer, defaultIds);
+                for (int[] userIds : sortedRankingMap.values()) {
+                    putInts(channel, buffer, userIds);
+                }
+                flush(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * ランキングのファイルを書き出すツール
+     * 入力ファイルは1行毎にIDをカンマまたは空白区切りで記述する。
+     * 「ユーザID:」で始まる行はそのユーザのランキング、それ以外の行は全ユーザ共通のランキングとして順に連結する
+     *
+     * <pre>
+     * java RankingSnapshotFile 出力ディレクトリ ランキングの名前 日付(yyyy-MM-dd) 入力ファイル
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("使い方: RankingSnapshotFile 出力ディレクトリ ランキングの名前 日付(yyyy-MM-dd) 入力ファイル");
+            System.exit(2);
+        }
+        Path directory = Path.of(args[0]);
+        String name = args[1];
+        LocalDate date = LocalDate.parse(args[2]);
+
+        List<Integer> defaultIdList = new ArrayList<>();
+        Map<Integer, int[]> userRankingMap = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[3]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    for (int id : parseIds(line)) {
+                        defaultIdList.add(id);
+                    }
+                } else {
+                    userRankingMap.put(Integer.valueOf(line.substring(0, colon).strip()),
+                            parseIds(line.substring(colon + 1)));
+                }
+            }
+        }
+
+        int[] defaultIds = new int[defaultIdList.size()];
+        for (int i = 0; i < defaultIds.length; i++) {
+            defaultIds[i] = defaultIdList.get(i);
+        }
+        Path path = path(directory, name, date);
+        write(path, date, defaultIds, userRankingMap);
+        System.out.println(path + ": 共通 " + defaultIds.length + "件, ユーザ毎 " + userRankingMap.size() + "人");
+    }
+
+    private static int[] parseIds(String text) {
+        String stripped = text.strip();
+        if (stripped.isEmpty()) {
+            return new int[0];
+        }
+        String[] fields = stripped.split("[,\\s]+");
+        int[] ids = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            ids[i] = Integer.parseInt(fields[i]);
+        }
+        return ids;
+    }
+
+    private static void putInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            putInt(channel, buffer, value);
+        }
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush(channel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 読み込み済みのランキングを返す取得元
+ * ランキングの更新は新しいRankingSnapshotへの参照の差し替えのみで行うため、読み込み中のスレッドを待たせない。
+ * 差し替え前に取得したページは、差し替え後も古いランキングを参照し続ける。
+ * 読み込み処理を指定した場合は、日付が変わった後の最初の参照で当日分のランキングを読み込んで差し替える
+ */
+public class RankingSnapshotStore implements PagedRankingSource {
+
+    /* 当日分のランキングを読み込めなかった場合に再試行するまでの間隔 */
+    public static final Duration RELOAD_RETRY_INTERVAL = Duration.ofMinutes(1);
+
+    private static final Logger LOGGER = Logger.getLogger(RankingSnapshotStore.class.getName());
+
+    /**
+     * 指定日のランキングの読み込み処理
+     */
+    @FunctionalInterface
+    public interface Loader {
+        RankingSnapshot load(LocalDate date) throws IOException;
+    }
+
+    private final AtomicReference<RankingSnapshot> snapshot;
+
+    /* 日付毎のランキングの読み込み処理(差し替えを手動で行う場合はnull) */
+    private final Loader loader;
+
+    /* 当日の日付の取得 */
+    private final Supplier<LocalDate> today;
+
+    /* 読み込みは1スレッドのみで行い、他のスレッドは読み込み中も前日分を参照する */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    /* 次に読み込みを試行できる時刻(System.nanoTime) */
+    private volatile long nextReloadNanos;
+
+    /**
+     * @param snapshot 最初のランキング
+     */
+    public RankingSnapshotStore(RankingSnapshot snapshot) {
+        this(snapshot, null, null);
+    }
+
+    /**
+     * @param snapshot 最初のランキング
+     * @param loader   日付毎のランキングの読み込み処理
+     * @param today    当日の日付の取得
+     */
+    public RankingSnapshotStore(RankingSnapshot snapshot, Loader loader, Supplier<LocalDate> today) {
+        this.snapshot = new AtomicReference<>(Objects.requireNonNull(snapshot));
+        this.loader = loader;
+        this.today = loader == null ? null : Objects.requireNonNull(today);
+        this.nextReloadNanos = System.nanoTime();
+    }
+
+    /**
+     * ディレクトリに置かれたランキングのファイルをマップして参照する
+     * 当日分のファイルが無い場合は前日以前で最も新しいファイルで開始し、当日分が書き出されてから差し替える
+     *
+     * @param directory ランキングのファイルを置くディレクトリ
+     * @param name      ランキングの名前(RankingSnapshotFile#pathを参照)
+     * @param today     当日の日付の取得
+     * @return ランキングの取得元
+     * @throws IOException 当日以前のファイルが無い・読み込めない場合
+     */
+    public static RankingSnapshotStore open(Path directory, String name, Supplier<LocalDate> today)
+            throws IOException {
+        Loader loader = date -> RankingSnapshotFile.map(RankingSnapshotFile.path(directory, name, date));
+        LocalDate latestDate = RankingSnapshotFile.latestDate(directory, name, today.get());
+        if (latestDate == null) {
+            throw new IOException("ランキングファイルがありません: " + directory + " " + name);
+        }
+        return new RankingSnapshotStore(loader.load(latestDate), loader, today);
+    }
+
+    /**
+     * 現在のランキングを取得
+     * 日付が変わっている場合は当日分の読み込みを試み、読み込めるまでは前日分を返す
+     *
+     * @return ランキング
+     */
+    public RankingSnapshot current() {
+        RankingSnapshot current = snapshot.get();
+        if (loader == null) {
+            return current;
+        }
+        LocalDate date = today.get();
+        if (!current.getDate().isBefore(date) || System.nanoTime() - nextReloadNanos < 0) {
+            return current;
+        }
+        return this.reload(date);
+    }
+
+    /**
+     * ランキングを差し替える
+     *
+     * @param next 新しいランキング
+     * @return 差し替える前のランキング
+     */
+    public RankingSnapshot swap(RankingSnapshot next) {
+        return snapshot.getAndSet(Objects.requireNonNull(next));
+    }
+
+    @Override
+    public List<Integer> page(Integer userId, int page, int perPage) {
+        return this.current().page(userId, page, perPage);
+    }
+
+    @Override
+    public CompletableFuture<List<Integer>> fetch(Integer userId, Integer offset, Integer limit) {
+        // メモリ上(またはマップしたファイル)のランキングを参照するだけなので、別スレッドを使わずに完了済みで返す
+        return CompletableFuture.completedFuture(this.current().range(userId, offset, limit));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, List<Integer>>> fetchBulk(Collection<Integer> userIds, Integer offset,
+            Integer limit) {
+        RankingSnapshot current = this.current();
+        // ユーザ毎のランキングが無い場合は全ユーザ共通のため、同じビューを返す
+        List<Integer> sharedList = current.hasUserSegments() ? null : current.range(offset, limit);
+        Map<Integer, List<Integer>> rankingMap = new HashMap<>();
+        for (Integer userId : userIds) {
+            rankingMap.put(userId, sharedList != null ? sharedList : current.range(userId, offset, limit));
+        }
+        return CompletableFuture.completedFuture(rankingMap);
+    }
+
+    /**
+     * 当日分のランキングを読み込んで差し替える
+     * 他のスレッドが読み込み中の場合や読み込めなかった場合は、現在のランキングをそのまま返す
+     */
+    private RankingSnapshot reload(LocalDate date) {
+        if (!reloadLock.tryLock()) {
+            return snapshot.get();
+        }
+        try {
+            RankingSnapshot current = snapshot.get();
+            if (!current.getDate().isBefore(date)) {
+                return current;
+            }
+            RankingSnapshot next = loader.load(date);
+            snapshot.set(next);
+            if (next.getDate().isBefore(date)) {
+                // 読み込んだファイルが当日分でない場合も、参照の度に読み込み直さないよう間隔を空ける
+                nextReloadNanos = System.nanoTime() + RELOAD_RETRY_INTERVAL.toNanos();
+            }
+            return next;
+        } catch (IOException e) {
+            // 当日分がまだ書き出されていない場合など。一定時間は再試行せずに前日分を返し続ける
+            nextReloadNanos = System.nanoTime() + RELOAD_RETRY_INTERVAL.toNanos();
+            LOGGER.warning("ランキングを読み込めません(" + date + "): " + e);
+            return snapshot.get();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+}
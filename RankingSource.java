@@ -0,0 +1,47 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ランキングの取得元
+ * 新旧アルゴリズムは本番ではそれぞれ別のランキングサービスとなるため、非同期で取得できるようにする
+ */
+public interface RankingSource {
+
+    /**
+     * ランキングを取得
+     * 
+     * @param userId アクセスしたユーザーのID
+     * @param offset 読み込み位置（0から始まる）
+     * @param limit  取得件数
+     * @return 募集のIDのリスト。ランキングの末尾を超えた分は返却しない
+     */
+    CompletableFuture<List<Integer>> fetch(Integer userId, Integer offset, Integer limit);
+
+    /**
+     * 複数ユーザのランキングをまとめて取得
+     * 一括取得に対応していない取得元では、ユーザ毎に並行して取得する
+     * 
+     * @param userIds アクセスしたユーザーのIDの集合
+     * @param offset  読み込み位置（0から始まる）
+     * @param limit   取得件数
+     * @return ユーザID毎の募集のIDのリスト
+     */
+    default CompletableFuture<Map<Integer, List<Integer>>> fetchBulk(Collection<Integer> userIds, Integer offset,
+            Integer limit) {
+        Map<Integer, CompletableFuture<List<Integer>>> futureMap = new HashMap<>();
+        for (Integer userId : userIds) {
+            futureMap.put(userId, this.fetch(userId, offset, limit));
+        }
+        return CompletableFuture.allOf(futureMap.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<Integer, List<Integer>> rankingMap = new HashMap<>();
+                    for (Map.Entry<Integer, CompletableFuture<List<Integer>>> entry : futureMap.entrySet()) {
+                        rankingMap.put(entry.getKey(), entry.getValue().join());
+                    }
+                    return rankingMap;
+                });
+    }
+}
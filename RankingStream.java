@@ -0,0 +1,134 @@
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ランキングの取得元から、必要になった分だけチャンク単位で読み込むストリーム
+ * 最初のチャンクは生成時に取得を開始し、以降はバッファを読み切った時点で次のチャンクを取得する。
+ * チャンクの件数は取得の度に倍にし、重複が多い場合でも取得回数が増えすぎないようにする
+ */
+public final class RankingStream {
+
+    /* 1回に取得する最大件数 */
+    public static final int MAX_CHUNK_SIZE = 10_000;
+
+    private final RankingSource rankingSource;
+
+    private final Integer userId;
+
+    private final Duration timeout;
+
+    /* チャンクの取得の待ち時間の記録先 */
+    private final InterleavingMetrics metrics;
+
+    /* 次に取得する件数 */
+    private int chunkSize;
+
+    /* 取得中のチャンクとその件数 */
+    private CompletableFuture<List<Integer>> pending;
+
+    private int pendingSize;
+
+    private int[] buffer = new int[0];
+
+    private int length;
+
+    private int position;
+
+    /* 次に取得するチャンクの読み込み位置 */
+    private int offset;
+
+    /* ランキングの末尾まで取得したか */
+    private boolean exhausted;
+
+    private int fetchCount;
+
+    /**
+     * @param rankingSource    ランキングの取得元
+     * @param userId           ユーザID
+     * @param timeout          1回の取得のタイムアウト
+     * @param initialChunkSize 最初に取得する件数
+     */
+    public RankingStream(RankingSource rankingSource, Integer userId, Duration timeout, int initialChunkSize) {
+        this(rankingSource, userId, timeout, initialChunkSize, InterleavingMetrics.DISABLED);
+    }
+
+    /**
+     * @param rankingSource    ランキングの取得元
+     * @param userId           ユーザID
+     * @param timeout          1回の取得のタイムアウト
+     * @param initialChunkSize 最初に取得する件数
+     * @param metrics          チャンクの取得の待ち時間の記録先
+     */
+    public RankingStream(RankingSource rankingSource, Integer userId, Duration timeout, int initialChunkSize,
+            InterleavingMetrics metrics) {
+        this.rankingSource = rankingSource;
+        this.userId = userId;
+        this.timeout = timeout;
+        this.metrics = metrics;
+        this.chunkSize = Math.max(1, Math.min(initialChunkSize, MAX_CHUNK_SIZE));
+        this.pending = this.fetch();
+    }
+
+    /**
+     * 次のIDがあるか判定(バッファを読み切っている場合は次のチャンクを取得する)
+     *
+     * @return 次のIDがある場合true
+     * @throws java.util.concurrent.CompletionException 取得に失敗・タイムアウトした場合
+     */
+    public boolean hasNext() {
+        while (position == length && !exhausted) {
+            this.fill();
+        }
+        return position < length;
+    }
+
+    /**
+     * 次のIDを読み進めずに取得(hasNextがtrueの場合のみ呼び出すこと)
+     */
+    public int peek() {
+        return buffer[position];
+    }
+
+    /**
+     * 次のIDを取得して読み進める(hasNextがtrueの場合のみ呼び出すこと)
+     */
+    public int next() {
+        return buffer[position++];
+    }
+
+    public int getFetchCount() {
+        return fetchCount;
+    }
+
+    private void fill() {
+        CompletableFuture<List<Integer>> future = pending == null ? this.fetch() : pending;
+        int requested = pendingSize;
+        pending = null;
+
+        long fetchStart = metrics.start();
+        List<Integer> rankingList = future.join();
+        metrics.record(InterleavingMetrics.Stage.RANKING_FETCH, fetchStart);
+        if (buffer.length < rankingList.size()) {
+            buffer = new int[Math.max(rankingList.size(), buffer.length * 2)];
+        }
+        for (int i = 0; i < rankingList.size(); i++) {
+            buffer[i] = rankingList.get(i);
+        }
+        length = rankingList.size();
+        position = 0;
+        // 要求した件数に満たない場合は末尾まで読み込んだとみなす
+        exhausted = rankingList.size() < requested;
+    }
+
+    private CompletableFuture<List<Integer>> fetch() {
+        CompletableFuture<List<Integer>> future = rankingSource.fetch(userId, offset, chunkSize)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        pendingSize = chunkSize;
+        offset += chunkSize;
+        chunkSize = Math.min(chunkSize * 2, MAX_CHUNK_SIZE);
+        fetchCount++;
+        return future;
+    }
+}
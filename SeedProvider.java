@@ -0,0 +1,249 @@
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * インターリービングのシード値を生成する
+ * 日付は1日1回だけ文字列・バイト列に変換してキャッシュし、SHA-256のMessageDigestはスレッド毎に使い回す。
+ * SHA_256モードは従来の「ユーザID:日付」のSHA-256による値をそのまま再現するため、
+ * 途中で切り替えても当日配信済みのランキングの順序は変わらない
+ */
+public class SeedProvider {
+
+    /* シード値の生成方式を指定するシステムプロパティ */
+    public static final String SEED_MODE_PROPERTY = "codetest.seedMode";
+
+    private static final Logger LOGGER = Logger.getLogger(SeedProvider.class.getName());
+
+    /* SHA-256の出力長 */
+    private static final int DIGEST_LENGTH = 32;
+
+    /* int型の最大桁数(符号を含む) */
+    private static final int MAX_INT_LENGTH = 11;
+
+    private static final byte[] NULL_BYTES = "null".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * シード値の生成方式
+     */
+    public enum SeedMode {
+        /* 「ユーザID:日付」のSHA-256の先頭8バイト(従来と同じ値) */
+        SHA_256,
+        /* ユーザIDとエポック日をSplitMix64で混ぜた値(暗号学的強度は不要なため高速な方式) */
+        SPLIT_MIX_64
+    }
+
+    private final Clock clock;
+
+    private final SeedMode seedMode;
+
+    /* SHA-256が使用できるか */
+    private final boolean sha256Available;
+
+    /* 当日の日付と、その文字列表現のキャッシュ */
+    private volatile CachedDate cachedDate;
+
+    /* スレッド毎の作業領域 */
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * システム時計を使用し、生成方式はシステムプロパティ(未指定の場合はSHA_256)から決める
+     */
+    public SeedProvider() {
+        this(Clock.systemDefaultZone(),
+                SeedMode.valueOf(System.getProperty(SEED_MODE_PROPERTY, SeedMode.SHA_256.name())));
+    }
+
+    /**
+     * @param clock    日付の取得に使用する時計
+     * @param seedMode シード値の生成方式
+     */
+    public SeedProvider(Clock clock, SeedMode seedMode) {
+        this.clock = Objects.requireNonNull(clock);
+        this.seedMode = Objects.requireNonNull(seedMode);
+        this.sha256Available = isSha256Available();
+        if (seedMode == SeedMode.SHA_256 && !sha256Available) {
+            LOGGER.warning(CodeTest.WARNING_CONTENTS);
+        }
+        this.cachedDate = new CachedDate(LocalDate.now(clock), clock);
+    }
+
+    /**
+     * 当日の日付を取得
+     * 日付が変わるまではキャッシュした値を返す
+     *
+     * @return 当日の日付
+     */
+    public LocalDate today() {
+        return this.currentDate().date;
+    }
+
+    /**
+     * シード値の生成
+     *
+     * @param userId ユーザID
+     * @param date   日付
+     * @return シード値
+     */
+    public long seed(Integer userId, LocalDate date) {
+        CachedDate current = this.currentDate();
+        // 当日以外の日付(日付を跨いだ直後のリクエストなど)の場合のみ変換する
+        CachedDate target = current.date.equals(date) ? current : new CachedDate(date, null);
+
+        if (seedMode == SeedMode.SPLIT_MIX_64) {
+            return splitMix64(splitMix64(target.epochDay) + (userId == null ? 0 : userId));
+        }
+        if (!sha256Available) {
+            // SHA-256が使えない場合は従来と同じ方法でシード値を生成する
+            return Objects.hash(userId, target.dateString);
+        }
+        return this.sha256Seed(userId, target);
+    }
+
+    public SeedMode getSeedMode() {
+        return seedMode;
+    }
+
+    /**
+     * 「ユーザID:日付」のSHA-256の先頭8バイトをlong型に変換する
+     * 文字列を生成せず、スレッド毎のバッファにバイト列を直接書き込む
+     */
+    private long sha256Seed(Integer userId, CachedDate target) {
+        Scratch work = scratch.get();
+        byte[] input = work.input;
+        int length = writeUserId(userId, input);
+        input[length++] = ':';
+        System.arraycopy(target.dateBytes, 0, input, length, target.dateBytes.length);
+        length += target.dateBytes.length;
+
+        try {
+            work.digest.update(input, 0, length);
+            work.digest.digest(work.hash, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // ハッシュ結果（32バイト）の最初の8バイトをlong型に変換してシードにする(ByteBuffer.getLongと同じビッグエンディアン)
+        long seed = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            seed = (seed << 8) | (work.hash[i] & 0xFF);
+        }
+        return seed;
+    }
+
+    private CachedDate currentDate() {
+        CachedDate current = cachedDate;
+        long now = clock.millis();
+        if (now >= current.nextDayStartMillis || now < current.dayStartMillis) {
+            current = new CachedDate(LocalDate.now(clock), clock);
+            cachedDate = current;
+        }
+        return current;
+    }
+
+    /**
+     * ユーザIDをStringBuilder.appendと同じ表記でバッファに書き込む
+     *
+     * @return 書き込んだバイト数
+     */
+    private static int writeUserId(Integer userId, byte[] buffer) {
+        if (userId == null) {
+            System.arraycopy(NULL_BYTES, 0, buffer, 0, NULL_BYTES.length);
+            return NULL_BYTES.length;
+        }
+        long value = userId;
+        int length = 0;
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        return length + digits;
+    }
+
+    /**
+     * SplitMix64の混合関数
+     */
+    private static long splitMix64(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static boolean isSha256Available() {
+        try {
+            MessageDigest.getInstance(CodeTest.SHA_256);
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 日付とその変換結果
+     */
+    private static final class CachedDate {
+
+        private final LocalDate date;
+
+        private final String dateString;
+
+        private final byte[] dateBytes;
+
+        private final long epochDay;
+
+        /* 当日の開始・翌日の開始時刻(時計を指定しない場合は使用しない) */
+        private final long dayStartMillis;
+
+        private final long nextDayStartMillis;
+
+        private CachedDate(LocalDate date, Clock clock) {
+            this.date = date;
+            this.dateString = date.toString();
+            this.dateBytes = dateString.getBytes(StandardCharsets.US_ASCII);
+            this.epochDay = date.toEpochDay();
+            if (clock == null) {
+                this.dayStartMillis = Long.MIN_VALUE;
+                this.nextDayStartMillis = Long.MAX_VALUE;
+            } else {
+                this.dayStartMillis = date.atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+                this.nextDayStartMillis = date.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+            }
+        }
+    }
+
+    /**
+     * スレッド毎に使い回すMessageDigestとバッファ
+     */
+    private static final class Scratch {
+
+        private final MessageDigest digest;
+
+        private final byte[] input = new byte[MAX_INT_LENGTH + 1 + 32];
+
+        private final byte[] hash = new byte[DIGEST_LENGTH];
+
+        private Scratch() {
+            MessageDigest messageDigest = null;
+            try {
+                messageDigest = MessageDigest.getInstance(CodeTest.SHA_256);
+            } catch (NoSuchAlgorithmException e) {
+                // SHA-256が使用できない場合はsha256Seedが呼ばれないため、ここでは何もしない
+            }
+            this.digest = messageDigest;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 同期的なランキング取得処理を、仮想スレッド上で非同期に実行する取得元
+ * 取得処理がブロックしてもプラットフォームスレッドを占有しないため、新旧アルゴリズムを並行して呼び出せる
+ */
+public class SyncRankingSource implements RankingSource {
+
+    /* 取得処理を実行する仮想スレッド(タスク毎に生成されるため終了処理は不要) */
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 同期的なランキング取得処理
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        List<Integer> fetch(Integer userId, Integer offset, Integer limit);
+    }
+
+    /**
+     * 同期的な一括ランキング取得処理
+     */
+    @FunctionalInterface
+    public interface BulkFetcher {
+        Map<Integer, List<Integer>> fetchBulk(Collection<Integer> userIds, Integer offset, Integer limit);
+    }
+
+    private final Fetcher fetcher;
+
+    /* 一括取得処理(対応していない場合はnull) */
+    private final BulkFetcher bulkFetcher;
+
+    public SyncRankingSource(Fetcher fetcher) {
+        this(fetcher, null);
+    }
+
+    public SyncRankingSource(Fetcher fetcher, BulkFetcher bulkFetcher) {
+        this.fetcher = fetcher;
+        this.bulkFetcher = bulkFetcher;
+    }
+
+    @Override
+    public CompletableFuture<List<Integer>> fetch(Integer userId, Integer offset, Integer limit) {
+        return CompletableFuture.supplyAsync(() -> fetcher.fetch(userId, offset, limit), EXECUTOR);
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, List<Integer>>> fetchBulk(Collection<Integer> userIds, Integer offset,
+            Integer limit) {
+        if (bulkFetcher == null) {
+            return RankingSource.super.fetchBulk(userIds, offset, limit);
+        }
+        return CompletableFuture.supplyAsync(() -> bulkFetcher.fetchBulk(userIds, offset, limit), EXECUTOR);
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * Team Draft Interleaving
+ * 選んだ件数が少ない側(同数の場合はコイントス)が、自分のランキングで未選択のうち最上位のIDを選ぶ。
+ * 各IDは選んだ側のチームに属するため、クリックをそのまま新旧どちらかに帰属できる
+ */
+public final class TeamDraftInterleavingStrategy implements IncrementalInterleavingStrategy {
+
+    public static final String NAME = "teamDraft";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int merge(InterleavingEngine engine, long seed, int[] oldIds, int oldLength, int[] newIds,
+            int newLength, int totalNeeded) {
+        Random random = engine.random(seed);
+
+        engine.reset(Math.min(totalNeeded, oldLength + newLength));
+        int oldPointer = 0;
+        int newPointer = 0;
+        int oldTeamSize = 0;
+        int newTeamSize = 0;
+        while (engine.size() < totalNeeded) {
+            // 相手チームが既に選んだIDは読み飛ばす
+            while (oldPointer < oldLength && engine.skipIfMerged(oldIds[oldPointer])) {
+                oldPointer++;
+            }
+            while (newPointer < newLength && engine.skipIfMerged(newIds[newPointer])) {
+                newPointer++;
+            }
+            boolean oldAvailable = oldPointer < oldLength;
+            boolean newAvailable = newPointer < newLength;
+            if (!oldAvailable && !newAvailable) {
+                break;
+            }
+
+            boolean pickOld;
+            if (!newAvailable) {
+                pickOld = true;
+            } else if (!oldAvailable) {
+                pickOld = false;
+            } else if (oldTeamSize != newTeamSize) {
+                pickOld = oldTeamSize < newTeamSize;
+            } else {
+                pickOld = random.nextBoolean();
+            }
+
+            if (pickOld) {
+                engine.append(oldIds[oldPointer++], InterleavingEngine.SOURCE_OLD);
+                oldTeamSize++;
+            } else {
+                engine.append(newIds[newPointer++], InterleavingEngine.SOURCE_NEW);
+                newTeamSize++;
+            }
+        }
+        return engine.size();
+    }
+
+    @Override
+    public void begin(InterleavingState state) {
+        // 乱数はチームの件数が同数になった時点で使用する
+    }
+
+    @Override
+    public boolean pickOld(InterleavingState state, boolean oldAvailable, boolean newAvailable) {
+        if (!newAvailable) {
+            return true;
+        }
+        if (!oldAvailable) {
+            return false;
+        }
+        if (state.getOldTeamSize() != state.getNewTeamSize()) {
+            return state.getOldTeamSize() < state.getNewTeamSize();
+        }
+        return state.getRandom().nextBoolean();
+    }
+
+    @Override
+    public boolean skipsMergedIds() {
+        return true;
+    }
+}
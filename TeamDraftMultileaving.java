@@ -0,0 +1,70 @@
+import java.util.Random;
+
+/**
+ * Team Draft Multileaving
+ * ラウンド毎にランキングの順番をシード値の乱数でシャッフルし、その順に各ランキングが未選択のうち最上位のIDを1件ずつ選ぶ。
+ * 全てのランキングが毎ラウンド同じ件数を選ぶため公平で、1ラウンドの処理はランキング数Nに比例する。
+ * 読み込み位置は先頭から進むだけなので、全体の計算量はO(総件数 + ラウンド数 × N)となる
+ */
+public final class TeamDraftMultileaving {
+
+    private TeamDraftMultileaving() {
+    }
+
+    /**
+     * N個のランキングを統合し、結果をengineに格納する
+     *
+     * @param engine      作業領域
+     * @param seed        シード値
+     * @param rankings    ランキング毎のID
+     * @param lengths     ランキング毎の件数
+     * @param rankerCount ランキングの数
+     * @param totalNeeded 必要となる総件数
+     * @return 統合した件数
+     */
+    public static int merge(InterleavingEngine engine, long seed, int[][] rankings, int[] lengths,
+            int rankerCount, int totalNeeded) {
+        Random random = engine.random(seed);
+
+        long totalLength = 0;
+        for (int ranker = 0; ranker < rankerCount; ranker++) {
+            totalLength += lengths[ranker];
+        }
+        engine.reset((int) Math.min(totalNeeded, totalLength));
+
+        int[] pointers = engine.intBuffer(0, rankerCount);
+        int[] order = engine.intBuffer(1, rankerCount);
+        for (int ranker = 0; ranker < rankerCount; ranker++) {
+            pointers[ranker] = 0;
+            order[ranker] = ranker;
+        }
+
+        boolean picked = true;
+        while (engine.size() < totalNeeded && picked) {
+            // ラウンド毎のチームの順番(Fisher-Yatesで前回の順番をシャッフルし直す)
+            for (int i = rankerCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+
+            picked = false;
+            for (int i = 0; i < rankerCount && engine.size() < totalNeeded; i++) {
+                int ranker = order[i];
+                int[] ids = rankings[ranker];
+                int pointer = pointers[ranker];
+                // 他のチームが既に選んだIDは読み飛ばす
+                while (pointer < lengths[ranker] && !engine.append(ids[pointer], (byte) ranker)) {
+                    pointer++;
+                }
+                if (pointer < lengths[ranker]) {
+                    pointer++;
+                    picked = true;
+                }
+                pointers[ranker] = pointer;
+            }
+        }
+        return engine.size();
+    }
+}
@@ -0,0 +1,333 @@
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ユーザ毎のランキングをヒープ外に保持する取得元
+ * ユーザ毎に数百件、全体で数億件となるIDをList&lt;Integer&gt;で保持せず、ダイレクトバッファ上に詰めて格納する。
+ * <ul>
+ * <li>ID領域: ユーザ毎に件数と、直前のIDとの差分をZigZag変換した可変長整数(varint)を並べる</li>
+ * <li>索引: ユーザIDの最小値からの位置をそのまま添字とした、ID領域の位置の配列(ランキングの無いユーザは-1)</li>
+ * </ul>
+ * ページの取得では当該ユーザのランキングを先頭から復号し、ページの範囲のみを配列に取り出す。
+ * 生成後は変更しないため、複数スレッドから同期無しで参照できる
+ */
+public final class UserRankingStore implements PagedRankingSource {
+
+    /* ID領域の1チャンクの大きさ(1ユーザのランキングはチャンクを跨がない) */
+    public static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /* 索引でランキングの無いユーザを表す値 */
+    private static final long NO_RANKING = -1L;
+
+    /* varintの1件あたりの最大バイト数 */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /* 索引の先頭のユーザID */
+    private final int minUserId;
+
+    /* ID領域の位置(チャンクの番号を上位32ビット、チャンク内の位置を下位32ビットとする) */
+    private final LongBuffer index;
+
+    private final ByteBuffer[] chunks;
+
+    private final int userCount;
+
+    private final long storedIdCount;
+
+    private UserRankingStore(int minUserId, LongBuffer index, ByteBuffer[] chunks, int userCount,
+            long storedIdCount) {
+        this.minUserId = minUserId;
+        this.index = index;
+        this.chunks = chunks;
+        this.userCount = userCount;
+        this.storedIdCount = storedIdCount;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * ユーザのランキングの指定範囲のIDを取得
+     * 範囲はランキングの件数に収まるよう切り詰め、範囲外・ランキングの無いユーザの場合は空のリストを返す
+     *
+     * @param userId アクセスしたユーザーのID
+     * @param offset 読み込み位置（0から始まる）
+     * @param limit  取得件数
+     * @return IDのリスト(読み取り専用)
+     */
+    public List<Integer> range(Integer userId, int offset, int limit) {
+        long location = this.locate(userId);
+        if (location == NO_RANKING) {
+            return IdList.EMPTY;
+        }
+        ByteBuffer chunk = chunks[(int) (location >>> 32)];
+        int position = (int) location;
+
+        // 件数
+        int count = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = chunk.get(position++);
+            count |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        int from = Math.max(0, Math.min(offset, count));
+        int to = (int) Math.max(from, Math.min((long) from + Math.max(0, limit), count));
+        if (from == to) {
+            return IdList.EMPTY;
+        }
+
+        // 差分の復号は先頭から順に行う必要があるため、読み込み位置まではIDを計算するだけで読み飛ばす
+        int[] ids = new int[to - from];
+        int id = 0;
+        for (int i = 0; i < to; i++) {
+            int zigZag = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = chunk.get(position++);
+                zigZag |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            id += (zigZag >>> 1) ^ -(zigZag & 1);
+            if (i >= from) {
+                ids[i - from] = id;
+            }
+        }
+        return new IdList(ids);
+    }
+
+    @Override
+    public List<Integer> page(Integer userId, int page, int perPage) {
+        long offset = (long) (page - 1) * perPage;
+        return this.range(userId, (int) Math.max(0, Math.min(offset, Integer.MAX_VALUE)), perPage);
+    }
+
+    @Override
+    public CompletableFuture<List<Integer>> fetch(Integer userId, Integer offset, Integer limit) {
+        // ヒープ外のランキングを復号するだけなので、別スレッドを使わずに完了済みで返す
+        return CompletableFuture.completedFuture(this.range(userId, offset, limit));
+    }
+
+    /**
+     * ユーザのランキングの件数
+     *
+     * @param userId ユーザID
+     * @return 件数。ランキングの無いユーザの場合は0
+     */
+    public int size(Integer userId) {
+        long location = this.locate(userId);
+        if (location == NO_RANKING) {
+            return 0;
+        }
+        ByteBuffer chunk = chunks[(int) (location >>> 32)];
+        int position = (int) location;
+        int count = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = chunk.get(position++);
+            count |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * ランキングを持つユーザ数
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * 格納しているIDの総数
+     */
+    public long getStoredIdCount() {
+        return storedIdCount;
+    }
+
+    /**
+     * ヒープ外に確保している索引とID領域の合計バイト数
+     */
+    public long getFootprintBytes() {
+        long bytes = (long) index.capacity() * Long.BYTES;
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * IDあたりのバイト数(索引を含む)
+     *
+     * @return IDあたりのバイト数。IDが無い場合は0
+     */
+    public double getBytesPerId() {
+        return storedIdCount == 0 ? 0 : (double) this.getFootprintBytes() / storedIdCount;
+    }
+
+    private long locate(Integer userId) {
+        if (userId == null) {
+            return NO_RANKING;
+        }
+        long slot = (long) userId - minUserId;
+        if (slot < 0 || slot >= index.capacity()) {
+            return NO_RANKING;
+        }
+        return index.get((int) slot);
+    }
+
+    /**
+     * UserRankingStoreの生成
+     * ユーザ毎のランキングを追加した順にID領域へ書き込み、buildで索引を生成する。複数スレッドからは使用できない
+     */
+    public static final class Builder {
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        private ByteBuffer current;
+
+        /* 追加したユーザのIDとID領域の位置 */
+        private int[] userIds = new int[1024];
+
+        private long[] locations = new long[1024];
+
+        private int userCount;
+
+        private long storedIdCount;
+
+        private int minUserId = Integer.MAX_VALUE;
+
+        private int maxUserId = Integer.MIN_VALUE;
+
+        private boolean built;
+
+        private Builder() {
+        }
+
+        /**
+         * ユーザのランキングを追加
+         *
+         * @param userId ユーザID
+         * @param ids    順位順のID
+         * @return this
+         */
+        public Builder add(int userId, int[] ids) {
+            Objects.requireNonNull(ids);
+            this.checkNotBuilt();
+            long maxBytes = (long) (ids.length + 1) * MAX_VARINT_BYTES;
+            if (maxBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("ランキングの件数が多すぎます: " + ids.length);
+            }
+            if (current == null || current.remaining() < maxBytes) {
+                current = ByteBuffer.allocateDirect((int) Math.max(CHUNK_SIZE, maxBytes));
+                chunks.add(current);
+            }
+
+            if (userCount == userIds.length) {
+                userIds = Arrays.copyOf(userIds, userCount * 2);
+                locations = Arrays.copyOf(locations, userCount * 2);
+            }
+            userIds[userCount] = userId;
+            locations[userCount] = ((long) (chunks.size() - 1) << 32) | current.position();
+            userCount++;
+            minUserId = Math.min(minUserId, userId);
+            maxUserId = Math.max(maxUserId, userId);
+
+            putVarint(current, ids.length);
+            int previous = 0;
+            for (int id : ids) {
+                int delta = id - previous;
+                putVarint(current, (delta << 1) ^ (delta >> 31));
+                previous = id;
+            }
+            storedIdCount += ids.length;
+            return this;
+        }
+
+        /**
+         * 索引を生成してUserRankingStoreを生成
+         * 最後のチャンクは使用した大きさに切り詰める。生成は1度のみ行える
+         *
+         * @return UserRankingStore
+         * @throws IllegalArgumentException 同じユーザのランキングを複数追加した場合
+         */
+        public UserRankingStore build() {
+            this.checkNotBuilt();
+            built = true;
+            if (userCount == 0) {
+                return new UserRankingStore(0, ByteBuffer.allocateDirect(0).asLongBuffer(), new ByteBuffer[0], 0, 0);
+            }
+            long slotCount = (long) maxUserId - minUserId + 1;
+            if (slotCount * Long.BYTES > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("ユーザIDの範囲が広すぎます: " + minUserId + "～" + maxUserId);
+            }
+            LongBuffer index = ByteBuffer.allocateDirect((int) slotCount * Long.BYTES).asLongBuffer();
+            for (int slot = 0; slot < slotCount; slot++) {
+                index.put(slot, NO_RANKING);
+            }
+            for (int i = 0; i < userCount; i++) {
+                int slot = userIds[i] - minUserId;
+                if (index.get(slot) != NO_RANKING) {
+                    throw new IllegalArgumentException("ランキングが重複しています: userId=" + userIds[i]);
+                }
+                index.put(slot, locations[i]);
+            }
+
+            ByteBuffer[] chunkArray = chunks.toArray(new ByteBuffer[0]);
+            ByteBuffer last = chunkArray[chunkArray.length - 1];
+            ByteBuffer trimmed = ByteBuffer.allocateDirect(last.position());
+            trimmed.put(last.flip());
+            chunkArray[chunkArray.length - 1] = trimmed;
+            return new UserRankingStore(minUserId, index, chunkArray, userCount, storedIdCount);
+        }
+
+        private void checkNotBuilt() {
+            if (built) {
+                throw new IllegalStateException("生成済みのため変更できません");
+            }
+        }
+
+        private static void putVarint(ByteBuffer buffer, int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    /**
+     * 復号したIDの読み取り専用のリスト
+     */
+    private static final class IdList extends AbstractList<Integer> implements RandomAccess {
+
+        private static final IdList EMPTY = new IdList(new int[0]);
+
+        private final int[] ids;
+
+        private IdList(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return ids[index];
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package openlogicodetest.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import openlogicodetest.JsoupPageFetcher;
+import openlogicodetest.StreamingPageFetcher;
+import openlogicodetest.StubWikipediaServer;
+import openlogicodetest.WikiLink;
+
+/**
+ * 記事の最初の段落のリンクの取得のベンチマーク
+ * 記事全体をDOMとして読み込む従来の方法(JsoupPageFetcher)と、最初の段落までをストリーミングで解析する方法
+ * (StreamingPageFetcher)を比較する。いずれもUTF-8のバイト列からの解析(文字コードの変換を含む)を計測する。
+ * アロケーション量はGCプロファイラの結果で比較する
+ *
+ * fixture: stub(スタブサーバと同じ小さな記事)、article(実際の記事に近い約200KBの記事)、
+ * または保存した記事(*.html)のディレクトリのパス(例: -p fixture=/path/to/articles)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FirstParagraphExtractionBenchmark {
+
+    private static final String BASE_URI = "https://ja.wikipedia.org/wiki/";
+
+    /** articleの2番目以降の段落数 */
+    private static final int ARTICLE_PARAGRAPHS = 250;
+
+    @Param({ "stub", "article" })
+    private String fixture;
+
+    private List<byte[]> fixtures;
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixtures = new ArrayList<>();
+        if ("stub".equals(fixture) || "article".equals(fixture)) {
+            int paragraphs = "stub".equals(fixture) ? 1 : ARTICLE_PARAGRAPHS;
+            for (int n = 0; n < 16; n++) {
+                fixtures.add(StubWikipediaServer.articleHtml(StubWikipediaServer.KEYWORD_PREFIX + n, paragraphs)
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            try (Stream<Path> files = Files.list(Path.of(fixture))) {
+                for (Path file : files.filter(file -> file.toString().endsWith(".html")).sorted().toList()) {
+                    fixtures.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        if (fixtures.isEmpty()) {
+            throw new IllegalStateException("記事がありません: " + fixture);
+        }
+        // 比較の前提として、両方の方法で同じリンクを取得できることを確認する
+        for (byte[] html : fixtures) {
+            List<WikiLink> expected = fullDom(html);
+            if (expected.isEmpty() || !expected.equals(streaming(html))) {
+                throw new IllegalStateException("取得したリンクが一致しません: " + expected);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<WikiLink> fullDom() throws IOException {
+        return fullDom(this.next());
+    }
+
+    @Benchmark
+    public List<WikiLink> streaming() throws IOException {
+        return streaming(this.next());
+    }
+
+    private byte[] next() {
+        byte[] html = fixtures.get(index);
+        index = (index + 1) % fixtures.size();
+        return html;
+    }
+
+    private static List<WikiLink> fullDom(byte[] html) throws IOException {
+        return JsoupPageFetcher.extractLinks(
+                Jsoup.parse(new ByteArrayInputStream(html), StandardCharsets.UTF_8.name(), BASE_URI));
+    }
+
+    private static List<WikiLink> streaming(byte[] html) throws IOException {
+        return StreamingPageFetcher.extractLinks(
+                new InputStreamReader(new ByteArrayInputStream(html), StandardCharsets.UTF_8), BASE_URI);
+    }
+}
@@ -0,0 +1,233 @@
+package openlogicodetest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 記事の最初の段落のリンクをディスクにキャッシュする
+ * URLのSHA-256をファイル名とし(先頭2文字をサブディレクトリとする)、取得日時とリンクのリストをgzipで圧縮して保存する。
+ * 有効期限内のキャッシュがあればネットワークへアクセスせずに返し、無い・期限切れの場合は取得してキャッシュを更新する。
+ * オフラインの場合は期限切れのキャッシュも返し、キャッシュに無い記事は{@link PageNotCachedException}とする。
+ * ファイルは一時ファイルに書き出してから置き換えるため、複数のスレッド・プロセスから同時に使用できる
+ */
+public class CachingPageFetcher implements PageFetcher {
+
+    /** キャッシュのファイルの形式 */
+    private static final int MAGIC = 0x57504331;
+
+    /** キャッシュのファイルの拡張子 */
+    private static final String SUFFIX = ".links.gz";
+
+    /** ログ出力 */
+    private static final Logger logger = Logger.getLogger(CachingPageFetcher.class.getName());
+
+    private final Path directory;
+
+    /** ネットワークから取得する処理(オフラインの場合null) */
+    private final PageFetcher delegate;
+
+    /** キャッシュの有効期限 */
+    private final Duration ttl;
+
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * @param directory キャッシュのディレクトリ
+     * @param delegate  ネットワークから取得する処理(オフラインの場合null)
+     * @param ttl       キャッシュの有効期限
+     */
+    public CachingPageFetcher(Path directory, PageFetcher delegate, Duration ttl) {
+        this(directory, delegate, ttl, Clock.systemUTC());
+    }
+
+    /**
+     * @param directory キャッシュのディレクトリ
+     * @param delegate  ネットワークから取得する処理(オフラインの場合null)
+     * @param ttl       キャッシュの有効期限
+     * @param clock     取得日時・有効期限の判定に使用する時計
+     */
+    public CachingPageFetcher(Path directory, PageFetcher delegate, Duration ttl, Clock clock) {
+        this.directory = Objects.requireNonNull(directory);
+        this.delegate = delegate;
+        this.ttl = Objects.requireNonNull(ttl);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * キャッシュのみから取得する(ネットワークへアクセスしない)
+     *
+     * @param directory キャッシュのディレクトリ
+     * @return キャッシュ
+     */
+    public static CachingPageFetcher offline(Path directory) {
+        return new CachingPageFetcher(directory, null, Duration.ZERO);
+    }
+
+    @Override
+    public List<WikiLink> fetchLinks(String url) throws IOException {
+        Path file = this.fileOf(url);
+        CachedLinks cached = this.read(file, url);
+        if (cached != null) {
+            if (delegate == null || clock.millis() - cached.fetchedAtMillis() <= ttl.toMillis()) {
+                hits.increment();
+                return cached.links();
+            }
+            expired.increment();
+        } else {
+            misses.increment();
+            if (delegate == null) {
+                throw new PageNotCachedException(url);
+            }
+        }
+
+        long fetchedAtMillis = clock.millis();
+        List<WikiLink> links = delegate.fetchLinks(url);
+        try {
+            this.write(file, url, fetchedAtMillis, links);
+        } catch (IOException e) {
+            // キャッシュに保存できなくても取得した結果は返す
+            logger.warning("記事をキャッシュに保存できません(" + url + "): " + e);
+        }
+        return links;
+    }
+
+    public boolean isOffline() {
+        return delegate == null;
+    }
+
+    /**
+     * 有効期限内のキャッシュから返した件数(オフラインの場合は期限切れのものを含む)
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * キャッシュに無かった件数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 期限切れのため取得し直した件数
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * URLのキャッシュのファイル
+     */
+    Path fileOf(String url) {
+        try {
+            String hash = HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8)));
+            return directory.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * キャッシュを読み込みます
+     *
+     * @return キャッシュ(無い・壊れている・別のURLのものである場合null)
+     */
+    private CachedLinks read(Path file, String url) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("キャッシュの形式が不正です");
+            }
+            long fetchedAtMillis = in.readLong();
+            if (!url.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<WikiLink> links = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                links.add(new WikiLink(in.readUTF(), in.readUTF()));
+            }
+            return new CachedLinks(fetchedAtMillis, links);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warning("キャッシュを読み込めません(" + file + "): " + e);
+            return null;
+        }
+    }
+
+    private void write(Path file, String url, long fetchedAtMillis, List<WikiLink> links) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeLong(fetchedAtMillis);
+                out.writeUTF(url);
+                out.writeInt(links.size());
+                for (WikiLink link : links) {
+                    out.writeUTF(link.text());
+                    out.writeUTF(link.url());
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * キャッシュした記事
+     *
+     * @param fetchedAtMillis 取得日時(エポックミリ秒)
+     * @param links           リンクのリスト
+     */
+    private record CachedLinks(long fetchedAtMillis, List<WikiLink> links) {
+    }
+
+    /**
+     * オフラインで、キャッシュに無い記事を取得しようとした場合の例外
+     */
+    public static class PageNotCachedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public PageNotCachedException(String url) {
+            super("記事がキャッシュにありません: " + url);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package openlogicodetest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 複数の記事を並行して取得する幅優先探索
+ * 探索キューの先頭から最大concurrency件の記事を仮想スレッドで先行して取得し、
+ * 取得結果はキューの順に1件ずつ処理する(子の登録・訪問済みの判定・キューへの追加は単一スレッドで行う)。
+ * そのため探索順・親子関係・深さは、1件ずつ取得した場合と常に同じになる。
+ * 探索の状態は{@link CrawlState}にキーワードのIDで保持し、探索キューはメモリ上の件数の上限を超えた分をファイルに退避する。
+ * サーバへの負荷はスリープではなく、取得処理に組み込んだホスト毎の流量制限({@link RateLimitedPageFetcher})で抑える
+ */
+public class ConcurrentBfsCrawler {
+
+    /** ログ出力 */
+    private static final Logger logger = Logger.getLogger(ConcurrentBfsCrawler.class.getName());
+
+    /** 語 */
+    private static final String GO = "語";
+
+    /** 学 */
+    private static final String GAKU = "学";
+
+    private final PageFetcher fetcher;
+
+    /** 同時に取得する記事数の上限 */
+    private final int concurrency;
+
+    /** 最大探索回数 */
+    private final int maxSearch;
+
+    /**
+     * @param fetcher     記事の取得
+     * @param concurrency 同時に取得する記事数の上限
+     * @param maxSearch   最大探索回数
+     */
+    public ConcurrentBfsCrawler(PageFetcher fetcher, int concurrency, int maxSearch) {
+        if (concurrency < 1 || maxSearch < 0) {
+            throw new IllegalArgumentException(
+                    "不正な探索の設定です: concurrency=" + concurrency + " maxSearch=" + maxSearch);
+        }
+        this.fetcher = Objects.requireNonNull(fetcher);
+        this.concurrency = concurrency;
+        this.maxSearch = maxSearch;
+    }
+
+    /**
+     * 幅優先的に探索します
+     * 記事を取得できない・割り込まれた場合は、それまでの結果を返す。
+     * 探索キューは探索の終了時に破棄する
+     *
+     * @param startUrl     スタートするURL
+     * @param startKeyword スタートするキーワード
+     * @param depth        スタートするキーワードの深さ
+     * @return 探索の結果
+     */
+    public CrawlResult crawl(String startUrl, String startKeyword, int depth) {
+        CrawlState state = new CrawlState();
+        try (state) {
+            return this.crawl(state, startUrl, startKeyword, depth);
+        }
+    }
+
+    /**
+     * 指定した状態で幅優先的に探索します
+     * 記事を取得できない・割り込まれた場合は、それまでの結果を返す
+     *
+     * @param state        探索の状態(空のもの)
+     * @param startUrl     スタートするURL
+     * @param startKeyword スタートするキーワード
+     * @param depth        スタートするキーワードの深さ
+     * @return 探索の結果
+     */
+    public CrawlResult crawl(CrawlState state, String startUrl, String startKeyword, int depth) {
+        return this.crawl(state, null, startUrl, startKeyword, depth);
+    }
+
+    /**
+     * チェックポイントを記録しながら幅優先的に探索します
+     * チェックポイントに記録があれば、記録した記事を適用して中断時の状態に戻してから探索を続ける。
+     * 適用した記事は探索回数に含め、最大探索回数までの残りを探索する
+     *
+     * @param state        探索の状態(空のもの)
+     * @param checkpoint   チェックポイント(記録しない場合null、開いていないもの)
+     * @param startUrl     スタートするURL
+     * @param startKeyword スタートするキーワード
+     * @param depth        スタートするキーワードの深さ
+     * @return 探索の結果
+     * @throws IllegalStateException 探索の開始条件・順序がチェックポイントと一致しない場合
+     */
+    public CrawlResult crawl(CrawlState state, CrawlCheckpoint checkpoint, String startUrl, String startKeyword,
+            int depth) {
+        // 取得を開始していないエントリ(この前に取得中のエントリを繋げたものが探索キューとなる)
+        SpillingFrontier waiting = state.getFrontier();
+        // 取得中のエントリ(探索キューの先頭側、キューの順)
+        Queue<InFlight> inFlight = new ArrayDeque<>();
+
+        waiting.add(new FrontierEntry(startUrl, state.visit(startKeyword, depth), depth));
+
+        int searchCount = 0;
+        if (checkpoint != null) {
+            try {
+                searchCount = checkpoint.open(startUrl, startKeyword, depth, state.getDictionary(),
+                        (keywordId, links) -> {
+                            FrontierEntry entry = waiting.poll();
+                            if (entry == null || entry.keywordId() != keywordId) {
+                                throw new IllegalStateException("チェックポイントが探索の順序と一致しません: "
+                                        + checkpoint.getFile());
+                            }
+                            process(state, entry, links);
+                        });
+            } catch (IOException | UncheckedIOException e) {
+                logger.log(Level.SEVERE, "チェックポイントを読み書きできません。探索を中断します。", e);
+                return new CrawlResult(state, searchCount, false);
+            }
+        }
+
+        int dispatched = searchCount;
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            while (true) {
+                // 最大探索回数(要件No.2)の範囲で、キューの先頭から先行して取得を開始する
+                while (inFlight.size() < concurrency && !waiting.isEmpty() && dispatched < maxSearch) {
+                    FrontierEntry entry = waiting.poll();
+                    inFlight.add(new InFlight(entry, executor.submit(() -> fetcher.fetchLinks(entry.url()))));
+                    dispatched++;
+                }
+                InFlight current = inFlight.poll();
+                if (current == null) {
+                    break;
+                }
+                searchCount++;
+
+                List<WikiLink> links;
+                try {
+                    links = current.links().get();
+                } catch (ExecutionException e) {
+                    logger.log(Level.SEVERE, "記事を取得できません。探索を中断します。: " + current.entry().url(),
+                            e.getCause());
+                    return new CrawlResult(state, searchCount, false);
+                } catch (InterruptedException e) {
+                    logger.log(Level.SEVERE, "割り込みが発生しました。探索を中断します。", e);
+                    Thread.currentThread().interrupt();
+                    return new CrawlResult(state, searchCount, false);
+                }
+
+                int keywordCount = state.getKeywordCount();
+                int[] children = process(state, current.entry(), links);
+                if (checkpoint != null) {
+                    checkpoint.appendPage(current.entry().keywordId(), links, children, keywordCount);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            logger.log(Level.SEVERE, "探索キュー・チェックポイントを読み書きできません。探索を中断します。", e);
+            return new CrawlResult(state, searchCount, false);
+        } finally {
+            executor.shutdownNow();
+            if (checkpoint != null) {
+                try {
+                    checkpoint.close();
+                } catch (UncheckedIOException e) {
+                    logger.log(Level.SEVERE, "チェックポイントを書き出せません。", e);
+                }
+            }
+        }
+        return new CrawlResult(state, searchCount, true);
+    }
+
+    /**
+     * 取得した記事のリンクを探索の状態に反映します
+     * 探索中と、チェックポイントから再開する際の記事の適用の両方で使用する
+     *
+     * @param state 探索の状態
+     * @param entry 記事の探索キューのエントリ
+     * @param links 記事のリンク
+     * @return リンク毎のキーワードのID(子)
+     */
+    private static int[] process(CrawlState state, FrontierEntry entry, List<WikiLink> links) {
+        // 幅優先的に探索(要件No.4)
+        int nextDepth = entry.depth() + 1;
+        int[] children = new int[links.size()];
+        int childCount = 0;
+        for (WikiLink link : links) {
+            // 当該キーワードの深さを保持することで、出力時に階層の優先度を判定する
+            int keywordCount = state.getKeywordCount();
+            int id = state.visit(link.text(), nextDepth);
+            children[childCount++] = id;
+
+            // キーワード重複時、探索をスキップ(要件No.1)
+            if (id < keywordCount) {
+                continue;
+            }
+            // 語・学があった場合は探索を中止する(要件No.5)
+            if (isFixedText(link.text())) {
+                continue;
+            }
+            state.getFrontier().add(new FrontierEntry(link.url(), id, nextDepth));
+        }
+        state.putChildren(entry.keywordId(), children, childCount);
+        return children;
+    }
+
+    /**
+     * 文字の最後に固定の文字が含まれているかのチェックを行います
+     *
+     * @param text キーワード
+     * @return 文字の最後に固定の文字が含まれていた場合 true,そうでなければfalse
+     */
+    public static boolean isFixedText(String text) {
+        return text.endsWith(GO) || text.endsWith(GAKU);
+    }
+
+    /**
+     * 取得中の探索キューのエントリ
+     *
+     * @param entry エントリ
+     * @param links 取得した記事のリンク
+     */
+    private record InFlight(FrontierEntry entry, Future<List<WikiLink>> links) {
+    }
+}
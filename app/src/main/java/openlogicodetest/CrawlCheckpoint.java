@@ -0,0 +1,419 @@
+package openlogicodetest;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 幅優先探索のチェックポイント(追記のみのログ)
+ * 探索の開始条件と、処理した記事毎に取得したリンクのリストを処理順に追記する。
+ * 既に出現していたキーワードへのリンクはキーワードのIDのみを書き出し、新しいキーワードのみ文字列とURLを書き出す。
+ * 再開時はログの記事を同じ処理で順に適用し直すことで、訪問済み・深さ・親子関係・探索キューを中断時と同じ状態に戻す。
+ *
+ * 書き出しはバッファし、syncIntervalPages件毎またはsyncInterval毎にまとめてfsyncする。
+ * 各レコードは長さとCRC32を持ち、書き込み途中で中断した末尾のレコードは再開時に切り捨てる
+ * (fsyncしていない記事は再開後に取得し直す)。スレッドセーフではない
+ */
+public final class CrawlCheckpoint implements AutoCloseable {
+
+    /** fsyncする記事数の間隔の既定値 */
+    public static final int DEFAULT_SYNC_INTERVAL_PAGES = 256;
+
+    /** fsyncする時間の間隔の既定値 */
+    public static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofSeconds(1);
+
+    /** ログ出力 */
+    private static final Logger logger = Logger.getLogger(CrawlCheckpoint.class.getName());
+
+    /** レコードの種類: 探索の開始条件 */
+    private static final byte TYPE_START = 1;
+
+    /** レコードの種類: 処理した記事 */
+    private static final byte TYPE_PAGE = 2;
+
+    /** レコードの長さ・CRC32のバイト数 */
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    /** 新しいキーワードへのリンク(既に出現していたキーワードへのリンクはID+1を書き出す) */
+    private static final int NEW_KEYWORD = 0;
+
+    private final Path file;
+
+    private final int syncIntervalPages;
+
+    private final long syncIntervalNanos;
+
+    private FileOutputStream out;
+
+    private FileChannel channel;
+
+    /** レコードの書き出し用のバッファ(fsyncまでまとめて保持する) */
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    /** レコードの組み立て用のバッファ */
+    private ByteBuffer record = ByteBuffer.allocate(4 * 1024);
+
+    private final CRC32 crc = new CRC32();
+
+    /** 最後にfsyncしてから追記した記事数 */
+    private int unsyncedPages;
+
+    /** 最後にfsyncした時刻(System.nanoTime) */
+    private long syncedNanos;
+
+    private long pageCount;
+
+    private long syncCount;
+
+    private long bytesWritten;
+
+    /**
+     * @param file チェックポイントのファイル
+     */
+    public CrawlCheckpoint(Path file) {
+        this(file, DEFAULT_SYNC_INTERVAL_PAGES, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * @param file              チェックポイントのファイル
+     * @param syncIntervalPages fsyncする記事数の間隔
+     * @param syncInterval      fsyncする時間の間隔
+     */
+    public CrawlCheckpoint(Path file, int syncIntervalPages, Duration syncInterval) {
+        if (syncIntervalPages < 1) {
+            throw new IllegalArgumentException("不正なfsyncの間隔です: " + syncIntervalPages);
+        }
+        this.file = Objects.requireNonNull(file);
+        this.syncIntervalPages = syncIntervalPages;
+        this.syncIntervalNanos = syncInterval.toNanos();
+    }
+
+    /**
+     * 処理した記事を適用する
+     */
+    @FunctionalInterface
+    public interface PageReplayer {
+
+        /**
+         * @param keywordId 記事のキーワードのID
+         * @param links     記事のリンク(既に出現していたキーワードへのリンクのURLはnull)
+         */
+        void replay(int keywordId, List<WikiLink> links);
+    }
+
+    /**
+     * チェックポイントを開きます
+     * ファイルがあれば開始条件が一致することを確認し、記録した記事を順に適用してから追記を始める。
+     * ファイルが無ければ開始条件を書き出す
+     *
+     * @param startUrl     スタートするURL
+     * @param startKeyword スタートするキーワード
+     * @param depth        スタートするキーワードの深さ
+     * @param dictionary   探索のキーワードの辞書(記事の適用に応じて更新されるもの)
+     * @param replayer     記録した記事の適用
+     * @return 適用した記事数
+     * @throws IOException           読み書きできない場合
+     * @throws IllegalStateException 開始条件が一致しない場合
+     */
+    public int open(String startUrl, String startKeyword, int depth, KeywordDictionary dictionary,
+            PageReplayer replayer) throws IOException {
+        if (out != null) {
+            throw new IllegalStateException("チェックポイントは既に開いています: " + file);
+        }
+        int replayed = 0;
+        long validBytes = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                byte[] payload;
+                while ((payload = readRecord(in)) != null) {
+                    ByteBuffer data = ByteBuffer.wrap(payload);
+                    byte type = data.get();
+                    if (validBytes == 0) {
+                        if (type != TYPE_START || !readString(data).equals(startUrl)
+                                || !readString(data).equals(startKeyword) || data.getInt() != depth) {
+                            throw new IllegalStateException("探索の開始条件がチェックポイントと一致しません: " + file);
+                        }
+                    } else if (type == TYPE_PAGE) {
+                        int keywordId = readVarInt(data);
+                        replayer.replay(keywordId, readLinks(data, dictionary));
+                        replayed++;
+                    } else {
+                        throw new IOException("不正なレコードです: type=" + type);
+                    }
+                    validBytes += FRAME_HEADER_BYTES + payload.length;
+                }
+            }
+        }
+
+        out = new FileOutputStream(file.toFile(), true);
+        channel = out.getChannel();
+        if (channel.size() > validBytes) {
+            // 書き込み途中で中断した末尾のレコードを切り捨てる
+            logger.warning("チェックポイントの末尾の不完全なレコードを切り捨てます: " + file + " "
+                    + (channel.size() - validBytes) + "bytes");
+            channel.truncate(validBytes);
+        }
+        if (validBytes == 0) {
+            this.beginRecord(TYPE_START);
+            this.putString(startUrl);
+            this.putString(startKeyword);
+            this.ensureRecord(4);
+            record.putInt(depth);
+            this.endRecord();
+            this.sync();
+        }
+        pageCount = replayed;
+        syncedNanos = System.nanoTime();
+        return replayed;
+    }
+
+    /**
+     * 処理した記事を追記します
+     * 新しいキーワードは、処理前のキーワード数から順に出現順のIDが振られていること
+     *
+     * @param keywordId          記事のキーワードのID
+     * @param links              記事のリンク
+     * @param childIds           リンク毎のキーワードのID
+     * @param keywordCountBefore 記事を処理する前のキーワード数
+     * @throws UncheckedIOException 書き出せない場合
+     */
+    public void appendPage(int keywordId, List<WikiLink> links, int[] childIds, int keywordCountBefore) {
+        this.beginRecord(TYPE_PAGE);
+        this.putVarInt(keywordId);
+        this.putVarInt(links.size());
+        int nextNewId = keywordCountBefore;
+        for (int i = 0; i < links.size(); i++) {
+            if (childIds[i] == nextNewId) {
+                this.putVarInt(NEW_KEYWORD);
+                this.putString(links.get(i).text());
+                this.putString(links.get(i).url());
+                nextNewId++;
+            } else {
+                this.putVarInt(childIds[i] + 1);
+            }
+        }
+        this.endRecord();
+        pageCount++;
+        unsyncedPages++;
+        if (unsyncedPages >= syncIntervalPages || System.nanoTime() - syncedNanos >= syncIntervalNanos) {
+            this.sync();
+        }
+    }
+
+    /**
+     * バッファした記事を書き出し、fsyncします
+     *
+     * @throws UncheckedIOException 書き出せない場合
+     */
+    public void sync() {
+        try {
+            this.flushBuffer();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("チェックポイントを書き出せません: " + file, e);
+        }
+        unsyncedPages = 0;
+        syncedNanos = System.nanoTime();
+        syncCount++;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * 記録した記事数(再開時に適用したものを含む)
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * fsyncした回数
+     */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * 書き出したバイト数(再開時に読み込んだものを除く)
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * バッファした記事を書き出してファイルを閉じます
+     */
+    @Override
+    public void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            this.sync();
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warning("チェックポイントを閉じられません: " + file + " " + e);
+            }
+            out = null;
+            channel = null;
+        }
+    }
+
+    private void beginRecord(byte type) {
+        record.clear();
+        record.put(type);
+    }
+
+    private void endRecord() {
+        record.flip();
+        crc.reset();
+        crc.update(record.array(), 0, record.limit());
+        int length = FRAME_HEADER_BYTES + record.limit();
+        if (buffer.remaining() < length) {
+            try {
+                this.flushBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException("チェックポイントを書き出せません: " + file, e);
+            }
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(length);
+            }
+        }
+        buffer.putInt(record.limit());
+        buffer.putInt((int) crc.getValue());
+        buffer.put(record);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureRecord(int bytes) {
+        if (record.remaining() < bytes) {
+            record = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes))
+                    .put(record.flip());
+        }
+    }
+
+    private void putVarInt(int value) {
+        this.ensureRecord(5);
+        while ((value & ~0x7F) != 0) {
+            record.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        record.put((byte) value);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.putVarInt(bytes.length);
+        this.ensureRecord(bytes.length);
+        record.put(bytes);
+    }
+
+    /**
+     * レコードを1件読み込みます
+     *
+     * @return レコードの内容(ファイルの終端・不完全なレコード・CRC32が一致しない場合null)
+     */
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            byte[] payload = readFully(in, length);
+            if (payload == null) {
+                return null;
+            }
+            crc.reset();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        // 壊れた長さで巨大な配列を確保しないよう、読み込めた分だけ拡張する
+        byte[] bytes = new byte[Math.min(length, 64 * 1024)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, bytes.length * 2L));
+            }
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                return null;
+            }
+            read += n;
+        }
+        return bytes;
+    }
+
+    private static List<WikiLink> readLinks(ByteBuffer data, KeywordDictionary dictionary) {
+        int count = readVarInt(data);
+        int keywordCountBefore = dictionary.size();
+        List<WikiLink> links = new ArrayList<>(count);
+        // この記事で新しく出現したキーワード(同じ記事内で2回目以降に出現した場合はIDで参照される)
+        List<String> newKeywords = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int value = readVarInt(data);
+            if (value == NEW_KEYWORD) {
+                String text = readString(data);
+                links.add(new WikiLink(text, readString(data)));
+                newKeywords.add(text);
+            } else {
+                int id = value - 1;
+                String text = id < keywordCountBefore ? dictionary.get(id)
+                        : newKeywords.get(id - keywordCountBefore);
+                links.add(new WikiLink(text, null));
+            }
+        }
+        return links;
+    }
+
+    private static int readVarInt(ByteBuffer data) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = data.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("不正な可変長の整数です");
+    }
+
+    private static String readString(ByteBuffer data) {
+        int length = readVarInt(data);
+        String value = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,11 @@
+package openlogicodetest;
+
+/**
+ * 幅優先探索の結果
+ *
+ * @param state       探索の状態(訪問済み・深さ・親子関係、中断した場合は残りの探索キュー)
+ * @param searchCount 探索(記事の取得)を試みた回数
+ * @param completed   最後まで探索した場合true(記事を取得できずに中断した場合false)
+ */
+public record CrawlResult(CrawlState state, int searchCount, boolean completed) {
+}
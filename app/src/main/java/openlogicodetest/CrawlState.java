@@ -0,0 +1,243 @@
+package openlogicodetest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 幅優先探索の状態(探索キュー・訪問済み・深さ・親子関係)
+ * キーワードは{@link KeywordDictionary}でIDに置き換え、深さと親子関係はIDを添字とする配列で保持する。
+ * 出現したキーワードは出現と同時に訪問済みとなるため、辞書への登録の有無を訪問済みの判定に用いる。
+ * 親子関係は探索した順に、子のIDを1つの配列に連結して保持する。
+ * スレッドセーフではない(探索の結果を処理する単一のスレッドから使用する)
+ */
+public final class CrawlState implements AutoCloseable {
+
+    private final KeywordDictionary dictionary;
+
+    private final SpillingFrontier frontier;
+
+    /** キーワードの深さ(添字はID、最初に出現した深さ) */
+    private int[] depths = new int[1024];
+
+    /** キーワードを探索した順番(添字はID、未探索の場合-1) */
+    private int[] exploredIndexes = filled(1024);
+
+    /** 探索したキーワードのID(探索順) */
+    private int[] exploredIds = new int[1024];
+
+    /** 探索したキーワードの子の開始位置(探索順、終了位置は次の開始位置) */
+    private int[] childOffsets = new int[1025];
+
+    /** 子のIDを探索順に連結したもの */
+    private int[] childIds = new int[4096];
+
+    private int exploredCount;
+
+    private int childCount;
+
+    /**
+     * 一時ディレクトリに探索キューを退避し、ブルームフィルタを使用しない
+     */
+    public CrawlState() {
+        this(new KeywordDictionary(), new SpillingFrontier());
+    }
+
+    /**
+     * @param spillDirectory      探索キューを退避するディレクトリ
+     * @param maxInMemoryFrontier メモリ上に保持する探索キューのエントリ数の上限
+     * @param expectedKeywords    キーワード数の見込み(0以下の場合はブルームフィルタを使用しない)
+     */
+    public CrawlState(Path spillDirectory, int maxInMemoryFrontier, int expectedKeywords) {
+        this(new KeywordDictionary(expectedKeywords), new SpillingFrontier(spillDirectory, maxInMemoryFrontier));
+    }
+
+    private CrawlState(KeywordDictionary dictionary, SpillingFrontier frontier) {
+        this.dictionary = dictionary;
+        this.frontier = frontier;
+    }
+
+    /**
+     * キーワードを訪問済みにします
+     * 初めて出現したキーワードの場合は深さを保持する(既に出現していた場合は最初の深さのまま)
+     *
+     * @param keyword キーワード
+     * @param depth   深さ
+     * @return キーワードのID(初めて出現した場合は、呼び出し前の{@link #getKeywordCount()})
+     */
+    public int visit(String keyword, int depth) {
+        int size = dictionary.size();
+        int id = dictionary.intern(keyword);
+        if (id == size) {
+            if (id == depths.length) {
+                depths = Arrays.copyOf(depths, id * 2);
+                exploredIndexes = Arrays.copyOf(exploredIndexes, id * 2);
+                Arrays.fill(exploredIndexes, id, exploredIndexes.length, -1);
+            }
+            depths[id] = depth;
+        }
+        return id;
+    }
+
+    /**
+     * 探索したキーワードの子を保持します
+     *
+     * @param parentId 探索したキーワードのID
+     * @param children 子のID(出現順)
+     * @param count    子の件数
+     */
+    public void putChildren(int parentId, int[] children, int count) {
+        if (exploredIndexes[parentId] >= 0) {
+            throw new IllegalStateException("探索済みのキーワードです: " + dictionary.get(parentId));
+        }
+        if (exploredCount == exploredIds.length) {
+            exploredIds = Arrays.copyOf(exploredIds, exploredCount * 2);
+            childOffsets = Arrays.copyOf(childOffsets, exploredCount * 2 + 1);
+        }
+        if (childCount + count > childIds.length) {
+            childIds = Arrays.copyOf(childIds, Math.max(childIds.length * 2, childCount + count));
+        }
+        System.arraycopy(children, 0, childIds, childCount, count);
+        childCount += count;
+        exploredIndexes[parentId] = exploredCount;
+        exploredIds[exploredCount] = parentId;
+        exploredCount++;
+        childOffsets[exploredCount] = childCount;
+    }
+
+    public SpillingFrontier getFrontier() {
+        return frontier;
+    }
+
+    public KeywordDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * 訪問済みかを判定します
+     *
+     * @param keyword キーワード
+     * @return 訪問済みの場合true
+     */
+    public boolean isVisited(String keyword) {
+        return dictionary.find(keyword) >= 0;
+    }
+
+    /**
+     * キーワードの深さを取得します
+     *
+     * @param keyword キーワード
+     * @return 深さ(出現していない場合null)
+     */
+    public Integer getDepth(String keyword) {
+        int id = dictionary.find(keyword);
+        return id < 0 ? null : depths[id];
+    }
+
+    /**
+     * 探索したキーワードの子を取得します
+     *
+     * @param keyword キーワード
+     * @return 子のリスト(出現順、探索していない場合null)
+     */
+    public List<String> getChildren(String keyword) {
+        int id = dictionary.find(keyword);
+        if (id < 0 || exploredIndexes[id] < 0) {
+            return null;
+        }
+        int index = exploredIndexes[id];
+        List<String> children = new ArrayList<>(childOffsets[index + 1] - childOffsets[index]);
+        for (int i = childOffsets[index]; i < childOffsets[index + 1]; i++) {
+            children.add(dictionary.get(childIds[i]));
+        }
+        return children;
+    }
+
+    /**
+     * 出現(訪問)したキーワード数
+     */
+    public int getKeywordCount() {
+        return dictionary.size();
+    }
+
+    /**
+     * 探索したキーワード数
+     */
+    public int getExploredCount() {
+        return exploredCount;
+    }
+
+    /**
+     * 使用メモリの概算(バイト、メモリ上の探索キューを含む)
+     */
+    public long getFootprintBytes() {
+        return dictionary.getFootprintBytes() + frontier.getFootprintBytes()
+                + 4L * (depths.length + exploredIndexes.length + exploredIds.length + childOffsets.length
+                        + childIds.length);
+    }
+
+    /**
+     * 出現したキーワード1件あたりの使用メモリの概算(バイト)
+     */
+    public double getFootprintBytesPerKeyword() {
+        return dictionary.size() == 0 ? 0 : (double) this.getFootprintBytes() / dictionary.size();
+    }
+
+    /**
+     * 訪問済みのキーワード
+     * 全キーワードのStringを生成するため、確認用に小規模な探索でのみ使用すること
+     */
+    public Set<String> toVisitedSet() {
+        Set<String> visited = new HashSet<>();
+        for (int id = 0; id < dictionary.size(); id++) {
+            visited.add(dictionary.get(id));
+        }
+        return visited;
+    }
+
+    /**
+     * 親子関係(探索したキーワード・子のリスト、探索順)
+     * 全キーワードのStringを生成するため、確認用に小規模な探索でのみ使用すること
+     */
+    public Map<String, List<String>> toTreeMap() {
+        Map<String, List<String>> treeMap = new LinkedHashMap<>();
+        for (int index = 0; index < exploredCount; index++) {
+            String keyword = dictionary.get(exploredIds[index]);
+            treeMap.put(keyword, Collections.unmodifiableList(this.getChildren(keyword)));
+        }
+        return treeMap;
+    }
+
+    /**
+     * キーワードの深さ(出現順)
+     * 全キーワードのStringを生成するため、確認用に小規模な探索でのみ使用すること
+     */
+    public Map<String, Integer> toTreeDepthMap() {
+        Map<String, Integer> treeDepthMap = new LinkedHashMap<>();
+        for (int id = 0; id < dictionary.size(); id++) {
+            treeDepthMap.put(dictionary.get(id), depths[id]);
+        }
+        return treeDepthMap;
+    }
+
+    /**
+     * 探索キューを退避したファイルを削除します
+     * 訪問済み・深さ・親子関係は引き続き参照できる
+     */
+    @Override
+    public void close() {
+        frontier.close();
+    }
+
+    private static int[] filled(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, -1);
+        return array;
+    }
+}
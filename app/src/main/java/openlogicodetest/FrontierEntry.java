@@ -0,0 +1,11 @@
+package openlogicodetest;
+
+/**
+ * 探索キューのエントリ
+ *
+ * @param url       記事のURL
+ * @param keywordId キーワードのID({@link KeywordDictionary})
+ * @param depth     深さ(0始まり)
+ */
+public record FrontierEntry(String url, int keywordId, int depth) {
+}
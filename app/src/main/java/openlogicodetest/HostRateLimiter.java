@@ -0,0 +1,117 @@
+package openlogicodetest;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * ホスト毎のトークンバケットによるリクエストの流量制限
+ * トークンは1秒あたりpermitsPerSecond個ずつ、burst個まで補充される。
+ * トークンが無い場合は次のトークンを予約してから待機するため、同じホストへのリクエストは到着順に一定間隔で送られる
+ */
+public class HostRateLimiter {
+
+    /** 1秒あたりに許可するリクエスト数 */
+    private final double permitsPerSecond;
+
+    /** 連続して許可するリクエスト数の上限 */
+    private final int burst;
+
+    /** ホスト毎のトークンバケット */
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /** 現在時刻(ナノ秒) */
+    private final LongSupplier nanoClock;
+
+    /** 待機処理 */
+    private final Sleeper sleeper;
+
+    /**
+     * @param permitsPerSecond ホスト毎に1秒あたりに許可するリクエスト数
+     * @param burst            ホスト毎に連続して許可するリクエスト数の上限
+     */
+    public HostRateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    /**
+     * 時刻の取得と待機処理を指定します(テスト用)
+     *
+     * @param permitsPerSecond ホスト毎に1秒あたりに許可するリクエスト数
+     * @param burst            ホスト毎に連続して許可するリクエスト数の上限
+     * @param nanoClock        現在時刻(ナノ秒)の取得
+     * @param sleeper          待機処理
+     */
+    HostRateLimiter(double permitsPerSecond, int burst, LongSupplier nanoClock, Sleeper sleeper) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException(
+                    "不正な流量制限です: permitsPerSecond=" + permitsPerSecond + " burst=" + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * 指定した時間だけ待機する処理
+     */
+    @FunctionalInterface
+    interface Sleeper {
+
+        /**
+         * @param nanos 待機する時間(ナノ秒)
+         * @throws InterruptedException 待機中に割り込まれた場合
+         */
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * URLのホストへのリクエストが許可されるまで待機します
+     *
+     * @param url リクエストするURL
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    public void acquire(String url) throws InterruptedException {
+        long waitNanos = buckets.computeIfAbsent(hostOf(url), host -> new TokenBucket()).reserve();
+        if (waitNanos > 0) {
+            sleeper.sleep(waitNanos);
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * 1ホスト分のトークンバケット
+     */
+    private class TokenBucket {
+
+        /** 残りのトークン数(予約済みの分だけ負になる) */
+        private double tokens = burst;
+
+        /** 最後にトークンを補充した時刻(ナノ秒) */
+        private long refilledNanos = nanoClock.getAsLong();
+
+        /**
+         * トークンを1つ予約します
+         *
+         * @return 予約したトークンが補充されるまでの待ち時間(ナノ秒)
+         */
+        synchronized long reserve() {
+            long now = nanoClock.getAsLong();
+            tokens = Math.min(burst, tokens + (now - refilledNanos) * permitsPerSecond / 1_000_000_000.0);
+            refilledNanos = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerSecond * 1_000_000_000.0);
+        }
+    }
+}
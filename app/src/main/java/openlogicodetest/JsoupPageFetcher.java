@@ -0,0 +1,56 @@
+package openlogicodetest;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jsoupで記事全体をDOMとして読み込み、最初の段落のリンクを取得する
+ */
+public class JsoupPageFetcher implements PageFetcher {
+
+    /** 最初の段落のセレクタ */
+    static final String FIRST_PARAGRAPH = ".mw-parser-output > p";
+
+    /** 記事へのリンクのセレクタ */
+    private static final String ARTICLE_LINK = "a[href^=/wiki/]";
+
+    @Override
+    public List<WikiLink> fetchLinks(String url) throws IOException {
+        return extractLinks(Jsoup.connect(url).get());
+    }
+
+    /**
+     * 読み込んだ記事から最初の段落のリンクを取得します
+     *
+     * @param doc 記事
+     * @return リンクのリスト
+     */
+    public static List<WikiLink> extractLinks(Document doc) {
+        return linksOf(doc.select(FIRST_PARAGRAPH).first());
+    }
+
+    /**
+     * 最初の段落のリンクを取得します
+     *
+     * @param firstP 最初の段落(無い場合null)
+     * @return リンクのリスト
+     */
+    static List<WikiLink> linksOf(Element firstP) {
+        List<WikiLink> links = new ArrayList<>();
+        if (firstP == null) {
+            return links;
+        }
+        for (Element link : firstP.select(ARTICLE_LINK)) {
+            String linkText = link.text();
+            if (WikiLink.isArticleLink(linkText, link.attr("href"))) {
+                links.add(new WikiLink(linkText, link.absUrl("href")));
+            }
+        }
+        return links;
+    }
+}
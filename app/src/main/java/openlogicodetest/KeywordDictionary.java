@@ -0,0 +1,182 @@
+package openlogicodetest;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * キーワードと0始まりの連番のIDの対応
+ * キーワードはUTF-8のバイト列として1つの配列に詰めて保持し、IDはオープンアドレス法のハッシュ表で引く。
+ * StringやHashMapのエントリを持たないため、キーワード1件あたりの使用メモリはおよそUTF-8のバイト数+16バイトとなる。
+ * ブルームフィルタを有効にした場合は、ハッシュ表を引く前に未登録であることを判定し、新しいキーワードの比較を省く。
+ * スレッドセーフではない(探索の結果を処理する単一のスレッドから使用する)
+ */
+public final class KeywordDictionary {
+
+    /** ブルームフィルタの偽陽性率 */
+    public static final double BLOOM_FILTER_FPP = 0.01;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** キーワードのUTF-8のバイト列を連結したもの */
+    private byte[] bytes = new byte[INITIAL_CAPACITY * 16];
+
+    private int bytesUsed;
+
+    /** IDのキーワードのバイト列の開始位置(終了位置は次のIDの開始位置) */
+    private int[] offsets = new int[INITIAL_CAPACITY + 1];
+
+    /** IDのキーワードのハッシュ値 */
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    /** ハッシュ表(ID+1、0は空き) */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    private int size;
+
+    private final BloomFilter<CharSequence> bloomFilter;
+
+    /** ブルームフィルタのビット数(使用メモリの算出用) */
+    private final long bloomFilterBits;
+
+    /**
+     * ブルームフィルタを使用しない
+     */
+    public KeywordDictionary() {
+        this(0);
+    }
+
+    /**
+     * @param expectedKeywords 登録するキーワード数の見込み(0以下の場合はブルームフィルタを使用しない)
+     */
+    public KeywordDictionary(int expectedKeywords) {
+        if (expectedKeywords > 0) {
+            this.bloomFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedKeywords,
+                    BLOOM_FILTER_FPP);
+            this.bloomFilterBits = (long) Math.ceil(
+                    -expectedKeywords * Math.log(BLOOM_FILTER_FPP) / (Math.log(2) * Math.log(2)));
+        } else {
+            this.bloomFilter = null;
+            this.bloomFilterBits = 0;
+        }
+    }
+
+    /**
+     * キーワードのIDを取得します
+     *
+     * @param keyword キーワード
+     * @return ID(登録されていない場合-1)
+     */
+    public int find(String keyword) {
+        if (bloomFilter != null && !bloomFilter.mightContain(keyword)) {
+            return -1;
+        }
+        byte[] key = keyword.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        for (int slot = hash & (table.length - 1);; slot = (slot + 1) & (table.length - 1)) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == hash && Arrays.equals(bytes, offsets[id], offsets[id + 1], key, 0, key.length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * キーワードを登録し、IDを取得します
+     * 登録されていなかった場合は、登録前の{@link #size()}が新しいIDとなる
+     *
+     * @param keyword キーワード
+     * @return ID
+     */
+    public int intern(String keyword) {
+        boolean mightContain = bloomFilter == null || bloomFilter.mightContain(keyword);
+        byte[] key = keyword.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        int slot = hash & (table.length - 1);
+        for (;; slot = (slot + 1) & (table.length - 1)) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                break;
+            }
+            // ブルームフィルタで未登録と判定できた場合は、空きまでキーワードを比較しない
+            if (mightContain && hashes[id] == hash
+                    && Arrays.equals(bytes, offsets[id], offsets[id + 1], key, 0, key.length)) {
+                return id;
+            }
+        }
+
+        int id = size;
+        if (id == hashes.length) {
+            offsets = Arrays.copyOf(offsets, id * 2 + 1);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        if (bytesUsed + key.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, bytesUsed + key.length));
+        }
+        System.arraycopy(key, 0, bytes, bytesUsed, key.length);
+        bytesUsed += key.length;
+        offsets[id + 1] = bytesUsed;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        size++;
+        if (bloomFilter != null) {
+            bloomFilter.put(keyword);
+        }
+        // 負荷率を1/2以下に保つ
+        if (size * 2 > table.length) {
+            this.rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * IDのキーワードを取得します
+     *
+     * @param id ID
+     * @return キーワード
+     */
+    public String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("不正なキーワードのIDです: " + id);
+        }
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 登録したキーワード数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 使用メモリの概算(バイト)
+     */
+    public long getFootprintBytes() {
+        return (long) bytes.length + 4L * (offsets.length + hashes.length + table.length) + bloomFilterBits / 8;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & (capacity - 1);
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            rehashed[slot] = id + 1;
+        }
+        table = rehashed;
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key);
+        // 下位ビットのみでスロットを決めるため、上位ビットを混ぜる
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
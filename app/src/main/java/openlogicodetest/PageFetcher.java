@@ -0,0 +1,20 @@
+package openlogicodetest;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 記事を取得し、最初の段落に含まれる記事へのリンクを返す
+ * 複数の仮想スレッドから同時に呼び出されるため、実装はスレッドセーフであること
+ */
+public interface PageFetcher {
+
+    /**
+     * 記事の最初の段落に含まれる記事へのリンクを出現順に取得します
+     *
+     * @param url 記事のURL
+     * @return リンクのリスト({@link WikiLink#isArticleLink}を満たすもののみ)
+     * @throws IOException 記事を取得できない場合
+     */
+    List<WikiLink> fetchLinks(String url) throws IOException;
+}
@@ -0,0 +1,38 @@
+package openlogicodetest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * ホスト毎の流量制限({@link HostRateLimiter})の範囲で記事を取得する
+ * キャッシュから返す場合に待たないよう、ネットワークへアクセスする取得処理のみを包むこと
+ */
+public class RateLimitedPageFetcher implements PageFetcher {
+
+    private final PageFetcher delegate;
+
+    private final HostRateLimiter rateLimiter;
+
+    /**
+     * @param delegate    記事の取得
+     * @param rateLimiter ホスト毎の流量制限
+     */
+    public RateLimitedPageFetcher(PageFetcher delegate, HostRateLimiter rateLimiter) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.rateLimiter = Objects.requireNonNull(rateLimiter);
+    }
+
+    @Override
+    public List<WikiLink> fetchLinks(String url) throws IOException {
+        try {
+            // リクエスト間を空けることでサーバへの負荷を抑える(要件No.6)
+            rateLimiter.acquire(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("流量制限の待機中に割り込まれました: " + url);
+        }
+        return delegate.fetchLinks(url);
+    }
+}
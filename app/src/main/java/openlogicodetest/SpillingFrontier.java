@@ -0,0 +1,206 @@
+package openlogicodetest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * メモリ上の件数が上限を超えた分をファイルに退避する、幅優先探索のキュー(FIFO)
+ * キューを先頭側のメモリ上のブロック・ファイル上のエントリ・末尾側のメモリ上のブロックの順に並べ、
+ * 末尾側のブロックが一杯になったらファイルへ追記し、先頭側のブロックが空になったらファイルから読み込む。
+ * メモリ上に保持するエントリはmaxInMemory件以下となる。
+ * ファイルへの読み書きに失敗した場合はUncheckedIOExceptionを投げる。スレッドセーフではない
+ */
+public final class SpillingFrontier implements AutoCloseable {
+
+    /** メモリ上に保持するエントリ数の上限の既定値 */
+    public static final int DEFAULT_MAX_IN_MEMORY = 65_536;
+
+    /** エントリ1件あたりのオブジェクトのヘッダ・参照等のメモリ(URLの文字列以外、使用メモリの概算用) */
+    private static final int ENTRY_OVERHEAD_BYTES = 80;
+
+    /** 先頭側のブロック */
+    private final ArrayDeque<FrontierEntry> head = new ArrayDeque<>();
+
+    /** 末尾側のブロック */
+    private final ArrayDeque<FrontierEntry> tail = new ArrayDeque<>();
+
+    /** ファイルと読み書きするブロックのエントリ数 */
+    private final int blockSize;
+
+    /** 退避するファイルを作成するディレクトリ */
+    private final Path spillDirectory;
+
+    private Path spillFile;
+
+    private DataOutputStream spillOut;
+
+    private DataInputStream spillIn;
+
+    /** ファイル上のエントリ数 */
+    private long spilledCount;
+
+    /** ファイルへ書き出したエントリ数の累計 */
+    private long totalSpilledCount;
+
+    private long size;
+
+    /**
+     * 一時ディレクトリにファイルを退避する
+     */
+    public SpillingFrontier() {
+        this(Path.of(System.getProperty("java.io.tmpdir")), DEFAULT_MAX_IN_MEMORY);
+    }
+
+    /**
+     * @param spillDirectory 退避するファイルを作成するディレクトリ
+     * @param maxInMemory    メモリ上に保持するエントリ数の上限(2以上)
+     */
+    public SpillingFrontier(Path spillDirectory, int maxInMemory) {
+        if (maxInMemory < 2) {
+            throw new IllegalArgumentException("不正なエントリ数の上限です: " + maxInMemory);
+        }
+        this.spillDirectory = Objects.requireNonNull(spillDirectory);
+        this.blockSize = maxInMemory / 2;
+    }
+
+    /**
+     * 末尾にエントリを追加します
+     *
+     * @param entry エントリ
+     */
+    public void add(FrontierEntry entry) {
+        if (spilledCount == 0 && tail.isEmpty() && head.size() < blockSize) {
+            head.add(entry);
+        } else {
+            tail.add(entry);
+            if (tail.size() >= blockSize) {
+                this.spill();
+            }
+        }
+        size++;
+    }
+
+    /**
+     * 先頭のエントリを取り出します
+     *
+     * @return エントリ(空の場合null)
+     */
+    public FrontierEntry poll() {
+        if (head.isEmpty()) {
+            this.refill();
+        }
+        FrontierEntry entry = head.poll();
+        if (entry != null) {
+            size--;
+        }
+        return entry;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * ファイルへ書き出したエントリ数の累計
+     */
+    public long getTotalSpilledCount() {
+        return totalSpilledCount;
+    }
+
+    /**
+     * メモリ上のエントリの使用メモリの概算(バイト)
+     */
+    public long getFootprintBytes() {
+        long bytes = 0;
+        for (FrontierEntry entry : head) {
+            bytes += ENTRY_OVERHEAD_BYTES + entry.url().length();
+        }
+        for (FrontierEntry entry : tail) {
+            bytes += ENTRY_OVERHEAD_BYTES + entry.url().length();
+        }
+        return bytes;
+    }
+
+    /**
+     * 退避したファイルを削除します
+     */
+    @Override
+    public void close() {
+        try {
+            this.deleteSpillFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void spill() {
+        try {
+            if (spillFile == null) {
+                spillFile = Files.createTempFile(spillDirectory, "crawl-frontier-", ".bin");
+                spillOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+                spillIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile)));
+            }
+            for (FrontierEntry entry : tail) {
+                spillOut.writeInt(entry.keywordId());
+                spillOut.writeInt(entry.depth());
+                spillOut.writeUTF(entry.url());
+            }
+            // 読み込み側から見えるように、ブロック毎に書き出す
+            spillOut.flush();
+            spilledCount += tail.size();
+            totalSpilledCount += tail.size();
+            tail.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("探索キューをファイルに退避できません: " + spillFile, e);
+        }
+    }
+
+    private void refill() {
+        if (spilledCount == 0) {
+            // ファイルが空であれば末尾側のブロックがそのまま先頭に続く
+            head.addAll(tail);
+            tail.clear();
+            return;
+        }
+        try {
+            for (int i = 0; i < blockSize && spilledCount > 0; i++, spilledCount--) {
+                int keywordId = spillIn.readInt();
+                int depth = spillIn.readInt();
+                head.add(new FrontierEntry(spillIn.readUTF(), keywordId, depth));
+            }
+            if (spilledCount == 0) {
+                // 読み終えたファイルは削除し、次に退避する際に作り直す
+                this.deleteSpillFile();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("退避した探索キューを読み込めません: " + spillFile, e);
+        }
+    }
+
+    private void deleteSpillFile() throws IOException {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillOut.close();
+            spillIn.close();
+        } finally {
+            Files.deleteIfExists(spillFile);
+            spillFile = null;
+            spillOut = null;
+            spillIn = null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package openlogicodetest;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * 記事全体のDOMを構築せずに、最初の段落のリンクを取得する
+ * JsoupのStreamParserでレスポンスを読み込みながら解析し、最初の段落(.mw-parser-output &gt; p)の終了タグまで
+ * 読み込んだ時点で解析を止めて接続を閉じる。以降の本文・脚注・ナビゲーション等は読み込まない。
+ * 取得するリンクは{@link JsoupPageFetcher}と同じになる
+ */
+public class StreamingPageFetcher implements PageFetcher {
+
+    @Override
+    public List<WikiLink> fetchLinks(String url) throws IOException {
+        try (StreamParser streamer = Jsoup.connect(url).execute().streamParser()) {
+            return extractLinks(streamer);
+        }
+    }
+
+    /**
+     * 記事のHTMLを読み込みながら、最初の段落のリンクを取得します
+     *
+     * @param reader  記事のHTML
+     * @param baseUri リンクの絶対URLを求める際の基準のURL
+     * @return リンクのリスト
+     * @throws IOException 読み込めない場合
+     */
+    public static List<WikiLink> extractLinks(Reader reader, String baseUri) throws IOException {
+        try (StreamParser streamer = new StreamParser(Parser.htmlParser()).parse(reader, baseUri)) {
+            return extractLinks(streamer);
+        }
+    }
+
+    private static List<WikiLink> extractLinks(StreamParser streamer) throws IOException {
+        // 要素は終了タグ(段落の場合は次のブロック要素の開始等による暗黙の終了を含む)まで読み込んだ時点で返される
+        Element firstP = streamer.selectNext(JsoupPageFetcher.FIRST_PARAGRAPH);
+        streamer.stop();
+        return JsoupPageFetcher.linksOf(firstP);
+    }
+}
@@ -0,0 +1,26 @@
+package openlogicodetest;
+
+/**
+ * 記事の最初の段落から取得したリンク
+ *
+ * @param text リンクの文字列(キーワード)
+ * @param url  リンク先の絶対URL
+ */
+public record WikiLink(String text, String url) {
+
+    /** 記事へのリンクのパスの接頭辞 */
+    public static final String WIKI_PATH_PREFIX = "/wiki/";
+
+    /**
+     * 探索の対象とする記事へのリンクかを判定します
+     * 文字列が空のリンクと、名前空間付きのページ(ファイル・ヘルプ等、パスに:を含むもの)へのリンクは対象外とする
+     *
+     * @param text リンクの文字列
+     * @param href リンクのhref属性(/wiki/で始まるもの)
+     * @return 探索の対象とする場合true
+     */
+    public static boolean isArticleLink(String text, String href) {
+        return !text.isEmpty() && href.startsWith(WIKI_PATH_PREFIX)
+                && href.indexOf(':', WIKI_PATH_PREFIX.length()) < 0;
+    }
+}
@@ -1,30 +1,44 @@
 package openlogicodetest;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class openlogicodetest {
 
-    /** 最大探索回数(変更する場合はこの値を変えて下さい) */
+    /** 最大探索回数の既定値(起動時の引数で変更できます) */
     private static final int MAX_SEARCH = 20;
 
-    private static final AtomicInteger searchCount = new AtomicInteger(0);
+    /** 同時に取得する記事数の上限 */
+    private static final int CONCURRENCY = 8;
+
+    /** 同じホストに1秒あたりに送るリクエスト数の上限(要件No.6) */
+    private static final double REQUESTS_PER_SECOND = 1.0;
+
+    /** 記事のキャッシュのディレクトリ(-Dcrawler.cacheDirで変更できます) */
+    private static final Path CACHE_DIRECTORY = Path.of(System.getProperty("crawler.cacheDir", ".crawl-cache"));
 
-    /** 訪問済みセット */
-    private static Set<String> visited = new HashSet<>();
+    /** 記事のキャッシュの有効期限(-Dcrawler.cacheTtlにISO-8601の期間で指定できます) */
+    private static final Duration CACHE_TTL = Duration.parse(System.getProperty("crawler.cacheTtl", "P7D"));
 
-    // 親子関係を保持するMap(親・子のリスト)
-    private static Map<String, List<String>> treeMap = new LinkedHashMap<>();
+    /**
+     * 探索のチェックポイントのファイル(-Dcrawler.checkpointで指定した場合のみ記録する)
+     * ファイルがあれば中断した探索を再開する。最初から探索する場合はファイルを削除して下さい
+     */
+    private static final String CHECKPOINT_FILE = System.getProperty("crawler.checkpoint");
 
-    private static Map<String, Integer> treeDepthMap = new LinkedHashMap<>();
+    /** キャッシュのみから探索する(-Dcrawler.offline=trueの場合、ネットワークへアクセスしない) */
+    private static final boolean OFFLINE = Boolean.getBoolean("crawler.offline");
+
+    /**
+     * 記事の取得(キャッシュに無い・期限切れの記事のみ流量制限の範囲でネットワークから取得する)
+     * ネットワークから取得する場合は、記事全体ではなく最初の段落までを読み込んで解析する
+     */
+    private static final CachingPageFetcher fetcher = OFFLINE ? CachingPageFetcher.offline(CACHE_DIRECTORY)
+            : new CachingPageFetcher(CACHE_DIRECTORY,
+                    new RateLimitedPageFetcher(new StreamingPageFetcher(), new HostRateLimiter(REQUESTS_PER_SECOND, 1)),
+                    CACHE_TTL);
 
     /** ログ出力 */
     private static final Logger logger = Logger.getLogger(openlogicodetest.class.getName());
@@ -37,6 +51,8 @@ public class openlogicodetest {
 
     public static void main(String[] args) {
 
+        int maxSearch = args.length > 0 ? Integer.parseInt(args[0]) : MAX_SEARCH;
+
         long startTime = System.currentTimeMillis();
 
         /** 開始URL */
@@ -45,103 +61,67 @@ public class openlogicodetest {
         /** 開始キーワード */
         String START_KEY_WORD = "エリウド・キプチョゲ";
 
-        // 幅優先探索として探索する
-        searchAsBfs(START_URL, START_KEY_WORD, 0);
+        // 幅優先探索として探索する(探索の状態は出力し終えてから閉じる)
+        try (CrawlState crawlState = searchAsBfs(START_URL, START_KEY_WORD, 0, maxSearch).state()) {
 
-        // 探索したものを出力する
-        printTree(START_KEY_WORD, 0, new HashSet<>());
+            // 探索したものを出力する
+            printTree(crawlState, START_KEY_WORD, 0, new HashSet<>());
 
-        System.out.println("\nExecution Time: " + (System.currentTimeMillis() - startTime) + "ms");
+            System.out.println("\nExecution Time: " + (System.currentTimeMillis() - startTime) + "ms");
+            System.out.printf("Keywords: %d, Explored: %d, Crawl State: %d bytes (%.1f bytes/keyword)%n",
+                    crawlState.getKeywordCount(), crawlState.getExploredCount(), crawlState.getFootprintBytes(),
+                    crawlState.getFootprintBytesPerKeyword());
+        }
+        System.out.printf("Page Cache: %d hits, %d misses, %d expired%s%n", fetcher.getHitCount(),
+                fetcher.getMissCount(), fetcher.getExpiredCount(), fetcher.isOffline() ? " (offline)" : "");
     }
 
     /**
      * 幅優先探索します
+     * 複数の記事を並行して取得するが、探索順・親子関係は1件ずつ取得した場合と同じになる
      * 
      * @param startUrl     スタートするURL
      * @param startKeyword スタートするキーワード
-     * @throws InterruptedException
+     * @return 探索の結果(探索の状態は呼び出し側で閉じて下さい)
      */
-    public static void searchAsBfs(String startUrl, String startKeyword, int depth) {
-
-        // URL,キーワードをキューとして保持
-        Queue<Object[]> queue = new LinkedList<>();
-        queue.add(new Object[] { startUrl, startKeyword, depth });
+    public static CrawlResult searchAsBfs(String startUrl, String startKeyword, int depth) {
+        return searchAsBfs(startUrl, startKeyword, depth, MAX_SEARCH);
+    }
 
-        // 一度訪問したキーワードを保持
-        visited.add(startKeyword);
-        treeDepthMap.put(startKeyword, depth);
+    /**
+     * 最大探索回数を指定して幅優先探索します
+     * 
+     * @param startUrl     スタートするURL
+     * @param startKeyword スタートするキーワード
+     * @param maxSearch    最大探索回数
+     * @return 探索の結果(探索の状態は呼び出し側で閉じて下さい)
+     */
+    public static CrawlResult searchAsBfs(String startUrl, String startKeyword, int depth, int maxSearch) {
 
-        // 探索ロジック
         // 幅優先探索で実装する(要件No.4)
-        // 最大20回までの探索(要件No.2)
-        while (!queue.isEmpty() && searchCount.get() < MAX_SEARCH) {
-            Object[] current = queue.poll();
-            String url = (String) current[0];
-            String keyword = (String) current[1];
-            int currentDepth = (int) current[2];
-            searchCount.incrementAndGet();
-
-            List<String> children = new ArrayList<>();
-            try {
-                // リクエスト間を1秒以上空けることでサーバへの負荷を抑える(要件No.6)
-                Thread.sleep(1000);
-                Document doc = Jsoup.connect(url).get();
-                Element firstP = doc.select(".mw-parser-output > p").first();
-                if (firstP != null) {
-                    Elements links = firstP.select("a[href^=/wiki/]");
-                    for (Element link : links) {
-                        String linkText = link.text();
-                        String href = link.attr("href");
-                        if (linkText.isEmpty() || href.substring(6).contains(":")) {
-                            continue;
-                        }
-
-                        int nextDepth = currentDepth + 1;
-                        if (!treeDepthMap.containsKey(linkText)) {
-                            treeDepthMap.put(linkText, nextDepth);
-                        }
-
-                        // キーワード重複時、@を付けてリストに追加し、Queueには入れない
-                        if (visited.contains(linkText)) {
-                            children.add(linkText);
-                            continue;
-                        }
-
-                        // 語・学があった場合は末尾に$を付与(要件No.5)
-                        boolean searchStopFlg = linkText.endsWith("語") || linkText.endsWith("学");
-                        if (searchStopFlg) {
-                            visited.add(linkText);
-                            children.add(linkText);
-                            continue;
-                        }
-
-                        // 語・学で終了していない場合かつ初めてのキーワードなら探索済みセットに保持
-                        visited.add(linkText);
-                        children.add(linkText);
-
-                        System.out.println(treeDepthMap);
-
-                        queue.add(new Object[] { link.absUrl("href"), linkText, nextDepth });
-                    }
-                }
-            } catch (InterruptedException | IOException e) {
-                // 割り込みが発生した場合は処理を中断
-                logger.log(Level.SEVERE, "割り込みが発生しました。探索を中断します。", e);
-                Thread.currentThread().interrupt();
-                return;
-            }
-            treeMap.put(keyword, children);
+        // 最大探索回数までの探索(要件No.2)
+        // リクエスト間を1秒以上空けることでサーバへの負荷を抑える(要件No.6)
+        ConcurrentBfsCrawler crawler = new ConcurrentBfsCrawler(fetcher, CONCURRENCY, maxSearch);
+        CrawlCheckpoint checkpoint = CHECKPOINT_FILE == null ? null : new CrawlCheckpoint(Path.of(CHECKPOINT_FILE));
+        CrawlState state = new CrawlState();
+        try {
+            return crawler.crawl(state, checkpoint, startUrl, startKeyword, depth);
+        } catch (RuntimeException | Error e) {
+            // 結果を返せない場合のみここで閉じる
+            state.close();
+            throw e;
         }
     }
 
     /**
      * 探索したものをツリーとして出力します
      * 
-     * @param keyword   出力するキーワード
-     * @param depth     現在の深さ
-     * @param displayed 表示したキーワードの集合
+     * @param crawlState 探索の状態
+     * @param keyword    出力するキーワード
+     * @param depth      現在の深さ
+     * @param displayed  表示したキーワードの集合
      */
-    public static void printTree(String keyword, int depth, Set<String> displayed) {
+    public static void printTree(CrawlState crawlState, String keyword, int depth, Set<String> displayed) {
         String indent = "    ".repeat(depth);
         String cleanKey = keyword.replaceAll("[@$]+$", "");
 
@@ -157,7 +137,7 @@ public class openlogicodetest {
             return;
         }
 
-        if (depth > treeDepthMap.get(cleanKey)) {
+        if (depth > crawlState.getDepth(cleanKey)) {
             System.out.println(indent + "- " + cleanKey + "@");
             return;
         }
@@ -165,17 +145,17 @@ public class openlogicodetest {
         displayed.add(cleanKey);
 
         // 未探索のキーワード(=最大探索回数に漏れたもの)には$を付与(要件No.2)
-        boolean isExplored = treeMap.containsKey(cleanKey);
+        List<String> children = crawlState.getChildren(cleanKey);
+        boolean isExplored = children != null;
         String suffix = isExplored ? "" : "$";
 
         // 取得したキーワードは全て表示(要件No.3)
         System.out.println(indent + "- " + keyword + suffix);
 
         // 子要素がいれば再帰的に表示
-        List<String> children = treeMap.get(cleanKey);
         if (children != null) {
             for (String child : children) {
-                printTree(child, depth + 1, displayed);
+                printTree(crawlState, child, depth + 1, displayed);
             }
         }
     }
@@ -0,0 +1,166 @@
+package openlogicodetest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 記事のキャッシュのテスト
+ * 有効期限・オフラインでの取得・gzipで保存したリンクの復元と、ローカルのスタブサーバ({@link StubWikipediaServer})に対する
+ * キャッシュが空の探索・キャッシュからの探索・オフラインの探索の結果が一致することを確認する
+ */
+class CachingPageFetcherTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private static final String URL = "https://ja.wikipedia.org/wiki/%E5%A4%A7%E8%BF%AB%E5%82%91";
+
+    private static final List<WikiLink> LINKS = List.of(
+            new WikiLink("エリウド・キプチョゲ", "https://ja.wikipedia.org/wiki/%E3%82%A8%E3%83%AA%E3%82%A6%E3%83%89"),
+            new WikiLink("マラソン", "https://ja.wikipedia.org/wiki/%E3%83%9E%E3%83%A9%E3%82%BD%E3%83%B3"),
+            new WikiLink("", "https://ja.wikipedia.org/wiki/%E7%A9%BA"));
+
+    @TempDir
+    Path directory;
+
+    /** ネットワークからの取得の代わりに、取得回数を数えて固定のリンクを返す */
+    private final AtomicInteger fetchCount = new AtomicInteger();
+
+    private final PageFetcher countingNetwork = url -> {
+        fetchCount.incrementAndGet();
+        return LINKS;
+    };
+
+    @Test
+    void linksRoundTripThroughGzipFile() throws IOException {
+        CachingPageFetcher cache = this.cacheAt(NOW);
+        assertEquals(LINKS, cache.fetchLinks(URL));
+
+        Path file = cache.fileOf(URL);
+        try (InputStream in = Files.newInputStream(file)) {
+            // gzipのマジックナンバー
+            assertEquals(0x1f, in.read());
+            assertEquals(0x8b, in.read());
+        }
+        assertEquals(LINKS, this.cacheAt(NOW).fetchLinks(URL));
+        assertEquals(1, fetchCount.get());
+    }
+
+    @Test
+    void entryWithinTtlIsServedFromCache() throws IOException {
+        this.cacheAt(NOW).fetchLinks(URL);
+
+        CachingPageFetcher warm = this.cacheAt(NOW.plus(TTL));
+        assertEquals(LINKS, warm.fetchLinks(URL));
+        assertEquals(1, warm.getHitCount());
+        assertEquals(0, warm.getMissCount());
+        assertEquals(0, warm.getExpiredCount());
+        assertEquals(1, fetchCount.get());
+    }
+
+    @Test
+    void expiredEntryIsFetchedAgain() throws IOException {
+        this.cacheAt(NOW).fetchLinks(URL);
+
+        Instant expiredAt = NOW.plus(TTL).plusMillis(1);
+        CachingPageFetcher stale = this.cacheAt(expiredAt);
+        assertEquals(LINKS, stale.fetchLinks(URL));
+        assertEquals(1, stale.getExpiredCount());
+        assertEquals(2, fetchCount.get());
+
+        // 取得し直した時点から有効期限が始まる
+        CachingPageFetcher refreshed = this.cacheAt(expiredAt.plus(TTL));
+        refreshed.fetchLinks(URL);
+        assertEquals(1, refreshed.getHitCount());
+        assertEquals(2, fetchCount.get());
+    }
+
+    @Test
+    void offlineServesExpiredEntriesAndRejectsMissingPages() throws IOException {
+        this.cacheAt(NOW).fetchLinks(URL);
+
+        CachingPageFetcher offline = CachingPageFetcher.offline(directory);
+        assertTrue(offline.isOffline());
+        assertEquals(LINKS, offline.fetchLinks(URL));
+        assertEquals(1, offline.getHitCount());
+        assertThrows(CachingPageFetcher.PageNotCachedException.class, () -> offline.fetchLinks(URL + "_"));
+        assertEquals(1, offline.getMissCount());
+    }
+
+    @Test
+    void corruptEntryIsFetchedAgain() throws IOException {
+        CachingPageFetcher cache = this.cacheAt(NOW);
+        cache.fetchLinks(URL);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(cache.fileOf(URL)))) {
+            out.write(new byte[] { 1, 2, 3 });
+        }
+
+        CachingPageFetcher reread = this.cacheAt(NOW);
+        assertEquals(LINKS, reread.fetchLinks(URL));
+        assertEquals(1, reread.getMissCount());
+        assertEquals(2, fetchCount.get());
+    }
+
+    @Test
+    void cachedCrawlMatchesNetworkCrawl() throws IOException {
+        int maxSearch = 200;
+        String startKeyword = StubWikipediaServer.KEYWORD_PREFIX + 0;
+        String startUrl;
+        CrawlState expected;
+        try (StubWikipediaServer server = new StubWikipediaServer(0, 5)) {
+            startUrl = server.urlOf(startKeyword);
+            PageFetcher network = new RateLimitedPageFetcher(new JsoupPageFetcher(), new HostRateLimiter(1_000, 1));
+
+            // キャッシュが空の場合は全てサーバから取得する
+            CachingPageFetcher cold = new CachingPageFetcher(directory, network, TTL, Clock.fixed(NOW, ZoneOffset.UTC));
+            expected = crawl(cold, startUrl, startKeyword, maxSearch);
+            assertEquals(maxSearch, cold.getMissCount());
+            assertEquals(maxSearch, server.getRequestCount());
+
+            // 有効期限内はサーバへアクセスしない
+            CachingPageFetcher warm = new CachingPageFetcher(directory, network, TTL,
+                    Clock.fixed(NOW.plus(TTL), ZoneOffset.UTC));
+            assertSameResult(expected, crawl(warm, startUrl, startKeyword, maxSearch));
+            assertEquals(maxSearch, warm.getHitCount());
+            assertEquals(maxSearch, server.getRequestCount());
+        }
+
+        // サーバを停止した後もキャッシュのみから同じ探索ができる
+        CachingPageFetcher offline = CachingPageFetcher.offline(directory);
+        assertSameResult(expected, crawl(offline, startUrl, startKeyword, maxSearch));
+        assertEquals(maxSearch, offline.getHitCount());
+    }
+
+    private CachingPageFetcher cacheAt(Instant now) {
+        return new CachingPageFetcher(directory, countingNetwork, TTL, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static CrawlState crawl(PageFetcher fetcher, String startUrl, String startKeyword, int maxSearch) {
+        CrawlResult result = new ConcurrentBfsCrawler(fetcher, 16, maxSearch).crawl(startUrl, startKeyword, 0);
+        assertTrue(result.completed(), "探索が完了していません: searchCount=" + result.searchCount());
+        return result.state();
+    }
+
+    private static void assertSameResult(CrawlState expected, CrawlState actual) {
+        assertEquals(expected.toTreeMap(), actual.toTreeMap());
+        assertEquals(expected.toTreeDepthMap(), actual.toTreeDepthMap());
+    }
+}
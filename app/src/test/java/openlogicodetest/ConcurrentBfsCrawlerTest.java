@@ -0,0 +1,61 @@
+package openlogicodetest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 並行した幅優先探索のテスト
+ * ローカルのスタブサーバ({@link StubWikipediaServer})に対して、DOMで1件ずつ取得した場合を基準に、
+ * 並行して取得した場合・ストリーミングで最初の段落のみを解析した場合({@link StreamingPageFetcher})の
+ * 探索結果(訪問済み・親子関係・深さ・探索順)が一致することを確認する
+ */
+class ConcurrentBfsCrawlerTest {
+
+    private static final int MAX_SEARCH = 100;
+
+    private static final int CONCURRENCY = 16;
+
+    /** 応答の遅延の最小値(ミリ秒) */
+    private static final long MIN_LATENCY_MILLIS = 1;
+
+    /** 応答の遅延の最大値(ミリ秒)。記事毎に遅延を変え、取得の完了順を要求順と異なるものにする */
+    private static final long MAX_LATENCY_MILLIS = 20;
+
+    private static final String START_KEYWORD = StubWikipediaServer.KEYWORD_PREFIX + 0;
+
+    @Test
+    void concurrentCrawlMatchesSerialCrawl() throws IOException {
+        try (StubWikipediaServer server = new StubWikipediaServer(MIN_LATENCY_MILLIS, MAX_LATENCY_MILLIS)) {
+            CrawlResult expected = crawl(server, new JsoupPageFetcher(), 1);
+            assertSameResult(expected, crawl(server, new JsoupPageFetcher(), CONCURRENCY));
+        }
+    }
+
+    @Test
+    void streamingCrawlMatchesDomCrawl() throws IOException {
+        try (StubWikipediaServer server = new StubWikipediaServer(MIN_LATENCY_MILLIS, MAX_LATENCY_MILLIS)) {
+            CrawlResult expected = crawl(server, new JsoupPageFetcher(), 1);
+            assertSameResult(expected, crawl(server, new StreamingPageFetcher(), CONCURRENCY));
+        }
+    }
+
+    private static CrawlResult crawl(StubWikipediaServer server, PageFetcher fetcher, int concurrency) {
+        ConcurrentBfsCrawler crawler = new ConcurrentBfsCrawler(
+                new RateLimitedPageFetcher(fetcher, new HostRateLimiter(1_000, 1)), concurrency, MAX_SEARCH);
+        CrawlResult result = crawler.crawl(server.urlOf(START_KEYWORD), START_KEYWORD, 0);
+        assertTrue(result.completed(), "探索が完了していません: concurrency=" + concurrency);
+        assertEquals(MAX_SEARCH, result.searchCount());
+        return result;
+    }
+
+    private static void assertSameResult(CrawlResult expected, CrawlResult actual) {
+        assertEquals(expected.state().toVisitedSet(), actual.state().toVisitedSet());
+        assertEquals(expected.state().toTreeDepthMap(), actual.state().toTreeDepthMap());
+        // 子のリストは探索順のため、順序も含めて比較する
+        assertEquals(expected.state().toTreeMap(), actual.state().toTreeMap());
+    }
+}
@@ -0,0 +1,149 @@
+package openlogicodetest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * チェックポイントからの再開のテスト
+ * ネットワークを使用せず、スタブサーバと同じ形のリンクを生成する取得処理で、途中で記事の取得に失敗させて中断し、
+ * 再開して最後まで探索した結果が中断せずに探索した結果と一致することを確認する。
+ * 書き込み途中・CRC32が一致しないレコードは再開時に切り捨て、その記事から取得し直すことも確認する
+ */
+class CrawlCheckpointTest {
+
+    private static final String BASE_URL = "http://localhost/wiki/";
+
+    private static final String START_KEYWORD = StubWikipediaServer.KEYWORD_PREFIX + 0;
+
+    private static final int MAX_SEARCH = 3_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumedCrawlMatchesUninterruptedCrawl() throws IOException {
+        Path file = directory.resolve("crawl.checkpoint");
+        CrawlResult expected = crawl(Integer.MAX_VALUE, null);
+
+        // 1回目の中断
+        CrawlResult first = crawl(MAX_SEARCH / 3, new CrawlCheckpoint(file));
+        // 2回目の中断(書き込み途中のレコードを残す)
+        CrawlResult second = crawl(MAX_SEARCH / 3, new CrawlCheckpoint(file));
+        Files.write(file, new byte[] { 0, 0, 1, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+        assertFalse(first.completed());
+        assertFalse(second.completed());
+        assertTrue(second.searchCount() > first.searchCount(), first.searchCount() + " " + second.searchCount());
+
+        CrawlResult resumed = crawl(Integer.MAX_VALUE, new CrawlCheckpoint(file));
+        assertTrue(resumed.completed());
+        assertEquals(MAX_SEARCH, resumed.searchCount());
+        assertSameResult(expected, resumed);
+    }
+
+    @Test
+    void recordWithBadCrcIsTruncatedOnResume() throws IOException {
+        Path file = directory.resolve("crawl.checkpoint");
+        CrawlResult expected = crawl(Integer.MAX_VALUE, null);
+        CrawlResult interrupted = crawl(MAX_SEARCH / 2, new CrawlCheckpoint(file));
+        assertFalse(interrupted.completed());
+
+        // 中ほどのレコードを壊す
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= (byte) 0xFF;
+        Files.write(file, bytes);
+
+        // 壊れたレコードの手前までを適用し、以降は切り捨てて取得し直す
+        AtomicInteger fetchCount = new AtomicInteger();
+        CrawlResult resumed = crawl(Integer.MAX_VALUE, new CrawlCheckpoint(file), fetchCount);
+        assertTrue(fetchCount.get() > MAX_SEARCH - interrupted.searchCount() && fetchCount.get() < MAX_SEARCH,
+                "fetched=" + fetchCount.get() + " interruptedAt=" + interrupted.searchCount());
+        assertTrue(resumed.completed());
+        assertEquals(MAX_SEARCH, resumed.searchCount());
+        assertSameResult(expected, resumed);
+    }
+
+    @Test
+    void checkpointWithDifferentStartIsRejected() throws IOException {
+        Path file = directory.resolve("crawl.checkpoint");
+        crawl(MAX_SEARCH / 3, new CrawlCheckpoint(file));
+
+        try (CrawlCheckpoint checkpoint = new CrawlCheckpoint(file)) {
+            assertThrows(IllegalStateException.class, () -> checkpoint.open(BASE_URL + "別の記事", "別の記事", 0,
+                    new KeywordDictionary(), (keywordId, links) -> {
+                    }));
+        }
+    }
+
+    @Test
+    void fsyncIsBatched() {
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(directory.resolve("crawl.checkpoint"));
+        assertTrue(crawl(Integer.MAX_VALUE, checkpoint).completed());
+
+        assertEquals(MAX_SEARCH, checkpoint.getPageCount());
+        // 記事数の間隔毎にまとめてfsyncする(時間の間隔による分を見込む)
+        assertTrue(checkpoint.getSyncCount() <= MAX_SEARCH / CrawlCheckpoint.DEFAULT_SYNC_INTERVAL_PAGES + 10,
+                "fsync=" + checkpoint.getSyncCount());
+    }
+
+    /**
+     * 探索します
+     *
+     * @param failAt     この回数目の取得で失敗させる(失敗させない場合Integer.MAX_VALUE)
+     * @param checkpoint チェックポイント
+     */
+    private static CrawlResult crawl(int failAt, CrawlCheckpoint checkpoint) {
+        return crawl(failAt, checkpoint, new AtomicInteger());
+    }
+
+    /**
+     * 探索します
+     *
+     * @param failAt     この回数目の取得で失敗させる(失敗させない場合Integer.MAX_VALUE)
+     * @param checkpoint チェックポイント
+     * @param fetchCount 記事の取得回数
+     */
+    private static CrawlResult crawl(int failAt, CrawlCheckpoint checkpoint, AtomicInteger fetchCount) {
+        // 記事nは記事3n+1～3n+4と親の記事へリンクし、7の倍数の記事は語で終わるキーワードへもリンクする
+        PageFetcher fetcher = url -> {
+            if (fetchCount.incrementAndGet() == failAt) {
+                throw new IOException("取得に失敗しました: " + url);
+            }
+            long n = Long.parseLong(url.substring(BASE_URL.length() + StubWikipediaServer.KEYWORD_PREFIX.length()));
+            List<WikiLink> links = new ArrayList<>(6);
+            for (long child = 3 * n + 1; child <= 3 * n + 4; child++) {
+                links.add(link(StubWikipediaServer.KEYWORD_PREFIX + child));
+            }
+            if (n > 0) {
+                links.add(link(StubWikipediaServer.KEYWORD_PREFIX + (n - 1) / 3));
+            }
+            if (n % 7 == 0) {
+                links.add(link("言語" + n % 5 + "語"));
+            }
+            return links;
+        };
+        ConcurrentBfsCrawler crawler = new ConcurrentBfsCrawler(fetcher, 64, MAX_SEARCH);
+        return crawler.crawl(new CrawlState(), checkpoint, BASE_URL + START_KEYWORD, START_KEYWORD, 0);
+    }
+
+    private static WikiLink link(String keyword) {
+        return new WikiLink(keyword, BASE_URL + keyword);
+    }
+
+    private static void assertSameResult(CrawlResult expected, CrawlResult actual) {
+        assertEquals(expected.state().toTreeMap(), actual.state().toTreeMap());
+        assertEquals(expected.state().toTreeDepthMap(), actual.state().toTreeDepthMap());
+    }
+}
@@ -0,0 +1,113 @@
+package openlogicodetest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 探索の状態のテスト
+ * ネットワークを使用せず、スタブサーバと同じ形のリンクを生成する取得処理で探索し、
+ * 探索キューをディスクへ退避した場合・ブルームフィルタを使用した場合の探索結果が、全てメモリ上で探索した結果と
+ * 一致することと、キーワード1件あたりの使用メモリが上限を超えないことを確認する
+ */
+class CrawlStateTest {
+
+    private static final String BASE_URL = "http://localhost/wiki/";
+
+    private static final String START_KEYWORD = StubWikipediaServer.KEYWORD_PREFIX + 0;
+
+    /** キーワード1件あたりの使用メモリの上限(バイト) */
+    private static final double MAX_BYTES_PER_KEYWORD = 100;
+
+    /** 退避を確認するためのメモリ上の探索キューの上限 */
+    private static final int MAX_IN_MEMORY_FRONTIER = 1024;
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void spilledCrawlMatchesInMemoryCrawl() {
+        int maxSearch = 5_000;
+        try (CrawlState expected = new CrawlState();
+                CrawlState spilled = new CrawlState(spillDirectory, 256, 0)) {
+            crawl(expected, maxSearch);
+            crawl(spilled, maxSearch);
+
+            assertTrue(spilled.getFrontier().getTotalSpilledCount() > 0, "探索キューが退避されていません");
+            assertEquals(expected.getKeywordCount(), spilled.getKeywordCount());
+            assertEquals(expected.toTreeDepthMap(), spilled.toTreeDepthMap());
+            assertEquals(expected.toTreeMap(), spilled.toTreeMap());
+        }
+    }
+
+    @Test
+    void bloomFilterCrawlMatchesInMemoryCrawl() {
+        int maxSearch = 5_000;
+        try (CrawlState expected = new CrawlState();
+                CrawlState filtered = new CrawlState(spillDirectory, MAX_IN_MEMORY_FRONTIER, maxSearch * 4)) {
+            crawl(expected, maxSearch);
+            crawl(filtered, maxSearch);
+
+            assertEquals(expected.toVisitedSet(), filtered.toVisitedSet());
+            assertEquals(expected.toTreeDepthMap(), filtered.toTreeDepthMap());
+            assertEquals(expected.toTreeMap(), filtered.toTreeMap());
+        }
+    }
+
+    @Test
+    void footprintPerKeywordIsBounded() {
+        try (CrawlState state = new CrawlState(spillDirectory, MAX_IN_MEMORY_FRONTIER, 0)) {
+            crawl(state, 20_000);
+
+            assertEquals(60_002, state.getKeywordCount());
+            assertTrue(state.getFootprintBytesPerKeyword() < MAX_BYTES_PER_KEYWORD,
+                    "キーワード1件あたりの使用メモリ: " + state.getFootprintBytesPerKeyword());
+        }
+    }
+
+    /**
+     * 20万キーワード規模の探索(実行: ./gradlew :app:scaleTest)
+     */
+    @Test
+    @Tag("scale")
+    void footprintPerKeywordIsBoundedAtScale() {
+        try (CrawlState state = new CrawlState(spillDirectory, MAX_IN_MEMORY_FRONTIER, 0)) {
+            crawl(state, 70_000);
+
+            assertTrue(state.getKeywordCount() >= 200_000, "キーワード数: " + state.getKeywordCount());
+            assertTrue(state.getFrontier().getTotalSpilledCount() > 0, "探索キューが退避されていません");
+            assertTrue(state.getFootprintBytesPerKeyword() < MAX_BYTES_PER_KEYWORD,
+                    "キーワード1件あたりの使用メモリ: " + state.getFootprintBytesPerKeyword());
+        }
+    }
+
+    private static void crawl(CrawlState state, int maxSearch) {
+        // 記事nは記事3n+1～3n+4と親の記事へリンクする
+        PageFetcher fetcher = url -> {
+            long n = Long.parseLong(url.substring(BASE_URL.length() + StubWikipediaServer.KEYWORD_PREFIX.length()));
+            List<WikiLink> links = new ArrayList<>(5);
+            for (long child = 3 * n + 1; child <= 3 * n + 4; child++) {
+                links.add(link(child));
+            }
+            if (n > 0) {
+                links.add(link((n - 1) / 3));
+            }
+            return links;
+        };
+        CrawlResult result = new ConcurrentBfsCrawler(fetcher, 64, maxSearch).crawl(state, BASE_URL + START_KEYWORD,
+                START_KEYWORD, 0);
+        assertTrue(result.completed(), "探索が完了していません: searchCount=" + result.searchCount());
+        assertEquals(maxSearch, result.searchCount());
+    }
+
+    private static WikiLink link(long n) {
+        return new WikiLink(StubWikipediaServer.KEYWORD_PREFIX + n, BASE_URL + StubWikipediaServer.KEYWORD_PREFIX + n);
+    }
+}
@@ -0,0 +1,97 @@
+package openlogicodetest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ホスト毎の流量制限のテスト
+ * 実際には待機せず、待機した時間だけ進む時計で、バースト・定常時の間隔・ホスト毎の独立性を確認する
+ */
+class HostRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final String HOST_A = "https://ja.wikipedia.org/wiki/A";
+
+    private static final String HOST_B = "https://en.wikipedia.org/wiki/B";
+
+    /** 現在時刻(ナノ秒) */
+    private long now = 1_000 * SECOND;
+
+    /** 待機した時間(ナノ秒) */
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private HostRateLimiter newLimiter(double permitsPerSecond, int burst) {
+        return new HostRateLimiter(permitsPerSecond, burst, () -> now, nanos -> {
+            sleeps.add(nanos);
+            now += nanos;
+        });
+    }
+
+    @Test
+    void allowsBurstWithoutWaiting() throws InterruptedException {
+        HostRateLimiter limiter = newLimiter(2, 3);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire(HOST_A);
+        }
+        assertEquals(List.of(), sleeps);
+
+        // バーストを使い切った後は1/permitsPerSecond秒待つ
+        limiter.acquire(HOST_A);
+        assertEquals(List.of(SECOND / 2), sleeps);
+    }
+
+    @Test
+    void spacesRequestsEvenlyAfterBurst() throws InterruptedException {
+        HostRateLimiter limiter = newLimiter(4, 1);
+        List<Long> acquiredAt = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(HOST_A);
+            acquiredAt.add(now);
+        }
+        for (int i = 1; i < acquiredAt.size(); i++) {
+            assertEquals(SECOND / 4, acquiredAt.get(i) - acquiredAt.get(i - 1), "request " + i);
+        }
+    }
+
+    @Test
+    void refillsUpToBurstOnly() throws InterruptedException {
+        HostRateLimiter limiter = newLimiter(1, 2);
+        limiter.acquire(HOST_A);
+        limiter.acquire(HOST_A);
+
+        // 長く空いてもburst個までしか貯まらない
+        now += 60 * SECOND;
+        limiter.acquire(HOST_A);
+        limiter.acquire(HOST_A);
+        assertEquals(List.of(), sleeps);
+        limiter.acquire(HOST_A);
+        assertEquals(List.of(SECOND), sleeps);
+    }
+
+    @Test
+    void limitsEachHostIndependently() throws InterruptedException {
+        HostRateLimiter limiter = newLimiter(1, 1);
+        limiter.acquire(HOST_A);
+        limiter.acquire(HOST_A);
+        assertEquals(List.of(SECOND), sleeps);
+
+        // 別のホストは待たされず、同じホストの別のURLは同じバケットを使う
+        limiter.acquire(HOST_B);
+        assertEquals(List.of(SECOND), sleeps);
+        limiter.acquire(HOST_A + "_2");
+        assertEquals(List.of(SECOND, SECOND), sleeps);
+    }
+
+    @Test
+    void rejectsInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new HostRateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HostRateLimiter(1, 0));
+    }
+}
@@ -0,0 +1,181 @@
+package openlogicodetest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 探索のテスト用に、Wikipediaの記事を模したHTMLを返すローカルのHTTPサーバ
+ * 記事「記事n」の最初の段落は「記事3n+1」～「記事3n+4」(隣の記事と1件重複する)・親の記事へのリンクと、
+ * 探索の対象外のリンク(名前空間付き・文字列が空)を含む。7の倍数の記事には語で終わるキーワードへのリンクも含む。
+ * 応答は記事毎に決まった遅延(minLatency～maxLatency)の後に返すため、取得の完了順は要求順と一致しない
+ */
+public class StubWikipediaServer implements AutoCloseable {
+
+    /** 記事のキーワードの接頭辞 */
+    public static final String KEYWORD_PREFIX = "記事";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final long minLatencyMillis;
+
+    private final long maxLatencyMillis;
+
+    /** 受け付けたリクエスト数 */
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * @param minLatencyMillis 応答の遅延の最小値(ミリ秒)
+     * @param maxLatencyMillis 応答の遅延の最大値(ミリ秒)
+     * @throws IOException ポートを使用できない場合
+     */
+    public StubWikipediaServer(long minLatencyMillis, long maxLatencyMillis) throws IOException {
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = Math.max(minLatencyMillis, maxLatencyMillis);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(WikiLink.WIKI_PATH_PREFIX, this::handle);
+        server.start();
+    }
+
+    /**
+     * 記事のURL
+     *
+     * @param keyword キーワード
+     * @return URL
+     */
+    public String urlOf(String keyword) {
+        return "http://localhost:" + server.getAddress().getPort() + hrefOf(keyword);
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 記事のHTML
+     *
+     * @param keyword キーワード
+     * @return HTML(キーワードが記事nの形式でない場合null)
+     */
+    public static String articleHtml(String keyword) {
+        return articleHtml(keyword, 1);
+    }
+
+    /**
+     * 記事のHTML
+     * 2番目以降の段落・表・脚注の量を指定し、実際の記事に近い大きさのHTMLを生成する
+     *
+     * @param keyword    キーワード
+     * @param paragraphs 2番目以降の段落数(それぞれ約1KBで、10段落毎に表を含む)
+     * @return HTML(キーワードが記事nの形式でない場合null)
+     */
+    public static String articleHtml(String keyword, int paragraphs) {
+        if (!keyword.startsWith(KEYWORD_PREFIX)) {
+            return null;
+        }
+        long n;
+        try {
+            n = Long.parseLong(keyword.substring(KEYWORD_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html><html><head><title>").append(keyword).append(" - Wikipedia</title></head><body>")
+                .append("<div id=\"mw-content-text\"><div class=\"mw-content-ltr mw-parser-output\">")
+                .append("<table class=\"infobox\"><tr><td><a href=\"").append(hrefOf(KEYWORD_PREFIX + (n + 100)))
+                .append("\">表の中のリンク</a></td></tr></table>");
+        // 最初の段落
+        html.append("<p><b>").append(keyword).append("</b>(<a href=\"/wiki/Help:IPA\">発音</a>)は、");
+        for (long child = 3 * n + 1; child <= 3 * n + 4; child++) {
+            appendLink(html, KEYWORD_PREFIX + child);
+            html.append("、");
+        }
+        if (n > 0) {
+            appendLink(html, KEYWORD_PREFIX + (n - 1) / 3);
+        }
+        if (n % 7 == 0) {
+            html.append("、");
+            appendLink(html, "言語" + n % 5 + "語");
+        }
+        html.append("<a href=\"").append(hrefOf(KEYWORD_PREFIX + (n + 1))).append("\"></a>に関する記事である。")
+                .append("<sup><a href=\"#cite_note-1\">[1]</a></sup></p>");
+        // 2番目以降の段落は探索の対象外
+        for (int i = 0; i < paragraphs; i++) {
+            if (i % 10 == 9) {
+                html.append("<table class=\"wikitable\">");
+                for (int row = 0; row < 10; row++) {
+                    html.append("<tr><th>項目").append(row).append("</th><td>");
+                    appendLink(html, KEYWORD_PREFIX + (n + 2000 + row));
+                    html.append("</td></tr>");
+                }
+                html.append("</table>");
+            }
+            html.append("<h2 id=\"s").append(i).append("\">節").append(i).append("</h2><p>")
+                    .append("本文。".repeat(50));
+            appendLink(html, KEYWORD_PREFIX + (n + 1000 + i));
+            html.append("<sup><a href=\"#cite_note-").append(i + 2).append("\">[").append(i + 2)
+                    .append("]</a></sup></p>");
+        }
+        html.append("<ol class=\"references\">");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<li id=\"cite_note-").append(i + 2).append("\">出典").append(i)
+                    .append("、<a href=\"https://example.com/").append(i).append("\">外部リンク</a></li>");
+        }
+        html.append("</ol></div></div></body></html>");
+        return html.toString();
+    }
+
+    private static String hrefOf(String keyword) {
+        return WikiLink.WIKI_PATH_PREFIX + URLEncoder.encode(keyword, StandardCharsets.UTF_8);
+    }
+
+    private static void appendLink(StringBuilder html, String keyword) {
+        html.append("<a href=\"").append(hrefOf(keyword))
+                .append("\" title=\"").append(keyword).append("\">").append(keyword).append("</a>");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requestCount.incrementAndGet();
+            String keyword = exchange.getRequestURI().getPath().substring(WikiLink.WIKI_PATH_PREFIX.length());
+            String html = articleHtml(keyword);
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis(keyword));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            byte[] body = (html == null ? "<html><body>Not Found</body></html>" : html)
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(html == null ? 404 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private long latencyMillis(String keyword) {
+        long range = maxLatencyMillis - minLatencyMillis + 1;
+        return minLatencyMillis + Math.floorMod(keyword.hashCode() * 0x9E3779B1L, range);
+    }
+}
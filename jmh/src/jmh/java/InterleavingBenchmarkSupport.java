@@ -0,0 +1,319 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ベンチマークからCodeTestを呼び出すための補助クラス
+ * JMHはデフォルトパッケージのベンチマークを生成できないため、ベンチマーク本体は名前付きパッケージに置き、
+ * デフォルトパッケージのCodeTestはこのクラスを経由して呼び出す。
+ * privateメソッドもMethodHandleで直接呼び出し、リフレクションのコストが計測に含まれないようにする
+ */
+public final class InterleavingBenchmarkSupport {
+
+    /* 新旧アルゴリズムで重複しないIDの開始位置 */
+    private static final int DISJOINT_ID_BASE = 10_000_000;
+
+    /* 計測中にLocalDate.nowのコストが含まれないよう、日付は起動時に固定する */
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private static final MethodHandle CREATE_SEED_VALUE;
+
+    private static final MethodHandle GET_INTERLEAVING_ENTRY;
+
+    private static final MethodHandle SELECT_ITEM_FROM_OLD_ALGORITHM;
+
+    private static final MethodHandle OLD_RANKER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(CodeTest.class, MethodHandles.lookup());
+            CREATE_SEED_VALUE = lookup.findVirtual(CodeTest.class, "createSeedValue",
+                    MethodType.methodType(long.class, Integer.class, LocalDate.class));
+            GET_INTERLEAVING_ENTRY = lookup.findVirtual(CodeTest.class, "getInterleavingEntry",
+                    MethodType.methodType(InterleavingCache.Entry.class, Integer.class, LocalDate.class,
+                            Integer.class, InterleavingStrategy.class));
+            SELECT_ITEM_FROM_OLD_ALGORITHM = lookup.findVirtual(CodeTest.class, "selectItemFromOldAlgorithm",
+                    MethodType.methodType(InterleavingPage.class, Integer.class, LocalDate.class, Integer.class,
+                            Integer.class, Integer.class, Integer.class, String.class, Ranker.class, IntHashSet.class,
+                            boolean.class, InterleavingCursor.class));
+            OLD_RANKER = lookup.findGetter(CodeTest.class, "oldRanker", Ranker.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private InterleavingBenchmarkSupport() {
+    }
+
+    /**
+     * 合成したランキングを返すCodeTestを生成
+     * 旧アルゴリズムは0からrankingSize-1までのIDをシャッフルしたもの、
+     * 新アルゴリズムはそのうちoverlapの割合を旧アルゴリズムと共通のIDとし、残りを重複しないIDとしたものになる
+     *
+     * @param rankingSize ランキングの件数
+     * @param overlap     新旧アルゴリズムで共通するIDの割合(0.0～1.0)
+     * @return CodeTest
+     */
+    public static Object newService(int rankingSize, double overlap) {
+        int[][] rankings = rankings(rankingSize, overlap);
+
+        // タイムアウトで旧アルゴリズムのみの結果にならないよう、十分に長くしておく
+        return CodeTest.builder()
+                .rankingSources(rankingSource(rankings[0]), rankingSource(rankings[1]))
+                .rankingTimeouts(Duration.ofMinutes(1), Duration.ofMinutes(1))
+                .build();
+    }
+
+    /**
+     * 合成した新旧アルゴリズムのランキング(newServiceと同じもの)
+     *
+     * @param rankingSize ランキングの件数
+     * @param overlap     新旧アルゴリズムで共通するIDの割合(0.0～1.0)
+     * @return 旧アルゴリズム・新アルゴリズムの順のID配列
+     */
+    public static int[][] rankings(int rankingSize, double overlap) {
+        Random random = new Random(rankingSize);
+        int[] oldIds = shuffledRange(0, rankingSize, random);
+
+        int sharedCount = (int) Math.round(rankingSize * overlap);
+        int[] newIds = new int[rankingSize];
+        int[] sharedIds = shuffledRange(0, rankingSize, random);
+        System.arraycopy(sharedIds, 0, newIds, 0, sharedCount);
+        for (int i = sharedCount; i < rankingSize; i++) {
+            newIds[i] = DISJOINT_ID_BASE + i;
+        }
+        shuffle(newIds, random);
+        return new int[][] { oldIds, newIds };
+    }
+
+    /**
+     * 名前からインターリービングの戦略を取得
+     *
+     * @param name 戦略の名前
+     * @return InterleavingStrategy
+     */
+    public static Object strategy(String name) {
+        return InterleavingStrategy.of(name);
+    }
+
+    /**
+     * 戦略による統合処理のみを実行
+     *
+     * @return 統合した件数
+     */
+    public static int merge(Object strategy, long seed, int[] oldIds, int[] newIds, int totalNeeded) {
+        return ((InterleavingStrategy) strategy).merge(InterleavingEngine.current(), seed, oldIds, oldIds.length,
+                newIds, newIds.length, totalNeeded);
+    }
+
+    /**
+     * @see CodeTest#interleaving(Integer, Integer, Integer)
+     */
+    public static Object interleaving(Object service, int userId, int page, int perPage) {
+        return ((CodeTest) service).interleaving(userId, page, perPage);
+    }
+
+    /**
+     * シード値の生成のみを実行
+     */
+    public static long createSeedValue(Object service, int userId) throws Throwable {
+        return (long) CREATE_SEED_VALUE.invokeExact((CodeTest) service, (Integer) userId, TODAY);
+    }
+
+    /**
+     * 指定した生成方式のSeedProviderを生成
+     *
+     * @param seedMode シード値の生成方式(SeedProvider.SeedModeの名前)
+     * @return SeedProvider
+     */
+    public static Object newSeedProvider(String seedMode) {
+        return new SeedProvider(Clock.systemDefaultZone(), SeedProvider.SeedMode.valueOf(seedMode));
+    }
+
+    /**
+     * 当日のシード値を生成
+     */
+    public static long seed(Object seedProvider, int userId) {
+        SeedProvider provider = (SeedProvider) seedProvider;
+        return provider.seed(userId, provider.today());
+    }
+
+    /**
+     * 3ページ目以降の旧アルゴリズムからの取得のみを実行するための除外用IDを用意
+     */
+    public static Object excludedIds(Object service, int userId, int perPage) throws Throwable {
+        InterleavingCache.Entry entry = (InterleavingCache.Entry) GET_INTERLEAVING_ENTRY.invokeExact(
+                (CodeTest) service, (Integer) userId, TODAY, (Integer) perPage, InterleavingStrategy.BALANCED);
+        return entry.getExcludedIds();
+    }
+
+    /**
+     * 3ページ目以降の旧アルゴリズムからの取得のみを実行(カーソル無し)
+     */
+    public static Object selectItemFromOldAlgorithm(Object service, int userId, int page, int perPage,
+            Object excludedIds) throws Throwable {
+        return (InterleavingPage) SELECT_ITEM_FROM_OLD_ALGORITHM.invokeExact((CodeTest) service, (Integer) userId,
+                TODAY, (Integer) page, (Integer) perPage, CodeTest.interleavingPageCount, CodeTest.MAX_PAGE,
+                InterleavingStrategy.BALANCED.getName(), (Ranker) OLD_RANKER.invokeExact((CodeTest) service),
+                (IntHashSet) excludedIds, false, (InterleavingCursor) null);
+    }
+
+    /**
+     * マルチリービング用に合成したランキング
+     * 各ランキングは0からrankingSize-1までのIDをランキング毎に異なる順でシャッフルしたものになる
+     *
+     * @param rankerCount ランキングの数
+     * @param rankingSize ランキングの件数
+     * @return ランキング毎のIDリスト
+     */
+    public static Object rankingLists(int rankerCount, int rankingSize) {
+        Random random = new Random(rankingSize);
+        List<List<Integer>> rankingLists = new ArrayList<>(rankerCount);
+        for (int ranker = 0; ranker < rankerCount; ranker++) {
+            int[] ids = shuffledRange(0, rankingSize, random);
+            List<Integer> rankingList = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                rankingList.add(id);
+            }
+            rankingLists.add(rankingList);
+        }
+        return rankingLists;
+    }
+
+    /**
+     * マルチリービングの統合処理のみを実行
+     *
+     * @return 統合した件数
+     */
+    @SuppressWarnings("unchecked")
+    public static int multileave(Object rankingLists, long seed, int totalNeeded) {
+        return InterleavingEngine.current().multileave(seed, (List<List<Integer>>) rankingLists, totalNeeded);
+    }
+
+    /**
+     * クリックの帰属の集計を生成
+     */
+    public static Object newCreditAggregator(Object service) {
+        return new InterleavingCreditAggregator((CodeTest) service);
+    }
+
+    /**
+     * ユーザに表示した1ページ目のID(クリックされるID)
+     */
+    public static int[] shownIds(Object service, int userId, int perPage) {
+        List<JobPost> jobPostList = ((CodeTest) service).interleaving(userId, 1, perPage);
+        int[] ids = new int[jobPostList.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = jobPostList.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * 当日の1ページ目のクリックを記録
+     */
+    public static boolean recordClick(Object aggregator, int userId, int perPage, int jobId) {
+        return ((InterleavingCreditAggregator) aggregator).record(new ClickEvent(userId, TODAY, 1, perPage, jobId));
+    }
+
+    /**
+     * ユーザ毎のランキングを合成したUserRankingStoreを生成
+     * ユーザIDは0からuserCount-1まで、IDは全ユーザで共通の範囲から無作為に選ぶ
+     *
+     * @param userCount  ユーザ数
+     * @param idsPerUser ユーザ毎のランキングの件数
+     * @return UserRankingStore
+     */
+    public static Object newUserRankingStore(int userCount, int idsPerUser) {
+        Random random = new Random(userCount);
+        UserRankingStore.Builder builder = UserRankingStore.builder();
+        int[] ids = new int[idsPerUser];
+        for (int userId = 0; userId < userCount; userId++) {
+            for (int i = 0; i < idsPerUser; i++) {
+                ids[i] = random.nextInt(DISJOINT_ID_BASE);
+            }
+            builder.add(userId, ids);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @see UserRankingStore#page(Integer, int, int)
+     */
+    public static Object userRankingPage(Object store, int userId, int page, int perPage) {
+        return ((UserRankingStore) store).page(userId, page, perPage);
+    }
+
+    /**
+     * @see UserRankingStore#getBytesPerId()
+     */
+    public static double bytesPerId(Object store) {
+        return ((UserRankingStore) store).getBytesPerId();
+    }
+
+    /**
+     * 直列化の対象とするページ
+     *
+     * @see CodeTest#interleavingPage(Integer, Integer, Integer, String)
+     */
+    public static Object interleavingPage(Object service, int userId, int page, int perPage) {
+        return ((CodeTest) service).interleavingPage(userId, page, perPage, null);
+    }
+
+    /**
+     * 従来のtoString(String.format)による文字列化
+     */
+    public static Object pageToString(Object interleavingPage) {
+        return ((InterleavingPage) interleavingPage).getItems().toString();
+    }
+
+    /**
+     * @see JobPostSerializer#writeJson(InterleavingPage)
+     */
+    public static int writeJson(Object interleavingPage) {
+        return JobPostSerializer.current().writeJson((InterleavingPage) interleavingPage).size();
+    }
+
+    /**
+     * @see JobPostSerializer#writeBinary(InterleavingPage)
+     */
+    public static int writeBinary(Object interleavingPage) {
+        return JobPostSerializer.current().writeBinary((InterleavingPage) interleavingPage).size();
+    }
+
+    private static RankingSource rankingSource(int[] ids) {
+        return new SyncRankingSource((userId, offset, limit) -> {
+            int start = Math.min(offset, ids.length);
+            int end = (int) Math.min((long) start + limit, ids.length);
+            List<Integer> rankingList = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                rankingList.add(ids[i]);
+            }
+            return rankingList;
+        });
+    }
+
+    private static int[] shuffledRange(int from, int to, Random random) {
+        int[] ids = new int[to - from];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = from + i;
+        }
+        shuffle(ids, random);
+        return ids;
+    }
+
+    private static void shuffle(int[] ids, Random random) {
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+    }
+}
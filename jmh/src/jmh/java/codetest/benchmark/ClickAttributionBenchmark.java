@@ -0,0 +1,67 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * クリックの帰属の集計のベンチマーク
+ * 複数スレッドから同じ集計にクリックを記録し、1分あたりに処理できるイベント数を計測する。
+ * ユーザ数は集計用のキャッシュに載る件数とし、インターリービング結果の再計算は各ユーザの初回のクリックのみとする
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Threads(4)
+public class ClickAttributionBenchmark {
+
+    /* キャッシュの最大件数(InterleavingCache.DEFAULT_MAX_SIZE)に収まるユーザ数 */
+    private static final int USER_COUNT = 8_192;
+
+    private static final int PER_PAGE = 10;
+
+    @Param({ "40", "1000" })
+    private int rankingSize;
+
+    private Object aggregator;
+
+    /* ユーザ毎に表示したID */
+    private int[][] shownIds;
+
+    /**
+     * スレッド毎のクリックの生成位置
+     */
+    @State(Scope.Thread)
+    public static class ClickState {
+
+        private int sequence;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Object service = (Object) InterleavingBenchmarkBridge.NEW_SERVICE.invokeExact(rankingSize, 0.5);
+        aggregator = (Object) InterleavingBenchmarkBridge.NEW_CREDIT_AGGREGATOR.invokeExact(service);
+        shownIds = new int[USER_COUNT][];
+        for (int userId = 0; userId < USER_COUNT; userId++) {
+            shownIds[userId] = (int[]) InterleavingBenchmarkBridge.SHOWN_IDS.invokeExact(service, userId, PER_PAGE);
+        }
+    }
+
+    @Benchmark
+    public boolean recordClick(ClickState state) throws Throwable {
+        int sequence = state.sequence++;
+        int userId = (sequence * 0x9E3779B9 >>> 1) % USER_COUNT;
+        int[] ids = shownIds[userId];
+        return (boolean) InterleavingBenchmarkBridge.RECORD_CLICK.invokeExact(aggregator, userId, PER_PAGE,
+                ids[(sequence & Integer.MAX_VALUE) % ids.length]);
+    }
+}
@@ -0,0 +1,57 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * CodeTest.interleavingのベンチマーク
+ * cached=trueでは同じユーザのページングを繰り返し(キャッシュヒット)、
+ * cached=falseでは毎回別のユーザとして呼び出す(キャッシュミス)
+ *
+ * 組み合わせが多いため、必要に応じて -Pjmh.includes や @Param の上書きで絞り込むこと
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InterleavingBenchmark {
+
+    @Param({ "1", "2", "50", "100" })
+    private int page;
+
+    @Param({ "10", "50", "200" })
+    private int perPage;
+
+    @Param({ "40", "1000", "100000", "1000000" })
+    private int rankingSize;
+
+    /* 新旧アルゴリズムで共通するIDの割合 */
+    @Param({ "0.0", "0.5", "1.0" })
+    private double overlap;
+
+    @Param({ "true", "false" })
+    private boolean cached;
+
+    private Object service;
+
+    private int userId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        service = (Object) InterleavingBenchmarkBridge.NEW_SERVICE.invokeExact(rankingSize, overlap);
+    }
+
+    @Benchmark
+    public Object interleaving() throws Throwable {
+        int requestUserId = cached ? 1 : ++userId;
+        return (Object) InterleavingBenchmarkBridge.INTERLEAVING.invokeExact(service, requestUserId, page, perPage);
+    }
+}
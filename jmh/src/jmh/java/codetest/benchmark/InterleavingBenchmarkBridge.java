@@ -0,0 +1,91 @@
+package codetest.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * デフォルトパッケージのInterleavingBenchmarkSupportを呼び出すためのMethodHandle
+ * static finalで保持することで、JITにより直接呼び出しと同等に最適化される
+ */
+final class InterleavingBenchmarkBridge {
+
+    private static final String SUPPORT_CLASS = "InterleavingBenchmarkSupport";
+
+    static final MethodHandle NEW_SERVICE = find("newService",
+            MethodType.methodType(Object.class, int.class, double.class));
+
+    static final MethodHandle INTERLEAVING = find("interleaving",
+            MethodType.methodType(Object.class, Object.class, int.class, int.class, int.class));
+
+    static final MethodHandle CREATE_SEED_VALUE = find("createSeedValue",
+            MethodType.methodType(long.class, Object.class, int.class));
+
+    static final MethodHandle NEW_SEED_PROVIDER = find("newSeedProvider",
+            MethodType.methodType(Object.class, String.class));
+
+    static final MethodHandle SEED = find("seed",
+            MethodType.methodType(long.class, Object.class, int.class));
+
+    static final MethodHandle EXCLUDED_IDS = find("excludedIds",
+            MethodType.methodType(Object.class, Object.class, int.class, int.class));
+
+    static final MethodHandle SELECT_ITEM_FROM_OLD_ALGORITHM = find("selectItemFromOldAlgorithm",
+            MethodType.methodType(Object.class, Object.class, int.class, int.class, int.class, Object.class));
+
+    static final MethodHandle RANKINGS = find("rankings",
+            MethodType.methodType(int[][].class, int.class, double.class));
+
+    static final MethodHandle STRATEGY = find("strategy",
+            MethodType.methodType(Object.class, String.class));
+
+    static final MethodHandle MERGE = find("merge",
+            MethodType.methodType(int.class, Object.class, long.class, int[].class, int[].class, int.class));
+
+    static final MethodHandle RANKING_LISTS = find("rankingLists",
+            MethodType.methodType(Object.class, int.class, int.class));
+
+    static final MethodHandle MULTILEAVE = find("multileave",
+            MethodType.methodType(int.class, Object.class, long.class, int.class));
+
+    static final MethodHandle NEW_CREDIT_AGGREGATOR = find("newCreditAggregator",
+            MethodType.methodType(Object.class, Object.class));
+
+    static final MethodHandle SHOWN_IDS = find("shownIds",
+            MethodType.methodType(int[].class, Object.class, int.class, int.class));
+
+    static final MethodHandle RECORD_CLICK = find("recordClick",
+            MethodType.methodType(boolean.class, Object.class, int.class, int.class, int.class));
+
+    static final MethodHandle NEW_USER_RANKING_STORE = find("newUserRankingStore",
+            MethodType.methodType(Object.class, int.class, int.class));
+
+    static final MethodHandle USER_RANKING_PAGE = find("userRankingPage",
+            MethodType.methodType(Object.class, Object.class, int.class, int.class, int.class));
+
+    static final MethodHandle BYTES_PER_ID = find("bytesPerId",
+            MethodType.methodType(double.class, Object.class));
+
+    static final MethodHandle INTERLEAVING_PAGE = find("interleavingPage",
+            MethodType.methodType(Object.class, Object.class, int.class, int.class, int.class));
+
+    static final MethodHandle PAGE_TO_STRING = find("pageToString",
+            MethodType.methodType(Object.class, Object.class));
+
+    static final MethodHandle WRITE_JSON = find("writeJson",
+            MethodType.methodType(int.class, Object.class));
+
+    static final MethodHandle WRITE_BINARY = find("writeBinary",
+            MethodType.methodType(int.class, Object.class));
+
+    private InterleavingBenchmarkBridge() {
+    }
+
+    private static MethodHandle find(String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findStatic(Class.forName(SUPPORT_CLASS), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
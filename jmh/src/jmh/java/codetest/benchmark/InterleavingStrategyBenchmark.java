@@ -0,0 +1,74 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * インターリービングの戦略毎の統合処理のベンチマーク
+ * ランキングの取得やJobPostの生成を含めず、戦略の統合処理のみを計測する。
+ * 統合した件数をmergedItemsとして数えるため、mergedItemsの逆数が統合1件あたりのコストになる
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InterleavingStrategyBenchmark {
+
+    @Param({ "balanced", "teamDraft", "probabilistic" })
+    private String strategyName;
+
+    @Param({ "20", "1000", "100000" })
+    private int totalNeeded;
+
+    @Param({ "0.0", "0.5", "1.0" })
+    private double overlap;
+
+    private Object strategy;
+
+    private int[] oldIds;
+
+    private int[] newIds;
+
+    private long seed;
+
+    /**
+     * 統合した件数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class MergedItems {
+
+        public long mergedItems;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            mergedItems = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        strategy = (Object) InterleavingBenchmarkBridge.STRATEGY.invokeExact(strategyName);
+        int[][] rankings = (int[][]) InterleavingBenchmarkBridge.RANKINGS.invokeExact(totalNeeded, overlap);
+        oldIds = rankings[0];
+        newIds = rankings[1];
+    }
+
+    @Benchmark
+    public int merge(MergedItems counter) throws Throwable {
+        // ユーザ毎にシード値が変わる状況を再現する
+        int merged = (int) InterleavingBenchmarkBridge.MERGE.invokeExact(strategy, ++seed, oldIds, newIds,
+                totalNeeded);
+        counter.mergedItems += merged;
+        return merged;
+    }
+}
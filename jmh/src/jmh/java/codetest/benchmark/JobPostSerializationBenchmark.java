@@ -0,0 +1,60 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 1ページ分のJobPostの直列化のベンチマーク
+ * 従来のtoString(String.format)、リフレクションによるJSONマッパー(Jackson)、
+ * JobPostSerializerのJSON・バイナリ形式を比較する。アロケーション量はGCプロファイラの結果で比較する
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JobPostSerializationBenchmark {
+
+    @Param({ "10", "100" })
+    private int perPage;
+
+    private Object page;
+
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Object service = (Object) InterleavingBenchmarkBridge.NEW_SERVICE.invokeExact(perPage * 2, 0.5);
+        page = (Object) InterleavingBenchmarkBridge.INTERLEAVING_PAGE.invokeExact(service, 1, 1, perPage);
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public Object toStringFormat() throws Throwable {
+        return (Object) InterleavingBenchmarkBridge.PAGE_TO_STRING.invokeExact(page);
+    }
+
+    @Benchmark
+    public byte[] reflectiveMapper() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public int serializerJson() throws Throwable {
+        return (int) InterleavingBenchmarkBridge.WRITE_JSON.invokeExact(page);
+    }
+
+    @Benchmark
+    public int serializerBinary() throws Throwable {
+        return (int) InterleavingBenchmarkBridge.WRITE_BINARY.invokeExact(page);
+    }
+}
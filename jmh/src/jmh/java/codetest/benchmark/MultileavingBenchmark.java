@@ -0,0 +1,43 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Team Draft Multileavingの統合処理のベンチマーク
+ * ランキング数Nを増やしたときに処理時間がNに比例して増えることを確認する
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MultileavingBenchmark {
+
+    @Param({ "2", "3", "4", "8" })
+    private int rankerCount;
+
+    @Param({ "20", "200" })
+    private int totalNeeded;
+
+    private Object rankingLists;
+
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        rankingLists = (Object) InterleavingBenchmarkBridge.RANKING_LISTS.invokeExact(rankerCount, totalNeeded);
+    }
+
+    @Benchmark
+    public int multileave() throws Throwable {
+        return (int) InterleavingBenchmarkBridge.MULTILEAVE.invokeExact(rankingLists, ++seed, totalNeeded);
+    }
+}
@@ -0,0 +1,48 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * シード値の生成のベンチマーク
+ * createSeedValueはCodeTest経由(既定のSHA_256)、seedProviderは生成方式毎のSeedProvider単体を計測する
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SeedValueBenchmark {
+
+    @Param({ "SHA_256", "SPLIT_MIX_64" })
+    private String seedMode;
+
+    private Object service;
+
+    private Object seedProvider;
+
+    private int userId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        service = (Object) InterleavingBenchmarkBridge.NEW_SERVICE.invokeExact(40, 0.5);
+        seedProvider = (Object) InterleavingBenchmarkBridge.NEW_SEED_PROVIDER.invokeExact(seedMode);
+    }
+
+    @Benchmark
+    public long createSeedValue() throws Throwable {
+        return (long) InterleavingBenchmarkBridge.CREATE_SEED_VALUE.invokeExact(service, ++userId);
+    }
+
+    @Benchmark
+    public long seedProvider() throws Throwable {
+        return (long) InterleavingBenchmarkBridge.SEED.invokeExact(seedProvider, ++userId);
+    }
+}
@@ -0,0 +1,53 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * CodeTest.selectItemFromOldAlgorithm単体のベンチマーク
+ * カーソル無しで呼び出すため、ページ番号に比例して旧アルゴリズムを先頭から読み直すコストを計測する
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SelectItemFromOldAlgorithmBenchmark {
+
+    private static final int USER_ID = 1;
+
+    @Param({ "2", "50", "100" })
+    private int page;
+
+    @Param({ "10", "50", "200" })
+    private int perPage;
+
+    @Param({ "1000", "100000", "1000000" })
+    private int rankingSize;
+
+    @Param({ "0.0", "0.5", "1.0" })
+    private double overlap;
+
+    private Object service;
+
+    private Object excludedIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        service = (Object) InterleavingBenchmarkBridge.NEW_SERVICE.invokeExact(rankingSize, overlap);
+        excludedIds = (Object) InterleavingBenchmarkBridge.EXCLUDED_IDS.invokeExact(service, USER_ID, perPage);
+    }
+
+    @Benchmark
+    public Object selectItemFromOldAlgorithm() throws Throwable {
+        return (Object) InterleavingBenchmarkBridge.SELECT_ITEM_FROM_OLD_ALGORITHM.invokeExact(service, USER_ID, page,
+                perPage, excludedIds);
+    }
+}
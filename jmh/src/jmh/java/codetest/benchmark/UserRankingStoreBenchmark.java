@@ -0,0 +1,64 @@
+package codetest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ユーザ毎のランキング(UserRankingStore)のページ取得のベンチマーク
+ * ユーザ・ページをずらしながら取得し、差分の復号のコストがページ番号に応じて増える様子も含めて計測する。
+ * IDあたりのバイト数(索引を含む)はセットアップ時に出力する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserRankingStoreBenchmark {
+
+    @Param({ "100000" })
+    private int userCount;
+
+    @Param({ "300" })
+    private int idsPerUser;
+
+    @Param({ "10" })
+    private int perPage;
+
+    private Object store;
+
+    private int pageCount;
+
+    /**
+     * スレッド毎の取得対象のユーザ・ページ
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int userId;
+
+        private int page;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        store = (Object) InterleavingBenchmarkBridge.NEW_USER_RANKING_STORE.invokeExact(userCount, idsPerUser);
+        pageCount = (idsPerUser + perPage - 1) / perPage;
+        double bytesPerId = (double) InterleavingBenchmarkBridge.BYTES_PER_ID.invokeExact(store);
+        System.out.printf("%nfootprint: %.2f bytes/id (%d users x %d ids)%n", bytesPerId, userCount, idsPerUser);
+    }
+
+    @Benchmark
+    public Object page(Cursor cursor) throws Throwable {
+        cursor.userId = cursor.userId + 1 == userCount ? 0 : cursor.userId + 1;
+        cursor.page = cursor.page == pageCount ? 1 : cursor.page + 1;
+        return (Object) InterleavingBenchmarkBridge.USER_RANKING_PAGE.invokeExact(store, cursor.userId, cursor.page,
+                perPage);
+    }
+}
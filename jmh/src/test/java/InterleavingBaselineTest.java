@@ -0,0 +1,227 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * インターリービング結果が従来の実装と一致することのテスト
+ * 従来の実装(LinkedHashMapで重複を除きながらBalanced Interleavingで統合し、インターリービング対象より後のページは
+ * 旧アルゴリズムを先頭から読み直して除外・読み飛ばす)をこのクラス内に残し、ユーザ毎に異なる合成ランキングで
+ * 1ページあたりのアイテム数・インターリービング対象となるページ件数を変えて比較する
+ */
+class InterleavingBaselineTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    /* 結果の日付を固定するための時計 */
+    private static final Clock FIXED_CLOCK = Clock.fixed(DATE.atStartOfDay(ZoneOffset.UTC).toInstant(),
+            ZoneOffset.UTC);
+
+    /* ランキングの件数(確認する最後のページまで読めるだけの件数) */
+    private static final int RANKING_SIZE = 200;
+
+    private static final int USER_COUNT = 100;
+
+    private static final int[] PER_PAGES = { 1, 3, 5, 10, 20 };
+
+    private static final int[] INTERLEAVING_PAGE_COUNTS = { 1, 2 };
+
+    private static final int MAX_CHECKED_PAGE = 8;
+
+    /* ユーザ毎の旧アルゴリズム・新アルゴリズムのランキング */
+    private final Map<Integer, List<List<Integer>>> rankingMap = new ConcurrentHashMap<>();
+
+    @Test
+    void matchesBaselineMerge() {
+        for (int interleavingPageCount : INTERLEAVING_PAGE_COUNTS) {
+            CodeTest service = newService(interleavingPageCount);
+            for (int userId = 1; userId <= USER_COUNT; userId++) {
+                for (int perPage : PER_PAGES) {
+                    for (int page = 1; page <= MAX_CHECKED_PAGE; page++) {
+                        assertEquals(baseline(userId, page, perPage, interleavingPageCount),
+                                describe(service.interleaving(userId, page, perPage)),
+                                message(userId, page, perPage, interleavingPageCount));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorPagingHasNoDuplicatesOrGaps() {
+        for (int interleavingPageCount : INTERLEAVING_PAGE_COUNTS) {
+            CodeTest service = newService(interleavingPageCount);
+            for (int userId = 1; userId <= USER_COUNT; userId++) {
+                for (int perPage : PER_PAGES) {
+                    List<String> expected = new ArrayList<>();
+                    List<String> actual = new ArrayList<>();
+                    String cursor = null;
+                    for (int page = 1; page <= MAX_CHECKED_PAGE; page++) {
+                        InterleavingPage interleavingPage = service.interleavingPage(userId, page, perPage, cursor);
+                        expected.addAll(baseline(userId, page, perPage, interleavingPageCount));
+                        actual.addAll(describe(interleavingPage.getItems()));
+                        cursor = interleavingPage.getNextCursor();
+                    }
+                    String message = message(userId, MAX_CHECKED_PAGE, perPage, interleavingPageCount);
+                    assertEquals(expected, actual, message);
+                    assertEquals(actual.size(), new HashSet<>(actual).size(), "重複があります: " + message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchMatchesPerUserInterleaving() {
+        // 重複したユーザIDは1件として扱い、指定した順序を維持する
+        List<Integer> userIds = new ArrayList<>();
+        for (int userId = USER_COUNT; userId >= 1; userId -= 3) {
+            userIds.add(userId);
+            userIds.add(USER_COUNT + 1 - userId);
+        }
+        List<Integer> distinctUserIds = new ArrayList<>(new LinkedHashSet<>(userIds));
+
+        for (int interleavingPageCount : INTERLEAVING_PAGE_COUNTS) {
+            for (int perPage : new int[] { 5, 10 }) {
+                for (int page = 1; page <= interleavingPageCount + 2; page++) {
+                    // 一括取得とユーザ毎の取得でキャッシュを共有しないよう、別のインスタンスで計算する
+                    Map<Integer, List<JobPost>> batch = newService(interleavingPageCount)
+                            .interleavingBatch(userIds, page, perPage);
+                    CodeTest perUserService = newService(interleavingPageCount);
+                    assertEquals(distinctUserIds, new ArrayList<>(batch.keySet()));
+                    for (Integer userId : distinctUserIds) {
+                        assertEquals(describe(perUserService.interleaving(userId, page, perPage)),
+                                describe(batch.get(userId)), message(userId, page, perPage, interleavingPageCount));
+                    }
+                }
+            }
+        }
+    }
+
+    private CodeTest newService(int interleavingPageCount) {
+        ExperimentConfig config = new ExperimentConfig(interleavingPageCount, CodeTest.MAX_PAGE,
+                InterleavingStrategy.BALANCED, new LinkedHashMap<>());
+        return CodeTest.builder()
+                .rankingSources(rankingSource(false), rankingSource(true))
+                .seedProvider(new SeedProvider(FIXED_CLOCK, SeedProvider.SeedMode.SHA_256))
+                .experimentConfig(() -> config)
+                .metrics(InterleavingMetrics.DISABLED)
+                .build();
+    }
+
+    private RankingSource rankingSource(boolean newAlgorithm) {
+        return (userId, offset, limit) -> {
+            List<Integer> ranking = ranking(userId, newAlgorithm);
+            int from = Math.min(offset, ranking.size());
+            return CompletableFuture.completedFuture(ranking.subList(from, Math.min(ranking.size(), from + limit)));
+        };
+    }
+
+    /**
+     * ユーザ毎の合成ランキング
+     * 旧アルゴリズムは0からRANKING_SIZE-1までのIDをシャッフルしたもの、
+     * 新アルゴリズムは半分を旧アルゴリズムと共通のID、残りを重複しないIDとして別の順にシャッフルしたものになる
+     */
+    private List<Integer> ranking(int userId, boolean newAlgorithm) {
+        return rankingMap.computeIfAbsent(userId, key -> {
+            List<Integer> oldIds = new ArrayList<>(RANKING_SIZE);
+            List<Integer> newIds = new ArrayList<>(RANKING_SIZE);
+            for (int i = 0; i < RANKING_SIZE; i++) {
+                oldIds.add(i);
+                newIds.add(i % 2 == 0 ? i : RANKING_SIZE + i);
+            }
+            Collections.shuffle(oldIds, new Random(key * 2L));
+            Collections.shuffle(newIds, new Random(key * 2L + 1));
+            return List.of(List.copyOf(oldIds), List.copyOf(newIds));
+        }).get(newAlgorithm ? 1 : 0);
+    }
+
+    /**
+     * 従来の実装でのページ
+     *
+     * @return 「ID:取得元」のリスト
+     */
+    private List<String> baseline(int userId, int page, int perPage, int interleavingPageCount) {
+        int totalNeeded = interleavingPageCount * perPage;
+        List<Integer> oldAlgorithmList = ranking(userId, false).subList(0, totalNeeded);
+        List<Integer> newAlgorithmList = ranking(userId, true).subList(0, totalNeeded);
+
+        // シード値なので同じユーザ、同じ日付の場合は常に同じ順序を返す
+        boolean fromOld = new Random(seed(userId)).nextBoolean();
+        int oldAlgorithmPointer = 0;
+        int newAlgorithmPointer = 0;
+        Map<Integer, String> map = new LinkedHashMap<>();
+        while (map.size() < totalNeeded
+                && (oldAlgorithmPointer < oldAlgorithmList.size()
+                        || newAlgorithmPointer < newAlgorithmList.size())) {
+            if (newAlgorithmPointer > oldAlgorithmPointer
+                    || (fromOld && newAlgorithmPointer == oldAlgorithmPointer)) {
+                map.putIfAbsent(oldAlgorithmList.get(oldAlgorithmPointer), CodeTest.OLD_ALGORITHM);
+                oldAlgorithmPointer++;
+            } else {
+                map.putIfAbsent(newAlgorithmList.get(newAlgorithmPointer), CodeTest.NEW_ALGORITHM);
+                newAlgorithmPointer++;
+            }
+        }
+
+        List<String> pageItems = new ArrayList<>();
+        if (page > interleavingPageCount) {
+            // 1ページ～当該ページまでの旧アルゴリズムの全アイテムを読み、インターリービング処理したIDを除外する
+            Set<Integer> excludedIds = map.keySet();
+            ranking(userId, false).subList(0, page * perPage).stream()
+                    .filter(id -> !excludedIds.contains(id))
+                    .skip((long) (page - interleavingPageCount - 1) * perPage)
+                    .limit(perPage)
+                    .forEach(id -> pageItems.add(id + ":" + CodeTest.OLD_ALGORITHM));
+            return pageItems;
+        }
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>(map.entrySet());
+        for (int i = (page - 1) * perPage; i < Math.min(page * perPage, entries.size()); i++) {
+            pageItems.add(entries.get(i).getKey() + ":" + entries.get(i).getValue());
+        }
+        return pageItems;
+    }
+
+    /**
+     * 「ユーザID:日付」のSHA-256の先頭8バイト
+     */
+    private static long seed(int userId) {
+        try {
+            byte[] hash = MessageDigest.getInstance(CodeTest.SHA_256)
+                    .digest((userId + CodeTest.COLON + DATE).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> describe(List<JobPost> jobPosts) {
+        List<String> items = new ArrayList<>(jobPosts.size());
+        for (JobPost jobPost : jobPosts) {
+            items.add(jobPost.getId() + ":" + jobPost.getSource());
+        }
+        return items;
+    }
+
+    private static String message(int userId, int page, int perPage, int interleavingPageCount) {
+        return "userId=" + userId + " page=" + page + " perPage=" + perPage + " interleavingPageCount="
+                + interleavingPageCount;
+    }
+}
@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 1つのCodeTestを複数スレッドから同時に使用した場合のテスト
+ * 各スレッドが同じインスタンスでinterleavingを繰り返し呼び出し、全ての結果が1スレッドで計算した結果と
+ * 一致することを確認する。キャッシュを使う場合と、毎回計算する場合(有効期間0のキャッシュ)の両方で行う
+ */
+class InterleavingConcurrencyTest {
+
+    /* 確認するページ(3ページ目は旧アルゴリズムからの取得となる) */
+    private static final int MAX_CHECKED_PAGE = 3;
+
+    private static final int PER_PAGE = 10;
+
+    private static final int USER_COUNT = 500;
+
+    private static final int CALLS_PER_THREAD = 5_000;
+
+    /* コア数が少ない環境でもスレッドが入れ替わりながら同時に呼び出すよう、コア数より多くする */
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /* 結果の日付を固定するための時計 */
+    private static final Clock FIXED_CLOCK = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void concurrentResultsMatchSingleThreadWithCache() throws Exception {
+        assertEquals(0, countMismatches(newService(false), expectedChecksums()));
+    }
+
+    @Test
+    void concurrentResultsMatchSingleThreadWithoutCache() throws Exception {
+        assertEquals(0, countMismatches(newService(true), expectedChecksums()));
+    }
+
+    /**
+     * 1スレッドで計算した結果を正解とする
+     */
+    private static long[][] expectedChecksums() {
+        CodeTest reference = newService(false);
+        long[][] expected = new long[USER_COUNT][MAX_CHECKED_PAGE];
+        for (int user = 0; user < USER_COUNT; user++) {
+            for (int page = 1; page <= MAX_CHECKED_PAGE; page++) {
+                expected[user][page - 1] = checksum(reference.interleaving(user + 1, page, PER_PAGE));
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * 同じインスタンスを複数スレッドから同時に呼び出す
+     *
+     * @return 1スレッドの結果と一致しなかった呼び出し回数
+     */
+    private static int countMismatches(CodeTest service, long[][] expected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch ready = new CountDownLatch(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int threadIndex = t;
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    int mismatches = 0;
+                    // スレッド毎に開始位置をずらし、同じユーザへの同時アクセスと別ユーザへのアクセスを混在させる
+                    int call = threadIndex * 7919;
+                    for (int i = 0; i < CALLS_PER_THREAD; i++, call++) {
+                        int user = Math.floorMod(call, expected.length);
+                        int page = Math.floorMod(call / expected.length, MAX_CHECKED_PAGE) + 1;
+                        if (checksum(service.interleaving(user + 1, page, PER_PAGE)) != expected[user][page - 1]) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            ready.await();
+            start.countDown();
+            int mismatches = 0;
+            for (Future<Integer> future : futures) {
+                mismatches += future.get();
+            }
+            return mismatches;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CodeTest newService(boolean disableCache) {
+        CodeTest.Builder builder = CodeTest.builder()
+                .seedProvider(new SeedProvider(FIXED_CLOCK, SeedProvider.SeedMode.SHA_256))
+                .metrics(InterleavingMetrics.DISABLED);
+        if (disableCache) {
+            builder.interleavingCache(new InterleavingCache(1, Duration.ZERO));
+        }
+        return builder.build();
+    }
+
+    /**
+     * ページのIDと取得元から求めた値(一致の判定に使用する)
+     */
+    private static long checksum(List<JobPost> jobPosts) {
+        long checksum = jobPosts.size();
+        for (JobPost jobPost : jobPosts) {
+            checksum = checksum * 31 + jobPost.getId();
+            checksum = checksum * 31 + jobPost.getSource().hashCode();
+        }
+        return checksum;
+    }
+}
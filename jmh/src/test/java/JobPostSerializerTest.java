@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * レスポンスの直列化のテスト
+ * バイナリ形式は復元した結果、JSONはJacksonで読み込んだ結果が、書き込んだページと一致することを確認する
+ */
+class JobPostSerializerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /* エスケープが必要な文字・ASCII以外の文字を含む取得元の名前 */
+    private static final String ESCAPED_SOURCE = "quote\"backslash\\newline\ntab\tcontrol\u0001日本語";
+
+    @Test
+    void binaryRoundTripPreservesPages() {
+        CodeTest service = new CodeTest();
+        for (int userId = 1; userId <= 20; userId++) {
+            String cursor = null;
+            for (int page = 1; page <= 3; page++) {
+                InterleavingPage interleavingPage = service.interleavingPage(userId, page, CodeTest.DEFAULT_PER_PAGE,
+                        cursor);
+                byte[] bytes = JobPostSerializer.current().writeBinary(interleavingPage).toByteArray();
+                InterleavingPage restored = JobPostSerializer.readBinary(bytes, 0, bytes.length);
+                assertEquals(describe(interleavingPage.getItems()), describe(restored.getItems()));
+                assertEquals(interleavingPage.getNextCursor(), restored.getNextCursor());
+                cursor = interleavingPage.getNextCursor();
+            }
+        }
+    }
+
+    @Test
+    void binaryRoundTripPreservesExtremeIdsAndSourceNames() {
+        List<JobPost> jobPosts = List.of(jobPost(Integer.MIN_VALUE, CodeTest.OLD_ALGORITHM),
+                jobPost(-1, ESCAPED_SOURCE), jobPost(0, CodeTest.NEW_ALGORITHM), jobPost(Integer.MAX_VALUE, ""));
+        JobPostSerializer serializer = JobPostSerializer.current().writeBinary(jobPosts);
+
+        // バッファの途中に置いたバイナリも復元できる
+        byte[] bytes = new byte[serializer.size() + 5];
+        System.arraycopy(serializer.buffer(), 0, bytes, 3, serializer.size());
+        InterleavingPage restored = JobPostSerializer.readBinary(bytes, 3, serializer.size());
+        assertEquals(describe(jobPosts), describe(restored.getItems()));
+        assertNull(restored.getNextCursor());
+    }
+
+    @Test
+    void jsonParsesToSamePages() throws IOException {
+        CodeTest service = new CodeTest();
+        for (int userId = 1; userId <= 20; userId++) {
+            String cursor = null;
+            for (int page = 1; page <= 3; page++) {
+                InterleavingPage interleavingPage = service.interleavingPage(userId, page, CodeTest.DEFAULT_PER_PAGE,
+                        cursor);
+                JsonNode json = readJson(JobPostSerializer.current().writeJson(interleavingPage));
+                assertEquals(describe(interleavingPage.getItems()), describe(json.get("items")));
+                JsonNode nextCursor = json.get("nextCursor");
+                assertNotNull(nextCursor);
+                assertEquals(interleavingPage.getNextCursor(), nextCursor.isNull() ? null : nextCursor.asText());
+                cursor = interleavingPage.getNextCursor();
+            }
+        }
+    }
+
+    @Test
+    void jsonEscapesSourceNamesAndWritesExtremeIds() throws IOException {
+        List<JobPost> jobPosts = List.of(jobPost(Integer.MIN_VALUE, ESCAPED_SOURCE), jobPost(-1, null),
+                jobPost(Integer.MAX_VALUE, CodeTest.OLD_ALGORITHM));
+        JsonNode json = readJson(JobPostSerializer.current().writeJson(jobPosts));
+        assertTrue(json.isArray());
+        assertEquals(describe(jobPosts), describe(json));
+    }
+
+    @Test
+    void rejectsItemsWithoutId() {
+        List<JobPost> jobPosts = List.of(jobPost(1, CodeTest.OLD_ALGORITHM), new JobPost());
+        assertThrows(IllegalArgumentException.class, () -> JobPostSerializer.current().writeJson(jobPosts));
+        assertThrows(IllegalArgumentException.class, () -> JobPostSerializer.current().writeBinary(jobPosts));
+    }
+
+    @Test
+    void rejectsUnknownBinaryVersion() {
+        byte[] bytes = JobPostSerializer.current().writeBinary(List.of(jobPost(1, CodeTest.OLD_ALGORITHM)))
+                .toByteArray();
+        bytes[0] = JobPostSerializer.BINARY_VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> JobPostSerializer.readBinary(bytes, 0, bytes.length));
+    }
+
+    private static JsonNode readJson(JobPostSerializer serializer) throws IOException {
+        return MAPPER.readTree(serializer.buffer(), 0, serializer.size());
+    }
+
+    private static JobPost jobPost(int id, String source) {
+        JobPost jobPost = new JobPost();
+        jobPost.setId(id);
+        jobPost.setSource(source);
+        return jobPost;
+    }
+
+    private static List<String> describe(List<JobPost> jobPosts) {
+        List<String> items = new ArrayList<>(jobPosts.size());
+        for (JobPost jobPost : jobPosts) {
+            items.add(jobPost.getId() + ":" + jobPost.getSource());
+        }
+        return items;
+    }
+
+    private static List<String> describe(JsonNode jsonItems) {
+        List<String> items = new ArrayList<>(jsonItems.size());
+        for (JsonNode item : jsonItems) {
+            JsonNode source = item.get("source");
+            items.add(item.get("id").asInt() + ":" + (source.isNull() ? null : source.asText()));
+        }
+        return items;
+    }
+}